@@ -31,7 +31,7 @@ public class ChooseColorPopUp extends Frames {
         window.setSize(W, H);
         window.setLayout(null);
         window.setVisible(true);
-        window.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+        window.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE); // a color must be picked
     }
 
 
@@ -7,6 +7,7 @@ import javax.swing.border.TitledBorder;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import UNO.*;
@@ -34,9 +35,17 @@ public class GameStagePage extends Frames {
     private ArrayList<JButton> cardFrontImgs; // GUI element - card images on the central panel
     private ArrayList<JButton> cardBackImgs; // GUI element - card images on the central panel
     private ArrayList<Boolean> cardClickStatus; // keep track of whether cards has been clicked
-    private ArrayList<Integer> playerCards;
+    private List<Integer> playerCards;
 
     public GameStagePage(Game game) {
+        this(game, true);
+    }
+
+    /**
+     * @param game the game controller in the MVC
+     * @param visible whether to show the page at once, a hidden page is a snapshot of the round shown later by showPage
+     */
+    public GameStagePage(Game game, boolean visible) {
         gameController = game;  //Game controller (Controller in MVC)
         currentPlayerID = gameController.getCurrentPlayerID();
         playerCards = gameController.getPlayerCards(currentPlayerID);
@@ -49,7 +58,7 @@ public class GameStagePage extends Frames {
         window.setSize(W, H);
         window.setLayout(null);
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        window.setVisible(true);
+        window.setVisible(visible);
     }
 
     /**
@@ -292,6 +301,13 @@ public class GameStagePage extends Frames {
         window.add(skipButton);
     }
 
+    /**
+     * Show a page created hidden.
+     */
+    public void showPage() {
+        window.setVisible(true);
+    }
+
     /**
      * Close the game stage page of one player
      */
@@ -305,7 +321,7 @@ public class GameStagePage extends Frames {
      */
     public ArrayList<Integer> getSelectedCards() {
         ArrayList<Integer> selectedCards = new ArrayList<>();
-        ArrayList<Integer> cards = playerCards;
+        List<Integer> cards = playerCards;
         for (int i = 0; i < cardClickStatus.size(); i++) {
             if (cardClickStatus.get(i)) {
                 selectedCards.add(cards.get(i));
@@ -17,21 +17,30 @@ public class PlayerWinPage extends Frames {
     private final int W = 1080; // Width of window
     private final int H = 720; // Height of window
     private final int winnerID;
+    private final JFrame window;
     Game gameController;
 
     /**
      * @param game game Controller (Controller in MVC)
      */
     public PlayerWinPage(Game game) {
+        this(game, true);
+    }
+
+    /**
+     * @param game game Controller (Controller in MVC)
+     * @param visible whether to show the page at once, a hidden page is shown later by showPage
+     */
+    public PlayerWinPage(Game game, boolean visible) {
         gameController = game;
         winnerID = game.getWinnerID();  // should be the correct winner passed by game controller!
-        JFrame window = new JFrame("UNO - Player Won");
+        window = new JFrame("UNO - Player Won");
         addButtons(window);
         addPrompts(window);
         addBackground(window, W, H);
         window.setSize(W, H);
         window.setLayout(null);
-        window.setVisible(true);
+        window.setVisible(visible);
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
     }
@@ -76,4 +85,10 @@ public class PlayerWinPage extends Frames {
         window.add(prompt2);
     }
 
+    /**
+     * Show a page created hidden.
+     */
+    public void showPage() {
+        window.setVisible(true);
+    }
 }
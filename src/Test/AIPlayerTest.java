@@ -1,10 +1,15 @@
 import UNO.*;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class AIPlayerTest {
 
@@ -22,6 +27,47 @@ public class AIPlayerTest {
     }
 
 
+    /**
+     * Test that a game is fully determined by its seed: same seed, same shuffle, same moves, same result.
+     */
+    @Test
+    public void testSeedReproducible() throws InterruptedException {
+        for (long seed = 0; seed < 50; seed++) {
+            Game game1 = playSeededGame(seed);
+            Game game2 = playSeededGame(seed);
+            assert(game1.getSeed() == seed);
+            assert(game1.getWinnerID() == game2.getWinnerID());
+            assert(game1.getRounds() == game2.getRounds());
+            assert(game1.getCardManager().getDiscardPile().equals(game2.getCardManager().getDiscardPile()));
+            assert(game1.getCardManager().getCardPile().equals(game2.getCardManager().getCardPile()));
+            for (int i = 0; i < 4; i++) assert(game1.getPlayerCards(i).equals(game2.getPlayerCards(i)));
+        }
+        // different seeds shuffle differently
+        assert(!new Game(0, 4, 1).getCardManager().getCardPile().equals(new Game(0, 4, 2).getCardManager().getCardPile()));
+    }
+
+    /**
+     * Helper function playing a game between two intelligences and two idiots with a given seed.
+     */
+    private Game playSeededGame(long seed) throws InterruptedException {
+        Game game = new Game(0, 0, seed);
+        game.setGapTime(0);
+        game.setUseGUI(false);
+        game.setManualSetup(true);
+
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(new ArtificialIntelligence(0, game));
+        players.add(new ArtificialIntelligence(1, game));
+        players.add(new ArtificialIdiot(2, game));
+        players.add(new ArtificialIdiot(3, game));
+        game.setPlayers(players);
+
+        game.setPlayerNumbers(0, 4);
+        game.initializeGame();
+        game.gameStart();
+        return game;
+    }
+
     /**
      * Test some basic heuristics of strategic AI to guarantee normal case functionality.
      */
@@ -41,22 +87,22 @@ public class AIPlayerTest {
         game.initializeGame();
 
         // suppose an AI got lots of red cards (red 1-7), and few blue number cards (blue 1-3).
-        player1.getCards().clear();
+        player1.getHand().clear();
         ArrayList<Integer> newCards1 = new ArrayList<>(Arrays.asList(1,2,3,4,5,6,7,51,52,53));
-        player1.getCards().addAll(newCards1);
+        for (int cardID : newCards1) player1.addOneCard(cardID);
         assert(player1.pickColor().equals("red")); // when wild card is available AI should pick red
         assert(player1.playCard() <= 7); // the player won't prioritize color he own less.
 
         // suppose an AI got both red number cards (red 1-7), and red symbol cards (21-24);
-        player1.getCards().clear();
+        player1.getHand().clear();
         ArrayList<Integer> newCards2 = new ArrayList<>(Arrays.asList(1,2,3,4,5,6,7,21,22,23,24));
-        player1.getCards().addAll(newCards2);
+        for (int cardID : newCards2) player1.addOneCard(cardID);
         assert(player1.playCard() <= 7); // AI shouldn't prioritize symbol cards than number cards.
 
         // Suppose an AI got lots of symbol cards (<100 below), and some wild cards (>100), he should first play symbol cards.
-        player1.getCards().clear();
+        player1.getHand().clear();
         ArrayList<Integer> newCards3 = new ArrayList<>(Arrays.asList(21, 24, 47, 49, 74, 99, 101, 104, 107));
-        player1.getCards().addAll(newCards3);
+        for (int cardID : newCards3) player1.addOneCard(cardID);
         assert(player1.playCard() <= 100); // AI shouldn't prioritize wild cards than symbol cards.
     }
 
@@ -70,39 +116,576 @@ public class AIPlayerTest {
      * @throws InterruptedException
      */
     @Test
-    public void testStrategy() throws InterruptedException {
-        float totalRounds = 100000;
-        float intelligenceWin = 0;
-        float idiotWin = 0;
-
-        for (int i = 0; i < totalRounds; i++) {
-            Game game = new Game(0, 0);
-            game.setGapTime(0);
+    public void testStrategy() {
+        int totalRounds = 100000;
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIntelligence::new,
+                ArtificialIdiot::new, ArtificialIdiot::new);
+        SimulationResult result = simulator.run(totalRounds, 2020);
+        float intelligenceWin = result.getWins("ArtificialIntelligence");
+        float idiotWin = result.getWins("ArtificialIdiot");
+
+        assert(intelligenceWin + idiotWin == totalRounds); // make sure not even a single round failed
+        System.out.println("Artificial intelligence winning rate: " + (intelligenceWin / totalRounds) * 100 + "%");
+        System.out.println("Artificial idiot winning rate: " + (idiotWin / totalRounds) * 100 + "%");
+        assert( (intelligenceWin / totalRounds) * 100 > 50);
+    }
+
+    /**
+     * Test the batch simulator: batches are reproducible, and split batches merge into the whole batch.
+     */
+    @Test
+    public void testSimulator() {
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIdiot::new, ArtificialIdiot::new);
+        SimulationResult whole = simulator.run(300, 7);
+        SimulationResult again = simulator.run(300, 7);
+        SimulationResult merged = simulator.run(0, 100, 7).merge(simulator.run(100, 300, 7));
+        assert(whole.getGames() == 300 && whole.getUnfinishedGames() == 0);
+        assert(whole.getWins("ArtificialIntelligence") + whole.getWins("ArtificialIdiot") == 300);
+        assert(whole.getWins("ArtificialIdiot") == whole.getWins(1) + whole.getWins(2));
+        for (SimulationResult other : new SimulationResult[]{again, merged}) {
+            assert(other.toString().equals(whole.toString()));
+        }
+
+        // a game of the batch can be reproduced alone from its seed
+        Game game = simulator.playOne(GameRandom.seedOf(7, 42), simulator.newResult());
+        Game same = simulator.playOne(GameRandom.seedOf(7, 42), simulator.newResult());
+        assert(game.getWinnerID() == same.getWinnerID() && game.getRounds() == same.getRounds());
+
+        // games hitting the round cap are counted as unfinished
+        simulator.setMaxRounds(1);
+        SimulationResult capped = simulator.run(20, 7);
+        assert(capped.getUnfinishedGames() == 20 && capped.getMaxRounds() == 1);
+    }
+
+    /**
+     * Test that a parallel tournament gives exactly the result of the same batch on one thread.
+     */
+    @Test
+    public void testTournament() {
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIntelligence::new,
+                ArtificialIdiot::new, ArtificialIdiot::new);
+        SimulationResult sequential = simulator.run(3000, 99);
+        SimulationResult parallel = new Tournament(simulator, new ForkJoinPool(4)).run(3000, 99);
+        assert(parallel.getGames() == 3000);
+        assert(parallel.toString().equals(sequential.toString()));
+    }
+
+    /**
+     * Test that a fork plays on exactly like the original game, and does not share state with it.
+     */
+    @Test
+    public void testFork() {
+        for (long seed = 0; seed < 30; seed++) {
+            Game game = new Game(0, 3, seed);
+            game.setUseGUI(false);
+            game.initializeGame();
+            for (int i = 0; i < 5; i++) game.playAIRound();
+            Game fork = game.fork();
+            assert(fork.positionKey() == game.positionKey());
+            for (int i = 0; i < 3; i++) { // players of the fork belong to the fork only
+                Player player = fork.getPlayers().get(i);
+                assert(player.getGameController() == fork && player.getHand() != game.getPlayers().get(i).getHand());
+            }
+            assert(fork.getCardManager() != game.getCardManager() && fork.getRuler() != game.getRuler());
+            boolean finished = game.playHeadless(Simulator.DEFAULT_MAX_ROUNDS);
+            assert(fork.getRounds() <= 6 && fork.positionKey() != game.positionKey()); // the fork did not move
+            assert(fork.playHeadless(Simulator.DEFAULT_MAX_ROUNDS) == finished);
+            assert(fork.getWinnerID() == game.getWinnerID() && fork.getRounds() == game.getRounds());
+            assert(fork.positionKey() == game.positionKey());
+        }
+    }
+
+    /**
+     * Test that AIs pondering during human turns answer instantly when the position was predicted,
+     * and that the game is exactly the same as without pondering, also with an MCTS seat deciding
+     * the color of its wild cards together with them, and when a pondering is restarted before it finished.
+     */
+    @Test
+    public void testPondering() throws Exception {
+        for (long seed = 0; seed < 20; seed++) {
+            Game plain = new Game(1, 2, seed);
+            Game pondering = new Game(1, 2, seed);
+            Ponderer ponderer = null;
+            for (Game game : new Game[]{plain, pondering}) {
+                game.setUseGUI(false);
+                if (seed % 2 == 1) {
+                    game.setManualSetup(true);
+                    ArrayList<Player> players = new ArrayList<>();
+                    players.add(new Player(0, game));
+                    players.add(new MCTSPlayer(1, game, 30, 0, 1));
+                    players.add(new ArtificialIntelligence(2, game));
+                    game.setPlayers(players);
+                }
+                game.initializeGame();
+            }
+            while (plain.pendingDecision() != Game.DECISION_NONE) {
+                assert(plain.positionKey() == pondering.positionKey());
+                if (plain.isHuman(plain.getCurrentPlayerID())) {
+                    if (plain.getRounds() % 2 == 0) pondering.startPondering(); // superseded at once, never answers
+                    ponderer = pondering.startPondering();
+                    ponderer.await(); // a human thinks long enough
+                    int move = humanMove(plain);
+                    assert(plain.step(move) && pondering.step(move));
+                } else {
+                    assert(plain.playAIRound() && pondering.playAIRound());
+                }
+            }
+            assert(pondering.pendingDecision() == Game.DECISION_NONE);
+            assert(plain.getWinnerID() == pondering.getWinnerID() && plain.getRounds() == pondering.getRounds());
+            assert(ponderer != null && ponderer.getHits() > 0);
+        }
+    }
+
+    /**
+     * Helper function choosing a legal move for a human player.
+     */
+    private static int humanMove(Game game) {
+        Player human = game.getPlayers().get(game.getCurrentPlayerID());
+        if (game.pendingDecision() == Game.DECISION_COLOR) return Move.pickColor(2);
+        ArrayList<Integer> legalCards = human.findLegalCard();
+        if (!legalCards.isEmpty()) return Move.playOne(legalCards.get(legalCards.size() - 1));
+        return game.getRuler().getNextPlayerSkiplevel() != 0 ? Move.skip() : Move.drawAndPlay();
+    }
+
+    /**
+     * Test that legalMoves lists exactly the moves step accepts, and that determinize only changes
+     * what the viewer cannot see.
+     */
+    @Test
+    public void testLegalMovesAndDeterminize() {
+        int[] moves = new int[Game.MAX_MOVES];
+        for (long seed = 0; seed < 20; seed++) {
+            Game game = new Game(0, 3, seed);
+            game.setUseGUI(false);
+            game.initializeGame();
+            while (game.pendingDecision() != Game.DECISION_NONE && game.getRounds() < 300) {
+                int numMoves = game.legalMoves(moves);
+                assert(numMoves > 0);
+                for (int i = 0; i < numMoves; i++) assert(game.fork().step(moves[i]));
+                Game fork = game.fork();
+                assert(!fork.step(Move.pickColor(1)) || game.pendingDecision() == Game.DECISION_COLOR);
+                assert(fork.positionKey() == game.positionKey()); // a rejected move changes nothing
+
+                int viewerID = game.getCurrentPlayerID();
+                fork.determinize(viewerID, new GameRandom(seed));
+                assert(fork.getCardManager().numCardLeft() == game.getCardManager().numCardLeft());
+                assert(fork.getCardManager().getDiscardPile().equals(game.getCardManager().getDiscardPile()));
+                ArrayList<Integer> unseen = game.getCardManager().getCardPile();
+                ArrayList<Integer> guessed = fork.getCardManager().getCardPile();
+                for (int i = 0; i < 3; i++) {
+                    List<Integer> hand = game.getPlayerCards(i);
+                    List<Integer> guess = fork.getPlayerCards(i);
+                    assert(guess.size() == hand.size());
+                    if (i == viewerID) {
+                        assert(guess.equals(hand));
+                    } else {
+                        unseen.addAll(hand);
+                        guessed.addAll(guess);
+                    }
+                }
+                Collections.sort(unseen);
+                Collections.sort(guessed);
+                assert(guessed.equals(unseen));
+                game.playAIRound();
+            }
+        }
+    }
+
+    /**
+     * Test that card trackers following strategic AIs never contradict the real game: own cards are seen,
+     * hidden cards are unseen, and inferred voids hold. Before any card is drawn back from the discard pile,
+     * the unseen cards are exactly the hidden ones.
+     */
+    @Test
+    public void testCardTracker() {
+        int voidsFound = 0;
+        for (long seed = 0; seed < 30; seed++) {
+            Game game = new Game(0, 3, seed);
+            game.setUseGUI(false);
+            game.setManualSetup(true);
+            ArrayList<Player> players = new ArrayList<>();
+            CardTracker[] trackers = new CardTracker[3];
+            for (int i = 0; i < 3; i++) {
+                players.add(new ArtificialIntelligence(i, game));
+                trackers[i] = new CardTracker(i, players.get(i));
+                game.addListener(trackers[i]);
+            }
+            game.setPlayers(players);
+            game.initializeGame();
+            while (game.playAIRound()) voidsFound += checkTrackers(game, trackers);
+        }
+        assert(voidsFound > 0);
+    }
+
+    /**
+     * Check card trackers against the real game: own cards are seen, hidden cards are unseen, and inferred voids hold.
+     * Before any card is drawn back from the discard pile, the unseen cards are exactly the hidden ones.
+     * @return number of voids checked
+     */
+    private static int checkTrackers(Game game, CardTracker... trackers) {
+        int voidsFound = 0;
+        for (CardTracker tracker : trackers) {
+            int seat = tracker.getSeat();
+            int[] unseen = new int[CardParser.TOTAL_CARDS];
+            int numUnseen = tracker.unseenCards(unseen);
+            assert(numUnseen == tracker.unseenCount());
+            int byColor = 0;
+            for (int colorID = 0; colorID < CardParser.COLOR_NUM; colorID++) byColor += tracker.unseenColorCount(colorID);
+            assert(byColor == numUnseen);
+
+            ArrayList<Integer> hidden = game.getCardManager().getCardPile();
+            for (int i = 0; i < game.getPlayers().size(); i++) {
+                Hand hand = game.getPlayers().get(i).getHand();
+                for (int cardID : hand.getCards()) assert(tracker.isUnseen(cardID) == (i != seat));
+                if (i == seat) continue;
+                hidden.addAll(hand.getCards());
+                for (int colorID = 0; colorID < CardParser.COLOR_NUM; colorID++) {
+                    double p = tracker.probabilityOfColor(i, colorID);
+                    assert(p >= 0 && p <= 1);
+                    if (tracker.isVoid(i, colorID)) {
+                        assert(hand.colorCount(colorID) == 0 && p == 0);
+                        voidsFound++;
+                    }
+                }
+            }
+            if (game.getCardManager().numReshuffledCards() == 0) {
+                Collections.sort(hidden);
+                assert(hidden.equals(Arrays.asList(Arrays.stream(unseen, 0, numUnseen).boxed().toArray(Integer[]::new))));
+            }
+        }
+        return voidsFound;
+    }
+
+    /**
+     * Test that card trackers infer no void from the draws of seats that may draw by choice: MCTS players draw
+     * while holding legal cards, but the voids of a strategic AI at the same table are still inferred.
+     */
+    @Test
+    public void testCardTrackerWithSearchingSeats() {
+        int voidsFound = 0;
+        for (long seed = 0; seed < 10; seed++) {
+            Game game = new Game(0, 3, seed);
             game.setUseGUI(false);
             game.setManualSetup(true);
+            ArrayList<Player> players = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                players.add(i == 2 && seed % 2 == 0 ? new ArtificialIntelligence(i, game) : new MCTSPlayer(i, game, 8, 0, 1));
+            }
+            game.setPlayers(players);
+            game.initializeGame();
+            CardTracker[] trackers = new CardTracker[2];
+            for (int i = 0; i < 2; i++) trackers[i] = ((MCTSPlayer) players.get(i)).getTracker();
+            while (game.playAIRound() && game.getRounds() < 400) {
+                voidsFound += checkTrackers(game, trackers);
+                for (int i = 0; i < 2; i++) assert(trackers[i].voidColors(1 - i) == 0); // draws of MCTS seats tell nothing
+            }
+        }
+        assert(voidsFound > 0); // inferred from the strategic AI
+    }
 
+    /**
+     * Test that the MCTS AI only makes legal decisions, whatever its budget, and beats the strategic AI.
+     */
+    @Test
+    public void testMCTSPlayer() {
+        int[] moves = new int[Game.MAX_MOVES];
+        for (long seed = 0; seed < 4; seed++) {
+            Game game = new Game(0, 3, seed);
+            game.setUseGUI(false);
+            game.setManualSetup(true);
             ArrayList<Player> players = new ArrayList<>();
-            Player player1 = new ArtificialIntelligence(0, game);
-            players.add(player1);
-            Player player2 = new ArtificialIntelligence(1, game);
-            players.add(player2);
-            Player player3 = new ArtificialIdiot(2, game);
-            players.add(player3);
-            Player player4 = new ArtificialIdiot(3, game);
-            players.add(player4);
+            players.add(new MCTSPlayer(0, game, 30, 0, 2));
+            players.add(new MCTSPlayer(1, game, 0, 2, 1));
+            players.add(new ArtificialIntelligence(2, game));
             game.setPlayers(players);
+            game.initializeGame();
+            while (game.pendingDecision() != Game.DECISION_NONE) {
+                int numMoves = game.legalMoves(moves);
+                AIPlayer ai = (AIPlayer) players.get(game.getCurrentPlayerID());
+                int move = game.pendingDecision() == Game.DECISION_MOVE ? ai.decideMove() : ai.decideColor();
+                assert(Arrays.stream(moves, 0, numMoves).anyMatch(m -> m == move));
+                assert(game.step(move));
+            }
+        }
+
+        // both seats, so that the advantage of playing first cancels out
+        Simulator first = new Simulator((ID, game) -> new MCTSPlayer(ID, game, 100, 0, 1), ArtificialIntelligence::new);
+        Simulator second = new Simulator(ArtificialIntelligence::new, (ID, game) -> new MCTSPlayer(ID, game, 100, 0, 1));
+        long wins = first.run(500, 16).getWins("MCTSPlayer") + second.run(500, 16).getWins("MCTSPlayer");
+        System.out.println("MCTSPlayer won " + wins + " of 1000 games against ArtificialIntelligence");
+        assert(wins > 540); // 583 with these seeds; an even match reaches 540 with probability < 1%
+    }
 
-            game.setPlayerNumbers(0,4);
+    /**
+     * Differential test of the allocation-free ArtificialIntelligence against the original implementation:
+     * in every position reached by the strategic AIs in 300 games, both make the same decisions.
+     */
+    @Test
+    public void testHeuristicRewriteIsIdentical() {
+        int positions = 0;
+        for (long seed = 0; seed < 300; seed++) {
+            Game game = new Game(0, 3, seed);
+            game.setUseGUI(false);
+            game.setManualSetup(true);
+            ArrayList<Player> players = new ArrayList<>();
+            players.add(new ArtificialIntelligence(0, game));
+            players.add(new ArtificialIntelligence(1, game));
+            players.add(new ArtificialIdiot(2, game));
+            game.setPlayers(players);
+            game.setPlayerNumbers(0, 3);
             game.initializeGame();
-            game.gameStart();
-            int winnerID = game.getWinnerID();
-            if (winnerID == 0 || winnerID == 1) intelligenceWin += 1;
-            else idiotWin += 1;
+
+            while (game.pendingDecision() != Game.DECISION_NONE && game.getRounds() < 2000) {
+                Player current = game.getPlayers().get(game.getCurrentPlayerID());
+                if (current instanceof ArtificialIntelligence && game.pendingDecision() == Game.DECISION_MOVE) {
+                    AIPlayer ai = (AIPlayer) current;
+                    LegacyArtificialIntelligence legacy = new LegacyArtificialIntelligence(game.getCurrentPlayerID(), null);
+                    legacy.setGameController(game);
+                    legacy.setRuler(game.getRuler());
+                    legacy.getHand().copyFrom(ai.getHand());
+                    int decision = ai.makeActionDecision();
+                    assert(decision == legacy.makeActionDecision());
+                    if (decision == 1) assert(ai.playCard() == legacy.playCard());
+                    if (!ai.getHand().isEmpty()) assert(ai.pickColor().equals(legacy.pickColor()));
+                    positions++;
+                }
+                game.playAIRound();
+            }
         }
+        assert(positions > 5000);
+    }
 
-        assert(intelligenceWin + idiotWin == totalRounds); // make sure not even a single round failed
-        System.out.println("Artificial intelligence winning rate: " + (intelligenceWin / totalRounds) * 100 + "%");
-        System.out.println("Artificial idiot winning rate: " + (idiotWin / totalRounds) * 100 + "%");
-        assert( (intelligenceWin / totalRounds) * 100 > 50);
+    /**
+     * Test that the decisions of the strategic AI do not allocate on the heap.
+     */
+    @Test
+    public void testHeuristicDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return; // not measurable on this JVM
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemoryEnabled()) return;
+
+        Game game = new Game(0, 2, 5);
+        game.setUseGUI(false);
+        game.initializeGame();
+        AIPlayer ai = (AIPlayer) game.getPlayers().get(game.getCurrentPlayerID());
+        for (int i = 0; i < 20000; i++) ai.decideMove(); // warm up
+        long threadID = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadID);
+        int checksum = 0;
+        for (int i = 0; i < 100000; i++) {
+            checksum += ai.decideMove();
+            checksum += ai.pickColor().length();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadID) - before;
+        assert(checksum != 0);
+        assert(allocated < 10000); // i.e. nothing per decision, only noise of the measurement
+    }
+
+    /**
+     * Copy of the heuristic AI as it was before the allocation-free rewrite.
+     * Used as the reference to check that the rewrite makes identical decisions.
+     */
+    static class LegacyArtificialIntelligence extends AIPlayer {
+
+        private ArrayList<Integer> legalCards;
+
+        /**
+         * Constructor for player objects
+         *
+         * @param ID   An unique integer identifier for a player
+         * @param game An game controller object representing the game player being in
+         */
+        LegacyArtificialIntelligence(int ID, Game game) {
+            super(ID, game);
+        }
+
+
+        /**
+         * This is how AI makes its action decision. This decision should always be legal.
+         * @return 1 ("PlayOwned"), 2 ("Draw&Play"), 3 ("SKip")
+         */
+        public int makeActionDecision() {
+            int currentSkipLevel = getGameController().getRuler().getNextPlayerSkiplevel();
+            if (currentSkipLevel == 3) {
+                return 3; // skip
+            }
+            legalCards = findLegalCard();
+            if (currentSkipLevel != 0 && legalCards.size() == 0) {
+                // there's pending stacked draw, and AI don't have legal card to play
+                return 3; // skip
+            }
+
+            if (legalCards.size() == 0) {
+                // there's no pending stacked draw, and AI don't have legal card to play
+                return 2; // draw and play
+            }
+            return 1; // play owned cards
+        }
+
+        /**
+         * Strategically choose a card to play. Notice AI will only make this decision when it has legal cards.
+         * Also, AI will only play one card at a time.
+         * @return The card (as ID) that AI decided to play
+         */
+        public int playCard() {
+            int nextPlayerID = getGameController().getNextPlayerID();
+            if (getGameController().getPlayerCardNumber(nextPlayerID) <= 2) {
+                return findBestCard_CaseNextPlayerLessThan2();
+            } else {
+                return findBestCard_CommonCase();
+            }
+        }
+
+
+        /**
+         * AI will its preferred color when played a wild cards up calling this function.
+         * @return Color picked by AI
+         */
+        public String pickColor() {
+            ArrayList<Integer> colorRanks = findBestColors(getCards());
+            int bestColorID = colorRanks.get(0);
+            if (bestColorID == 0) { // AI owns A LOT OF wild cards. Extremely low probability.
+                return colorID2color(colorRanks.get(1));
+            }
+            return colorID2color(bestColorID);
+        }
+
+        private int findBestCard_CommonCase() {
+            ArrayList<Integer> priority = calcPriority_CommonCase(legalCards);
+            int maxScore = Collections.max(priority);
+            int maxIndex = priority.indexOf(maxScore);
+            return legalCards.get(maxIndex);
+        }
+
+        /**
+         * Priority Heuristics in common case:
+         * (1) Worst color number > best color skip / draw2 / reserve.
+         * (2) Play 0 first if possible.
+         * (3) Always reserve wild/wildDraw4.
+         * (4) reserve > skip > draw2
+         * @param cards candidate cards.
+         * @return the priority of each card.
+         */
+        private ArrayList<Integer> calcPriority_CommonCase(ArrayList<Integer> cards) {
+            ArrayList<Integer> priority = new ArrayList<>();
+            ArrayList<Integer> colorRanks = findBestColors(getCards()); // best color in all cards
+            for (int i = 0; i < cards.size(); i++) {
+                int cardID = cards.get(i);
+                int colorID = CardParser.colorOf(cardID);
+                int rank = colorRanks.indexOf(colorID); // the ranking of color on the card
+                switch (rank) { // weighing based on color of card
+                    case 0 -> priority.add(8); // best color
+                    case 1 -> priority.add(6);
+                    case 2 -> priority.add(4);
+                    case 3 -> priority.add(2);
+                    case 4 -> priority.add(1); // worst color
+                }
+                String content = CardParser.FACE_NAMES[CardParser.faceOf(cardID)];
+                switch (content) { // weighing based on card content
+                    case "skip" -> priority.set(i, priority.get(i) + 3);
+                    case "draw2" -> priority.set(i, priority.get(i) + 2);
+                    case "reverse" -> priority.set(i, priority.get(i) + 4);
+                    case "0" -> priority.set(i, priority.get(i) + 15);
+                    case "wild", "wildDraw4" -> priority.set(i, priority.get(i) + 1);
+                    default -> priority.set(i, priority.get(i) + 12); // 1-9
+                }
+            }
+            return priority;
+        }
+
+
+        private int findBestCard_CaseNextPlayerLessThan2() {
+            ArrayList<Integer> priority = calcPriority_CaseNextPlayerLessThan2(legalCards);
+            int maxScore = Collections.max(priority);
+            int maxIndex = priority.indexOf(maxScore);
+            return legalCards.get(maxIndex);
+        }
+
+        /**
+         * Priority Heuristics when next player has less than 2 cards left,:
+         * (1) draw2 > reverse > skip > wildDraw4 > wild > 0 > 1-9
+         * (2) worst color draw2/reverse/skip > best number
+         *
+         * @param cards candidate cards.
+         * @return the priority of each card.
+         */
+
+        private ArrayList<Integer> calcPriority_CaseNextPlayerLessThan2(ArrayList<Integer> cards) {
+            ArrayList<Integer> priority = new ArrayList<>();
+            ArrayList<Integer> colorRanks = findBestColors(getCards()); // best color in all cards
+            for (int i = 0; i < cards.size(); i++) {
+                int cardID = cards.get(i);
+                int colorID = CardParser.colorOf(cardID);
+                int rank = colorRanks.indexOf(colorID); // the ranking of color on the card
+                switch (rank) { // weighing based on color of card
+                    case 0 -> priority.add(8); // best color
+                    case 1 -> priority.add(6);
+                    case 2 -> priority.add(4);
+                    case 3 -> priority.add(2);
+                    case 4 -> priority.add(1); // worst color
+                }
+                String content = CardParser.FACE_NAMES[CardParser.faceOf(cardID)];
+                switch (content) {  // weighing based on card content
+                    case "skip" -> priority.set(i, priority.get(i) + 3);
+                    case "draw2" -> priority.set(i, priority.get(i) + 15);
+                    case "reverse" -> priority.set(i, priority.get(i) + 12);
+                    case "0" -> priority.set(i, priority.get(i) + 2);
+                    case "wild", "wildDraw4" -> priority.set(i, priority.get(i) + 8);
+                    default -> priority.set(i, priority.get(i) + 1); // 1-9
+                }
+            }
+            return priority;
+        }
+
+
+        /**
+         * Find the best color that AI currently own most.
+         *
+         * @param cards candidate cards to be considered.
+         *              0 NA, 1 red , 2 green, 3 blue, 4 yellow
+         * @return ranking of owned color as ArrayList
+         */
+
+        private ArrayList<Integer> findBestColors(List<Integer> cards) {
+            ArrayList<Integer> weights = new ArrayList<>();
+            for (int i = 0; i < 5; i++) weights.add(0);  // 0 0 0 0 0
+
+            // adding weight by iterating through hand cards
+            for (Integer card : cards) {
+                String content = CardParser.FACE_NAMES[CardParser.faceOf(card)];
+                int colorID = CardParser.colorOf(card);
+                switch (content) { // different cards should have different weight contribution
+                    case "skip" -> weights.set(colorID, weights.get(colorID) + 5);
+                    case "draw2" -> weights.set(colorID, weights.get(colorID) + 6);
+                    case "reverse" -> weights.set(colorID, weights.get(colorID) + 4);
+                    case "0" -> weights.set(colorID, weights.get(colorID) + 2);
+                    case "wild", "wildDraw4" -> weights.set(colorID, weights.get(colorID) + 1);//reserve wild cards
+                    default -> weights.set(colorID, weights.get(colorID) + 4);
+                }
+            }
+            return argsort(weights.toArray(), false);
+        }
+
+
+        /**
+         * Return sorted indices of given arraylist. (descending order)
+         * e.g. given array [4,1,2,3] -> return [0,3,2,1]
+         * Notice this version only support Integer!
+         * Equivalent to argsort in python.
+         */
+        private ArrayList<Integer> argsort(final Object[] arrayToSort, boolean ascending) {
+            Integer[] indices = new Integer[arrayToSort.length];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i;
+            }
+            Arrays.sort(indices, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer i1, final Integer i2) {
+                    return (ascending ? 1 : -1) * Integer.compare((Integer) arrayToSort[i1], (Integer) arrayToSort[i2]);
+                }
+            });
+            return new ArrayList<>(Arrays.asList(indices));
+        }
     }
 }
@@ -0,0 +1,505 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import UNO.*;
+
+/**
+ * Tests of the game engine driven from outside the game loop:
+ * 1. stepping moves and rejecting illegal ones
+ * 2. make/unmake, Zobrist keys and the transposition table used by searches
+ * 3. pacing of the pages of AI rounds, saving and resuming games
+ */
+
+class GameTest {
+    /**
+     * 1. Test the steppable engine: a game driven move by move from outside (as a server or GUI would) rejects
+     * illegal moves without side effects, and plays exactly like the headless game loop with the same seed.
+     */
+    @Test
+    public void testSteppableEngine() {
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIdiot::new);
+        Game reference = simulator.playOne(31, simulator.newResult());
+
+        Game game = new Game(0, 2, 31);
+        game.setManualSetup(true);
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(new ArtificialIntelligence(0, game));
+        players.add(new ArtificialIdiot(1, game));
+        game.setPlayers(players);
+        game.initializeGame();
+
+        RuleController ruler = game.getRuler();
+        while (game.pendingDecision() != Game.DECISION_NONE) {
+            AIPlayer player = (AIPlayer) game.getPlayers().get(game.getCurrentPlayerID());
+            long state = ruler.getState();
+            int handSize = player.getHand().size();
+            int rounds = game.getRounds();
+
+            // moves not answering the pending decision, or not legal, change nothing
+            int wrongKind = game.pendingDecision() == Game.DECISION_COLOR ? Move.skip() : Move.pickColor(1);
+            int wrongSkip = ruler.getNextPlayerSkiplevel() == 0 ? Move.skip() : Move.drawAndPlay();
+            int notOwned = 0;
+            for (int cardID = 1; cardID <= 108 && notOwned == 0; cardID++) {
+                if (!player.getHand().contains(cardID)) notOwned = Move.playOne(cardID);
+            }
+            for (int move : new int[]{wrongKind, wrongSkip, notOwned, 0, Move.pickColor(0), Move.pickColor(5)}) {
+                if (game.pendingDecision() == Game.DECISION_MOVE && Move.kind(move) == Move.PICK_COLOR) continue;
+                assert(!game.step(move));
+                assert(ruler.getState() == state && player.getHand().size() == handSize && game.getRounds() == rounds);
+            }
+
+            int move = game.pendingDecision() == Game.DECISION_COLOR ? player.decideColor() : player.decideMove();
+            assert(game.step(move));
+            assert(game.getRounds() >= rounds);
+        }
+        assert(!game.step(Move.skip()) && !game.step(Move.drawAndPlay())); // game over
+        assert(game.getWinnerID() == reference.getWinnerID() && game.getRounds() == reference.getRounds());
+        assert(game.getPlayers().get(game.getWinnerID()).getHand().isEmpty());
+        assert(Move.describe(Move.playTwo(1, 3, TwoCardRule.OP_ADD))
+                .equals("add " + RuleController.parser.parseCardID(1) + " + " + RuleController.parser.parseCardID(3)));
+    }
+
+    /**
+     * 2. Test the frame pacer: presenting frames does not wait for them to be shown, frames are shown one gap apart
+     * in order, each is hidden before the next one is shown, and beyond MAX_BACKLOG frames presenting waits instead.
+     */
+    @Test
+    public void testFramePacer() throws InterruptedException {
+        FramePacer pacer = new FramePacer(40);
+        StringBuffer events = new StringBuffer();
+        long[] shownAt = new long[3];
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            int frame = i;
+            pacer.present(() -> { shownAt[frame] = System.nanoTime(); events.append("show").append(frame); },
+                    () -> events.append("hide").append(frame));
+        }
+        assert(events.toString().equals("show0")); // the caller was not paused until later frames were shown
+        assert(pacer.backlogMillis() > 80);
+        for (int wait = 0; wait < 100 && !events.toString().endsWith("hide2"); wait++) Thread.sleep(20);
+        assert(events.toString().equals("show0hide0show1hide1show2hide2"));
+        for (int i = 1; i < 3; i++) assert(shownAt[i] - start >= i * 39_000_000L); // never shown early
+        assert(pacer.backlogMillis() == 0);
+
+        // without gap, frames are presented at once
+        FramePacer instant = new FramePacer(0);
+        StringBuffer instantEvents = new StringBuffer();
+        instant.present(() -> instantEvents.append("show"), () -> instantEvents.append("hide"));
+        assert(instantEvents.toString().equals("showhide"));
+
+        // a game far ahead of the screen waits for it, and every frame is shown in order
+        FramePacer bounded = new FramePacer(10);
+        int frames = FramePacer.MAX_BACKLOG + 20;
+        StringBuffer order = new StringBuffer();
+        AtomicInteger[] shown = new AtomicInteger[frames];
+        AtomicInteger[] hidden = new AtomicInteger[frames];
+        long boundedStart = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            int frame = i;
+            shown[i] = new AtomicInteger();
+            hidden[i] = new AtomicInteger();
+            bounded.present(() -> { shown[frame].incrementAndGet(); order.append(frame).append(' '); },
+                    () -> hidden[frame].incrementAndGet());
+            assert(bounded.backlogMillis() <= (FramePacer.MAX_BACKLOG + 1) * 10);
+        }
+        assert(System.nanoTime() - boundedStart >= (frames - 1 - FramePacer.MAX_BACKLOG) * 9_000_000L);
+        for (int wait = 0; wait < 100 && hidden[frames - 1].get() == 0; wait++) Thread.sleep(20);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < frames; i++) {
+            expected.append(i).append(' ');
+            assert(shown[i].get() == 1 && hidden[i].get() == 1);
+        }
+        assert(order.toString().equals(expected.toString()));
+
+        // a new gap applies to the frames presented afterwards
+        bounded.setGap(0);
+        StringBuffer changed = new StringBuffer();
+        bounded.present(() -> changed.append("show"), () -> changed.append("hide"));
+        assert(changed.toString().equals("showhide") && bounded.backlogMillis() == 0);
+    }
+
+    /**
+     * 3. Test make/unmake: random sequences of moves are undone exactly (piles and their random stream included,
+     * so the same moves made again give the same positions) without telling the listeners of the game (a card tracker
+     * keeps its knowledge), the game equals a replay of its moves from scratch,
+     * and a depth-first walk of the move tree with make/unmake finds the same positions as forking, without allocating.
+     */
+    @Test
+    public void testMakeUnmakeMove() {
+        int reshuffled = 0;
+        for (long seed = 0; seed < 40; seed++) {
+            Game game = newHeadlessGame(seed);
+            CardTracker tracker = new CardTracker(0, game.getPlayers().get(0));
+            AtomicInteger events = new AtomicInteger();
+            game.addListener(tracker);
+            game.addListener(new GameListener() {
+                @Override
+                public void cardPlayed(int playerID, int cardID) {
+                    events.incrementAndGet();
+                }
+
+                @Override
+                public void cardDrawn(int playerID, int cardID, boolean fromDiscardPile) {
+                    events.incrementAndGet();
+                }
+            });
+            GameRandom random = new GameRandom(seed);
+            ArrayList<Integer> played = new ArrayList<>();
+            int[] moves = new int[Game.MAX_MOVES];
+            int[] line = new int[4];
+            String[] positions = new String[4];
+            while (game.pendingDecision() != Game.DECISION_NONE && game.getRounds() < 400) {
+                String before = describe(game);
+                String knowledge = describe(tracker, game);
+                int reported = events.get();
+                int depth = 1 + random.nextInt(line.length);
+                for (int round = 0; round < 2; round++) { // the second time, replay the same line
+                    int made = 0;
+                    for (; made < depth && game.pendingDecision() != Game.DECISION_NONE; made++) {
+                        if (round == 0) line[made] = moves[random.nextInt(game.legalMoves(moves))];
+                        assert(game.makeMove(line[made]));
+                        if (round == 0) positions[made] = describe(game);
+                        else assert(describe(game).equals(positions[made]));
+                    }
+                    depth = made;
+                    for (int i = 0; i < made; i++) game.unmakeMove();
+                    assert(describe(game).equals(before) && game.undoableMoves() == 0);
+                }
+                assert(events.get() == reported && describe(tracker, game).equals(knowledge)); // listeners never saw the search
+                int move = moves[random.nextInt(game.legalMoves(moves))];
+                assert(game.step(move));
+                played.add(move);
+            }
+            reshuffled += game.getCardManager().numReshuffledCards();
+
+            Game replay = newHeadlessGame(seed);
+            for (int move : played) assert(replay.step(move));
+            assert(describe(replay).equals(describe(game)));
+        }
+        assert(reshuffled > 0); // draws from discard pile were undone too
+
+        int[][] buffers = new int[4][Game.MAX_MOVES];
+        for (long seed = 0; seed < 10; seed++) {
+            Game game = newHeadlessGame(seed);
+            for (int i = 0; i < 8; i++) game.playAIRound();
+            assert(perftMakeUnmake(game, 3, buffers) == perftFork(game, 3));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        Game game = newHeadlessGame(7);
+        for (int i = 0; i < 8; i++) game.playAIRound();
+        perftMakeUnmake(game, 4, buffers); // the journal grows to its size
+        long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long leaves = perftMakeUnmake(game, 4, buffers);
+        bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+        assert(leaves > 50 && bytes < 1000);
+    }
+
+    /**
+     * Helper function creating an initialized game of three AIs, without GUI.
+     */
+    static Game newHeadlessGame(long seed) {
+        Game game = new Game(0, 3, seed);
+        game.setUseGUI(false);
+        game.initializeGame();
+        return game;
+    }
+
+    /**
+     * Number of positions reached by all sequences of depth moves, walked with make/unmake.
+     */
+    private static long perftMakeUnmake(Game game, int depth, int[][] buffers) {
+        if (depth == 0 || game.pendingDecision() == Game.DECISION_NONE) return 1;
+        int[] moves = buffers[depth - 1];
+        int numMoves = game.legalMoves(moves);
+        long leaves = 0;
+        for (int i = 0; i < numMoves; i++) {
+            assert(game.makeMove(moves[i]));
+            leaves += perftMakeUnmake(game, depth - 1, buffers);
+            game.unmakeMove();
+        }
+        return leaves;
+    }
+
+    /**
+     * Same as perftMakeUnmake, walked with forks.
+     */
+    private static long perftFork(Game game, int depth) {
+        if (depth == 0 || game.pendingDecision() == Game.DECISION_NONE) return 1;
+        int[] moves = new int[Game.MAX_MOVES];
+        int numMoves = game.legalMoves(moves);
+        long leaves = 0;
+        for (int i = 0; i < numMoves; i++) {
+            Game child = game.fork();
+            assert(child.step(moves[i]));
+            leaves += perftFork(child, depth - 1);
+        }
+        return leaves;
+    }
+
+    /**
+     * Helper function listing what a card tracker knows: the unseen cards and the colors every player lacks.
+     */
+    private static String describe(CardTracker tracker, Game game) {
+        StringBuilder knowledge = new StringBuilder();
+        for (int cardID = 1; cardID <= 108; cardID++) knowledge.append(tracker.isUnseen(cardID) ? '1' : '0');
+        for (int seat = 0; seat < game.getPlayers().size(); seat++) knowledge.append(' ').append(tracker.voidColors(seat));
+        return knowledge.toString();
+    }
+
+    /**
+     * Everything of a game position, as a string: rule state, turn, winner, rounds, hands, and both piles in order.
+     */
+    static String describe(Game game) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(game.getRuler().getState()).append(' ').append(game.getCurrentPlayerID()).append(' ')
+                .append(game.getWinnerID()).append(' ').append(game.getRounds()).append(' ');
+        for (Player player : game.getPlayers()) {
+            builder.append(player.getCards()).append(player.getLastDrawnCard()).append(' ');
+        }
+        builder.append(game.getCardManager().getCardPile()).append(game.getCardManager().getDiscardPile())
+                .append(game.getCardManager().numReshuffledCards()).append(' ')
+                .append(game.getCardManager().getRandomState());
+        return builder.toString();
+    }
+
+    /**
+     * 4. Test Zobrist hashing: the incremental key always equals the key computed from scratch, make/unmake gives
+     * the key back, and different positions of random games never share a key.
+     */
+    @Test
+    public void testZobristHashing() {
+        java.util.HashMap<Long, String> positions = new java.util.HashMap<>();
+        int[] moves = new int[Game.MAX_MOVES];
+        for (long seed = 0; seed < 30; seed++) {
+            Game game = newHeadlessGame(seed);
+            GameRandom random = new GameRandom(seed);
+            while (game.pendingDecision() != Game.DECISION_NONE && game.getRounds() < 300) {
+                long key = game.zobristKey();
+                assert(key == Zobrist.of(game));
+                String position = describeVisible(game);
+                String previous = positions.putIfAbsent(key, position);
+                assert(previous == null || previous.equals(position));
+
+                int numMoves = game.legalMoves(moves);
+                for (int i = 0; i < numMoves; i++) {
+                    assert(game.makeMove(moves[i]));
+                    assert(game.zobristKey() == Zobrist.of(game) && game.zobristKey() != key);
+                    game.unmakeMove();
+                    assert(game.zobristKey() == key);
+                }
+                assert(game.step(moves[random.nextInt(numMoves)]));
+            }
+        }
+        assert(positions.size() > 1000);
+    }
+
+    /**
+     * Everything of a position which is part of its Zobrist key.
+     */
+    private static String describeVisible(Game game) {
+        RuleController ruler = game.getRuler();
+        StringBuilder builder = new StringBuilder();
+        builder.append(ruler.getMatchableColorID()).append(' ').append(ruler.getMatchableNumberID()).append(' ')
+                .append(ruler.getMatchableSymbolID()).append(' ').append(ruler.getNextPlayerSkiplevel()).append(' ')
+                .append(ruler.getPenaltyDraw()).append(' ').append(ruler.getIsClockwise()).append(' ')
+                .append(ruler.isWaitingForColor()).append(' ').append(game.getCardManager().topCard()).append(' ')
+                .append(game.getCurrentPlayerID()).append(' ').append(game.getWinnerID());
+        for (Player player : game.getPlayers()) builder.append(player.getCards());
+        return builder.toString();
+    }
+
+    /**
+     * 5. Test the transposition table: entries are found again, the replacement policy keeps the deepest entries
+     * of the current search, and threads hammering a small table never read an entry of another key.
+     */
+    @Test
+    public void testTranspositionTable() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(4);
+        assert(table.capacity() == 16);
+        long a = 1L << 32 | 1, b = 2L << 32 | 2, c = 3L << 32 | 3, d = 4L << 32 | 4; // all in the same bucket
+        assert(table.probe(a) == 0);
+        assert(table.store(a, -7, 5) && table.store(b, 3, 3));
+        assert(TranspositionTable.value(table.probe(a)) == -7 && TranspositionTable.depth(table.probe(a)) == 5);
+        assert(TranspositionTable.value(table.probe(b)) == 3);
+        assert(!table.store(c, 1, 1) && table.probe(c) == 0); // shallower than both
+        assert(table.store(d, 4, 4) && table.probe(b) == 0 && table.probe(d) != 0); // replaces the shallowest
+        assert(table.store(a, 8, 2) && TranspositionTable.value(table.probe(a)) == 8); // same key is overwritten
+        table.newSearch();
+        assert(table.store(c, 1, 0) && table.probe(c) != 0); // entries of the previous search go first
+        table.clear();
+        assert(table.probe(a) == 0 && table.probe(c) == 0 && table.probe(d) == 0);
+
+        TranspositionTable shared = new TranspositionTable(8);
+        AtomicInteger hits = new AtomicInteger();
+        AtomicInteger wrong = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                GameRandom random = new GameRandom(seed);
+                for (int i = 0; i < 200000; i++) {
+                    long key = random.nextInt(2000) * 0x9E3779B97F4A7C15L;
+                    if (random.nextInt(2) == 0) {
+                        shared.store(key, (int) (key >>> 20), random.nextInt(8));
+                    } else {
+                        long entry = shared.probe(key);
+                        if (entry == 0) continue;
+                        hits.incrementAndGet();
+                        if (TranspositionTable.value(entry) != (int) (key >>> 20)) wrong.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assert(hits.get() > 0 && wrong.get() == 0);
+    }
+
+    /**
+     * 6. Test save and resume: a game resumed from a snapshot is in the same position, waits for the same decision
+     * of the same player and plays on exactly like the saved game, and the auto-saver keeps the newest snapshot.
+     */
+    @Test
+    public void testSaveAndResume() throws Exception {
+        ByteBuffer snapshot = ByteBuffer.allocate(Game.SNAPSHOT_BYTES);
+        for (long seed = 0; seed < 20; seed++) {
+            Game game = newHeadlessGame(seed);
+            while (game.getRounds() < 5 + 7 * seed && game.playAIRound());
+            snapshot.clear();
+            game.saveSnapshot(snapshot);
+            snapshot.flip();
+            Game resumed = Game.fromSnapshot(snapshot);
+            resumed.setUseGUI(false);
+            assert(!snapshot.hasRemaining());
+            assert(describe(resumed).equals(describe(game)));
+            assert(resumed.pendingDecision() == game.pendingDecision() && resumed.getSeed() == seed);
+            assert(resumed.getPlayers().get(0) instanceof ArtificialIntelligence);
+            game.playHeadless(Simulator.DEFAULT_MAX_ROUNDS);
+            resumed.playHeadless(Simulator.DEFAULT_MAX_ROUNDS);
+            assert(describe(resumed).equals(describe(game)));
+        }
+
+        /* a snapshot taken while a player has to pick a color */
+        Game game = newHeadlessGame(7);
+        int[] moves = new int[Game.MAX_MOVES];
+        while (game.pendingDecision() == Game.DECISION_MOVE) {
+            int wild = 0;
+            for (int i = game.legalMoves(moves) - 1; i >= 0; i--) {
+                if (Move.kind(moves[i]) == Move.PLAY_ONE && CardParser.faceOf(Move.cardOne(moves[i])) >= CardParser.FACE_WILD) wild = moves[i];
+            }
+            if (wild != 0) game.step(wild);
+            else game.playAIRound();
+        }
+        assert(game.pendingDecision() == Game.DECISION_COLOR);
+        snapshot.clear();
+        game.saveSnapshot(snapshot);
+        snapshot.flip();
+        Game resumed = Game.fromSnapshot(snapshot);
+        assert(resumed.pendingDecision() == Game.DECISION_COLOR && resumed.getCurrentPlayerID() == game.getCurrentPlayerID());
+        assert(game.step(Move.pickColor(CardParser.COLOR_BLUE)) && resumed.step(Move.pickColor(CardParser.COLOR_BLUE)));
+        assert(describe(resumed).equals(describe(game)));
+
+        /* seats of every kind */
+        Game mixed = new Game(1, 2, 3);
+        mixed.setManualSetup(true);
+        mixed.setPlayers(new ArrayList<>(java.util.List.of(new ArtificialIdiot(0, mixed), new Player(1, mixed),
+                new MCTSPlayer(2, mixed))));
+        mixed.initializeGame();
+        snapshot.clear();
+        mixed.saveSnapshot(snapshot);
+        snapshot.flip();
+        Game mixedResumed = Game.fromSnapshot(snapshot);
+        ArrayList<Player> seats = mixedResumed.getPlayers();
+        assert(seats.get(0) instanceof ArtificialIdiot && seats.get(1).isHuman() && seats.get(2) instanceof MCTSPlayer);
+        CardTracker tracker = ((MCTSPlayer) seats.get(2)).getTracker(); // knows the resumed position, not the deal
+        for (int cardID = 1; cardID <= CardParser.TOTAL_CARDS; cardID++) {
+            boolean seen = seats.get(2).getHand().contains(cardID)
+                    || mixedResumed.getCardManager().getDiscardPile().contains(cardID);
+            assert(tracker.isUnseen(cardID) == !seen);
+        }
+        assert(tracker.unseenCount() == CardParser.TOTAL_CARDS - 7 - mixedResumed.getCardManager().numLeftDiscardPile());
+        Game crowded = new Game(Game.MAX_SAVED_PLAYERS + 1, 0, 5); // not even dealt, the deck is too small
+        ArrayList<Player> crowd = new ArrayList<>();
+        for (int i = 0; i <= Game.MAX_SAVED_PLAYERS; i++) crowd.add(new Player(i, crowded));
+        crowded.setPlayers(crowd);
+        boolean tooLarge = false;
+        try {
+            crowded.saveSnapshot(ByteBuffer.allocate(2 * Game.SNAPSHOT_BYTES));
+        } catch (IllegalArgumentException e) {
+            tooLarge = true;
+        }
+        assert(tooLarge);
+        boolean rejected = false;
+        try {
+            Game.fromSnapshot(ByteBuffer.wrap(ReplayLog.MAGIC));
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assert(rejected);
+
+        /* auto-save every 8 rounds: the save holds the newest snapshot, and resumes like the game goes on */
+        Path directory = Files.createTempDirectory("uno-save");
+        Path file = directory.resolve("table.save");
+        game = newHeadlessGame(11);
+        String saved = null;
+        try (AutoSaver saver = new AutoSaver(file, 8)) {
+            game.setAutoSaver(saver);
+            while (game.getRounds() < 20 && game.playAIRound()) {
+                if (game.getRounds() == 16) saved = describe(game);
+            }
+            saver.flush();
+            resumed = AutoSaver.load(file);
+            resumed.setUseGUI(false);
+            assert(resumed.getRounds() == 16 && describe(resumed).equals(saved));
+            game.playHeadless(Simulator.DEFAULT_MAX_ROUNDS);
+            resumed.playHeadless(Simulator.DEFAULT_MAX_ROUNDS);
+            assert(describe(resumed).equals(describe(game)));
+        }
+        assert(describe(AutoSaver.load(file)).equals(describe(game))); // the end of the game is saved on close
+        Files.delete(file);
+        Files.delete(directory);
+
+        boolean failed = false;
+        try (AutoSaver saver = new AutoSaver(directory.resolve("table.save"), 1)) {
+            saver.save(game);
+        } catch (java.io.IOException e) {
+            failed = true; // the directory is gone
+        }
+        assert(failed);
+    }
+
+    /**
+     * 7. Test that step rejects a move without changing anything, in particular a play while a skip card is
+     * pending, which used to lift the skip.
+     */
+    @Test
+    public void testRejectedMoveHasNoEffect() {
+        int skippedPositions = 0;
+        int[] moves = new int[Game.MAX_MOVES];
+        for (long seed = 0; seed < 40; seed++) {
+            Game game = newHeadlessGame(seed);
+            while (game.pendingDecision() == Game.DECISION_MOVE && game.getRounds() < 300) {
+                int numMoves = game.legalMoves(moves);
+                java.util.HashSet<Integer> legal = new java.util.HashSet<>();
+                for (int i = 0; i < numMoves; i++) legal.add(moves[i]);
+                String before = describe(game);
+                long key = game.positionKey();
+                int skipLevel = game.getNextPlayerSkiplevel();
+                if (skipLevel == 3) skippedPositions++;
+                for (int cardID : new ArrayList<>(game.getPlayerCards(game.getCurrentPlayerID()))) {
+                    int move = Move.playOne(cardID);
+                    if (legal.contains(move)) continue;
+                    assert(!game.step(move));
+                    assert(game.positionKey() == key && game.getNextPlayerSkiplevel() == skipLevel);
+                    assert(describe(game).equals(before));
+                }
+                game.playAIRound();
+            }
+        }
+        assert(skippedPositions > 0);
+    }
+}
@@ -172,6 +172,104 @@ class PlayerTest {
 
 
 
+    /**
+     * Test 6
+     * Test the bitset hand keeps its color/face counters and read-only list view consistent with its content
+     */
+    @Test
+    void testHandCounters() {
+        Player player = new Player(0, null);
+        for (int cardID : new int[]{1, 10, 25, 26, 64, 65, 100, 101, 108}) player.addOneCard(cardID);
+        Hand hand = player.getHand();
+        assert (hand.size() == 9);
+        assert (hand.colorCount(CardParser.COLOR_RED) == 3);
+        assert (hand.colorCount(CardParser.COLOR_NA) == 2);
+        assert (hand.faceCount(1) == 3);  // red 1 (1), red 1 (10), green 1 (26)
+        assert (hand.faceCount(0) == 2);  // red 0 (25), yellow 0 (100)
+        assert (player.getCards().get(4) == 64 && player.getCards().get(5) == 65);
+
+        player.removeOneCard(10);
+        player.removeOneCard(10); // removing a card not owned has no effect
+        assert (hand.size() == 8 && !hand.contains(10));
+        assert (hand.colorCount(CardParser.COLOR_RED) == 2);
+        assert (!player.getCards().contains(10));
+        for (int cardID : player.getCards()) assert (hand.contains(cardID));
+
+        boolean rejected = false; // the view is shared, changing it must not go unnoticed
+        try {
+            player.getCards().add(10);
+        } catch (UnsupportedOperationException e) {
+            rejected = true;
+        }
+        assert (rejected && !hand.contains(10) && !player.getCards().contains(10));
+    }
+
+    /**
+     * Test 7
+     * Test the precomputed addition/subtraction tables against the card descriptions for every pair of cards,
+     * and that findTwoCardPairs enumerates exactly the composable pairs of a hand.
+     */
+    @Test
+    void testTwoCardTable() {
+        CardParser parser = new CardParser();
+        Player player = new Player(0, null);
+        int expectedPairs = 0;
+        for (int i = 1; i <= 108; i++) {
+            player.addOneCard(i);
+            for (int j = 1; j <= 108; j++) {
+                String[] card1 = parser.parseCardDescription(parser.parseCardID(i));
+                String[] card2 = parser.parseCardDescription(parser.parseCardID(j));
+                boolean composable = card1[0].equals(card2[0]) && card1[1].equals("num") && card2[1].equals("num");
+                int num1 = composable ? Integer.parseInt(card1[2]) : 0;
+                int num2 = composable ? Integer.parseInt(card2[2]) : 0;
+
+                int added = TwoCardRule.add(i, j);
+                if (composable && num1 + num2 <= 9) {
+                    assert (parser.parseCardID(added).equals(card1[0] + " num " + (num1 + num2)));
+                    if (i < j) expectedPairs++;
+                } else {
+                    assert (added == -1);
+                }
+                int subtracted = TwoCardRule.sub(i, j);
+                if (composable) {
+                    assert (parser.parseCardID(subtracted).equals(card1[0] + " num " + Math.abs(num1 - num2)));
+                    if (i < j) expectedPairs++;
+                } else {
+                    assert (subtracted == -1);
+                }
+            }
+        }
+        int[] pairs = new int[TwoCardRule.MAX_PAIRS];
+        assert (player.findTwoCardPairs(pairs) == expectedPairs);
+        assert (expectedPairs <= TwoCardRule.MAX_PAIRS);
+    }
+
+    /**
+     * Test 8
+     * Test Draw & Play fails without touching the piles when there is no card left to draw,
+     * even if the card the player drew last would be playable
+     */
+    @Test
+    void testDrawAndPlayWithEmptyPiles() {
+        CardParser parser = new CardParser();
+        Game game = new Game(1,0);
+        game.initializeGame();
+        Player player = game.getPlayers().get(0);
+        player.drawCards(108); // takes both piles
+        CardManager cardManager = game.getCardManager();
+        assert (cardManager.numCardLeft() == 0 && cardManager.numLeftDiscardPile() == 0);
+
+        int staleCard = player.getLastDrawnCard();
+        int handSize = player.getHand().size();
+        RuleController ruler = game.getRuler();
+        setCurrentState(ruler, parser.parseCardDescription(parser.parseCardID(staleCard))[0], "", "", 0);
+        assert (ruler.isValidPlay(player, staleCard, false));
+
+        assert (!player.optionDrawCardAndPlay());
+        assert (player.getHand().size() == handSize && player.getHand().contains(staleCard));
+        assert (cardManager.numLeftDiscardPile() == 0);
+    }
+
     /**
      * helper function to set current game state based on previous player's move
      */
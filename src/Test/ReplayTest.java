@@ -0,0 +1,309 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import UNO.*;
+
+/**
+ * Tests of recorded games: the replay log, the replay engine seeking its games, the replay archive
+ * and the move columns extracted from it.
+ */
+
+class ReplayTest {
+    /**
+     * 1. Test the replay log: a batch of games is recorded at a few bytes per event, without allocating on the game
+     * thread, and replaying the recorded moves on games with the recorded seeds draws exactly the recorded cards.
+     */
+    @Test
+    public void testReplayLog() throws Exception {
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIdiot::new, ArtificialIntelligence::new);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplayLog log = new ReplayLog(Channels.newChannel(bytes));
+        simulator.setReplayLog(log);
+        simulator.run(5, 2021); // warm up
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadID = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadID);
+        simulator.run(5, 30, 2021);
+        long recording = threads.getThreadAllocatedBytes(threadID) - before;
+        simulator.setReplayLog(null);
+        before = threads.getThreadAllocatedBytes(threadID);
+        SimulationResult result = simulator.run(5, 30, 2021);
+        long playing = threads.getThreadAllocatedBytes(threadID) - before;
+        assert(recording - playing < 16 * 1024);
+        log.close();
+
+        ReplayReader reader = new ReplayReader(ByteBuffer.wrap(bytes.toByteArray()));
+        java.util.ArrayDeque<Integer> drawn = new java.util.ArrayDeque<>(); // seat << 8 | card of the replayed draws
+        Game game = null;
+        int games = 0, events = 0, finished = 0;
+        while (reader.next()) {
+            events++;
+            switch (reader.type()) {
+                case ReplayLog.GAME -> {
+                    assert(game == null || game.pendingDecision() == Game.DECISION_NONE || game.getRounds() > Simulator.DEFAULT_MAX_ROUNDS);
+                    assert(drawn.isEmpty());
+                    game = new Game(0, (int) reader.operand(1), reader.operand(0));
+                    game.setUseGUI(false);
+                    game.setManualSetup(true);
+                    ArrayList<Player> seats = new ArrayList<>();
+                    for (int i = 0; i < reader.operand(1); i++) seats.add(new ArtificialIdiot(i, game));
+                    game.setPlayers(seats);
+                    game.addListener(new GameListener() {
+                        @Override
+                        public void cardDrawn(int playerID, int cardID, boolean fromDiscardPile) {
+                            drawn.add(playerID << 8 | cardID);
+                        }
+                    });
+                    game.initializeGame();
+                    assert(reader.operand(2) == 0 && game.getCurrentPlayerID() == reader.operand(3));
+                    games++;
+                }
+                case ReplayLog.DRAW, ReplayLog.DRAW_DISCARD -> {
+                    assert(!drawn.isEmpty() && drawn.poll() == (reader.seat() << 8 | reader.card()));
+                }
+                case ReplayLog.END -> {
+                    assert(game.getWinnerID() == reader.seat() && game.getRounds() == reader.operand(0));
+                    finished++;
+                }
+                case ReplayLog.CHECKSUM -> {
+                    assert((int) game.positionKey() == (int) reader.operand(0));
+                }
+                default -> {
+                    assert(reader.isMove() && reader.seat() == game.getCurrentPlayerID());
+                    assert(game.step(reader.move()));
+                }
+            }
+        }
+        assert(reader.position() == bytes.size());
+        assert(games == 30 && finished >= result.getGames() - result.getUnfinishedGames());
+        assert(bytes.size() < 3 * events);
+    }
+
+    /**
+     * 2. Test the replay engine: seeking moves of recorded games in any order, through checkpoints, gives the
+     * positions of a straight replay, and a corrupted log is caught by its checksums.
+     */
+    @Test
+    public void testReplayEngine() throws Exception {
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIdiot::new, ArtificialIntelligence::new,
+                ArtificialIdiot::new);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ReplayLog log = new ReplayLog(Channels.newChannel(bytes))) {
+            simulator.setReplayLog(log);
+            simulator.run(12, 2022);
+            Simulator.PlayerFactory[] seats = new Simulator.PlayerFactory[12]; // states larger than for 10 seats
+            java.util.Arrays.fill(seats, (Simulator.PlayerFactory) ArtificialIntelligence::new);
+            Simulator crowded = new Simulator(seats);
+            crowded.setReplayLog(log);
+            crowded.run(2, 2022);
+        }
+        ReplayEngine engine = new ReplayEngine(ByteBuffer.wrap(bytes.toByteArray()));
+        assert(engine.numGames() == 14 && engine.seed(5) == GameRandom.seedOf(2022, 5));
+        assert(engine.firstDivergingGame() == -1);
+
+        GameRandom random = new GameRandom(2022);
+        for (int gameIndex = 0; gameIndex < engine.numGames(); gameIndex++) {
+            ArrayList<String> positions = new ArrayList<>(); // position after every move of a straight replay
+            Game replayed = engine.replay(gameIndex, new ReplayEngine.ReplayListener() {
+                @Override
+                public void gameStarted(int gameIndex, Game game) {
+                    positions.add(GameTest.describe(game));
+                }
+
+                @Override
+                public void moveApplied(int gameIndex, int turn, int seat, int move, Game game) {
+                    assert(turn == positions.size() - 1);
+                    positions.add(GameTest.describe(game));
+                }
+            });
+            int numMoves = positions.size() - 1;
+            assert(engine.numMoves(gameIndex) == numMoves && replayed.getWinnerID() != -1);
+            for (int i = 0; i < 40; i++) {
+                int turn = random.nextInt(numMoves + 1);
+                assert(GameTest.describe(engine.seek(gameIndex, turn)).equals(positions.get(turn)));
+            }
+            assert(GameTest.describe(engine.seek(gameIndex, numMoves + 10)).equals(positions.get(numMoves)));
+        }
+
+        byte[] corrupted = bytes.toByteArray();
+        ReplayReader reader = new ReplayReader(ByteBuffer.wrap(corrupted));
+        int games = 0;
+        for (int position = reader.position(); reader.next(); position = reader.position()) {
+            if (reader.type() == ReplayLog.GAME && games++ == 7) corrupted[position + 1] ^= 1; // change the seed
+        }
+        assert(new ReplayEngine(ByteBuffer.wrap(corrupted)).firstDivergingGame() == 7);
+    }
+
+    /**
+     * 3. Test the replay archive: games spread over several segments are indexed with their seed, winner, rounds
+     * and strategies, queries on the index find the right games, and archived games replay to their results.
+     * The segment of a writer which is not closed yet stays out of the archive.
+     */
+    @Test
+    public void testReplayArchive() throws Exception {
+        Path directory = Files.createTempDirectory("uno-archive");
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIdiot::new, ArtificialIntelligence::new);
+        simulator.setMaxRounds(150); // a few abandoned games
+        SimulationResult result = simulator.newResult();
+        ArrayList<Game> games = new ArrayList<>();
+        try (ReplayArchive.Writer writer = new ReplayArchive.Writer(directory, 2048)) {
+            simulator.setArchive(writer);
+            for (int i = 0; i < 30; i++) games.add(simulator.playOne(GameRandom.seedOf(2023, i), result));
+        }
+        try (ReplayArchive.Writer writer = new ReplayArchive.Writer(directory, 2048)) { // appends new segments
+            simulator.setArchive(writer);
+            for (int i = 30; i < 40; i++) games.add(simulator.playOne(GameRandom.seedOf(2023, i), result));
+        }
+
+        ReplayArchive archive = ReplayArchive.open(directory);
+        assert(archive.numGames() == 40 && archive.numSegments() > 3);
+        int idiot = archive.strategyOf("ArtificialIdiot");
+        assert(idiot >= 0 && archive.strategyName(idiot).equals("ArtificialIdiot") && archive.strategyOf("Player") == -1);
+        for (int i = 0; i < 40; i++) {
+            Game game = games.get(i);
+            assert(archive.seed(i) == game.getSeed() && archive.winner(i) == game.getWinnerID());
+            assert(archive.rounds(i) == game.getRounds() && archive.numPlayers(i) == 3);
+            assert(archive.strategy(i, 1) == idiot && archive.strategy(i, 0) == archive.strategy(i, 2));
+            assert(archive.strategy(i, 0) != idiot);
+        }
+
+        int[] selected = archive.select(game -> archive.winner(game) == 2 && archive.rounds(game) < 60);
+        int count = 0;
+        for (int i = 0; i < 40; i++) {
+            Game game = games.get(i);
+            if (game.getWinnerID() != 2 || game.getRounds() >= 60) continue;
+            assert(selected[count++] == i);
+        }
+        assert(count == selected.length && count > 0);
+        assert(archive.select(game -> archive.winner(game) == -1).length == result.getUnfinishedGames());
+
+        for (int i = 0; i < 40; i += 3) {
+            Game replayed = archive.replay(i, null);
+            assert(replayed.getWinnerID() == games.get(i).getWinnerID() && replayed.getRounds() == games.get(i).getRounds());
+            ReplayReader reader = ReplayReader.ofRecords(archive.events(i));
+            assert(reader.next() && reader.type() == ReplayLog.GAME && reader.operand(0) == archive.seed(i));
+            int segment = archive.segmentOf(i);
+            assert(archive.engine(segment).seed(i - archive.firstGame(segment)) == archive.seed(i));
+        }
+
+        // the segment of a writer still open is not part of the archive, the ones it closed already are
+        ReplayArchive.Writer unclosed = new ReplayArchive.Writer(directory, 2048);
+        simulator.setArchive(unclosed);
+        for (int i = 40; i < 50; i++) games.add(simulator.playOne(GameRandom.seedOf(2023, i), result));
+        ReplayArchive partial = ReplayArchive.open(directory);
+        assert(partial.numGames() >= 40 && partial.numGames() < 50);
+        for (int i = 0; i < partial.numGames(); i++) {
+            assert(partial.replay(i, null).getWinnerID() == games.get(i).getWinnerID());
+        }
+        unclosed.close();
+        assert(ReplayArchive.open(directory).numGames() == 50);
+
+        // strategy indexes are unsigned bytes
+        Path crowded = Files.createTempDirectory("uno-archive");
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < 200; i++) names.add("Strategy" + i);
+        Files.write(crowded.resolve("strategies"), names);
+        try (ReplayArchive.Writer writer = new ReplayArchive.Writer(crowded)) {
+            simulator.setArchive(writer);
+            for (int i = 0; i < 5; i++) simulator.playOne(GameRandom.seedOf(2023, i), result);
+        }
+        ReplayArchive crowdedArchive = ReplayArchive.open(crowded);
+        assert(crowdedArchive.strategy(0, 1) == 201 && crowdedArchive.strategyName(201).equals("ArtificialIdiot"));
+        MoveColumns.extract(crowdedArchive, crowded.resolve("columns"));
+        MoveColumns moves = MoveColumns.open(crowded.resolve("columns"), java.util.concurrent.ForkJoinPool.commonPool());
+        assert(moves.strategyName(moves.strategy(0)).equals(crowdedArchive.strategyName(crowdedArchive.strategy(0, moves.seat(0)))));
+        assert(moves.count(row -> moves.strategy(row) < 200) == 0);
+
+        for (Path root : new Path[]{crowded.resolve("columns"), crowded, directory}) {
+            try (java.util.stream.Stream<Path> files = Files.list(root)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(root);
+        }
+    }
+
+    /**
+     * 4. Test the move columns: the columns extracted from an archive hold every recorded move, and the parallel
+     * group-by, histogram and quantile operators agree with a straight count over replays of the games.
+     */
+    @Test
+    public void testMoveColumns() throws Exception {
+        Path archiveDirectory = Files.createTempDirectory("uno-archive");
+        Path columnDirectory = Files.createTempDirectory("uno-columns");
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIdiot::new, ArtificialIntelligence::new,
+                ArtificialIdiot::new);
+        try (ReplayArchive.Writer writer = new ReplayArchive.Writer(archiveDirectory, 1 << 14)) {
+            simulator.setArchive(writer);
+            simulator.run(300, 2024);
+        }
+        ReplayArchive archive = ReplayArchive.open(archiveDirectory);
+        MoveColumns.extract(archive, columnDirectory);
+        MoveColumns moves = MoveColumns.open(columnDirectory, new java.util.concurrent.ForkJoinPool(4));
+
+        /* straight counts over the replays */
+        long[] drawPlay = new long[6];
+        long[] winningFaces = new long[CardParser.FACE_NUM];
+        long[] playsBySeat = new long[4];
+        long[] stacked = new long[1];
+        ArrayList<Integer> turns = new ArrayList<>();
+        for (int i = 0; i < archive.numGames(); i++) {
+            archive.replay(i, new ReplayEngine.ReplayListener() {
+                int penalty = 0;
+
+                @Override
+                public void moveApplied(int gameIndex, int turn, int seat, int move, Game game) {
+                    int kind = Move.kind(move);
+                    if (kind == Move.DRAW_PLAY) drawPlay[game.getRuler().getPreviousActionID()]++;
+                    if (kind == Move.PLAY_ONE) {
+                        playsBySeat[seat]++;
+                        int face = CardParser.faceOf(Move.cardOne(move));
+                        if (face == CardParser.FACE_WILD_DRAW4 && penalty > 0) stacked[0]++;
+                        if (game.getWinnerID() == seat) winningFaces[face]++;
+                    }
+                    if (kind == Move.SKIP) turns.add(turn);
+                    penalty = game.getPenaltyDraw();
+                }
+            });
+        }
+
+        assert(moves.size() == moves.count(row -> true) && moves.size() > 10000);
+        long[] outcomes = moves.countBy(moves::action, 6, row -> moves.kind(row) == Move.DRAW_PLAY);
+        assert(java.util.Arrays.equals(outcomes, drawPlay));
+        assert(outcomes[RuleController.ACTION_DRAW_PLAY_OK] > 0 && outcomes[RuleController.ACTION_DRAW_PLAY_FAIL] > 0);
+        assert(java.util.Arrays.equals(moves.countBy(moves::seat, 4, row -> moves.kind(row) == Move.PLAY_ONE), playsBySeat));
+        long[] faces = moves.countBy(moves::face, CardParser.FACE_NUM,
+                row -> moves.kind(row) == Move.PLAY_ONE && (moves.flags(row) & MoveColumns.FLAG_FINAL) != 0);
+        assert(java.util.Arrays.equals(faces, winningFaces));
+        assert(moves.count(row -> moves.face(row) == CardParser.FACE_WILD_DRAW4 && moves.kind(row) == Move.PLAY_ONE
+                && moves.penalty(row) > 0) == stacked[0]);
+        assert(moves.count(row -> (moves.flags(row) & MoveColumns.FLAG_FINAL) != 0) == archive.numGames());
+
+        int idiot = moves.strategyOf("ArtificialIdiot");
+        long[] byStrategy = moves.countBy(moves::strategy, 2, row -> (moves.flags(row) & MoveColumns.FLAG_FINAL) != 0);
+        assert(idiot >= 0 && byStrategy[0] + byStrategy[1] == archive.numGames());
+        assert(byStrategy[idiot] == archive.select(game -> archive.winner(game) % 2 == 1).length);
+
+        java.util.Collections.sort(turns);
+        long[] histogram = moves.histogram(moves::turn, 0, 999, row -> moves.kind(row) == Move.SKIP);
+        long total = 0;
+        for (long count : histogram) total += count;
+        assert(total == turns.size());
+        int[] quantiles = moves.quantiles(moves::turn, 0, 999, row -> moves.kind(row) == Move.SKIP, 0.5, 0.9, 1.0);
+        assert(quantiles[0] == turns.get((int) Math.ceil(0.5 * turns.size()) - 1));
+        assert(quantiles[1] == turns.get((int) Math.ceil(0.9 * turns.size()) - 1));
+        assert(quantiles[2] == turns.get(turns.size() - 1));
+
+        for (Path directory : new Path[]{archiveDirectory, columnDirectory}) {
+            try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
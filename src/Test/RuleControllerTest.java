@@ -335,7 +335,6 @@ class RuleControllerTest {
 
     }
 
-
     /**
      *  12. Test initialization of beginning game state is done properly
      *  As this is a random process, it should be repeated many times using for loop
@@ -375,6 +374,7 @@ class RuleControllerTest {
         player.setPlayerID(2);
         player.setGameController(game);
         player.setRuler(game.getRuler());
+        for (int cardID : player.getCards()) game.getCardManager().removeFromCardPile(cardID); // a card cannot be owned twice
 
         // case 1: Red skip - player should not be skipped
         int playerNumCheckPoint1 = player.getCards().size();
@@ -456,6 +456,107 @@ class RuleControllerTest {
         game.handleHumanBehavior(currentPlayer);
     }
 
+    /**
+     * 15.1 Test the hand-off from GUI pages (here another thread) to a game thread waiting for setup / new game.
+     */
+    @Test
+    public void testGameControlHandOff() throws InterruptedException {
+        Game game = new Game(0,0);
+        assert(!game.isSetupDone() && !game.toStartNewGame());
+        Thread page = new Thread(() -> {
+            try { Thread.sleep(50); }
+            catch (InterruptedException e) { return; }
+            game.setSetupDone();
+            game.setStartNewGame();
+        });
+        long start = System.nanoTime();
+        page.start();
+        game.awaitSetupDone(); // blocks until the other thread fires
+        game.awaitStartNewGame();
+        assert(System.nanoTime() - start >= 40_000_000L);
+        assert(game.isSetupDone() && game.toStartNewGame());
+        game.awaitSetupDone(); // returns at once once set up
+        page.join();
+    }
+
+    /**
+     * 16. Test the packed game state can be snapshot and restored,
+     * and the String views are derived from it correctly.
+     */
+    @Test
+    void testPackedStateSnapshot() {
+        RuleController ruler = new RuleController();
+        Player player = playerAllCards();
+        setCurrentState(ruler, "blue", "none", "8", 0);
+        long snapshot = ruler.getState();
+
+        ruler.isValidPlay(player, 96, true); // yellow reverse - wrong color and symbol, not played
+        assert(ruler.getState() == snapshot);
+        ruler.isValidPlay(player, 59, true); // blue 9
+        ruler.isValidPlay(player, 84, true); // yellow 9
+        ruler.isValidPlay(player, 95, true); // yellow skip
+        ruler.isValidPlay(player, 48, true); // green draw2 is not allowed when skipped
+        assert(ruler.checkSkipAndDraw(player, false));
+        ruler.isValidPlay(player, 48, true); // green draw2 - wrong color and symbol, not played
+        ruler.isValidPlay(player, 98, true); // yellow draw2
+        ruler.isValidPlay(player, 49, true); // green draw2 stacked
+        ruler.isValidPlay(player, 105, true); // wildDraw4 - not legal since player owns green cards
+        ruler.isValidPlay(player, 50, true); // green 0 - not allowed when skipped
+        assert(checkStateUpdatedCorrectly(ruler, "green", "draw2", "none", 1));
+        assert(ruler.getPenaltyDraw() == 4);
+        assert(ruler.getPreviousCard().equals("green sym draw2"));
+
+        ruler.setState(snapshot);
+        assert(checkStateUpdatedCorrectly(ruler, "blue", "none", "8", 0));
+        assert(ruler.getPenaltyDraw() == 0 && ruler.getIsClockwise());
+
+        ruler.isValidPlay(player, 101, true); // wild
+        assert(ruler.isWaitingForColor());
+        assert(ruler.getPreviousCard().equals("NA sym wild"));
+        ruler.updateGameStateBasedOnPickedColor("yellow");
+        assert(!ruler.isWaitingForColor());
+        assert(ruler.getPreviousCard().equals("yellow sym wild"));
+        assert(checkStateUpdatedCorrectly(ruler, "yellow", "none", "none", 0));
+
+        ruler.setPreviousAction("Draw & Play (FAIL)");
+        assert(ruler.getPreviousActionID() == RuleController.ACTION_DRAW_PLAY_FAIL);
+        assert(ruler.getPreviousAction().equals("Draw & Play (FAIL)"));
+    }
+
+    /**
+     * 17. Test legal cards found through the precomputed legality masks agree with the ground truth
+     * for all combinations of matchable color/symbol/number and skip levels, with random hands.
+     */
+    @Test
+    void testLegalityMasks() {
+        String[] colors = {"red", "green", "blue", "yellow", "NA", "all"};
+        String[] symbols = {"none", "skip", "reverse", "draw2", "all"};
+        String[] numbers = {"none", "0", "1", "5", "9", "all"};
+        Random rand = new Random(242);
+        RuleController ruler = new RuleController();
+        for (int i = 0; i < 20; i++) {
+            Player player = new Player(0, null);
+            player.setRuler(ruler);
+            for (int cardID = 1; cardID <= 108; cardID++) {
+                if (rand.nextInt(5) == 0) player.addOneCard(cardID);
+            }
+            for (String color : colors) {
+                for (String symbol : symbols) {
+                    for (String number : numbers) {
+                        for (int level = 0; level <= 3; level++) {
+                            setCurrentState(ruler, color, symbol, number, level);
+                            ArrayList<Integer> truth = groundTruthGenerator(ruler, player, color, number, symbol);
+                            if (color.equals("all") || number.equals("all") || symbol.equals("all")) {
+                                truth = getAllLegalCardsByRuler(ruler, player); // wildcards are not handled by ground truth
+                            }
+                            assert(player.findLegalCard().equals(truth));
+                            assert(player.hasLegalCard() == !truth.isEmpty());
+                        }
+                    }
+                }
+            }
+        }
+    }
 
     /**
      *  helper function:
@@ -568,7 +669,6 @@ class RuleControllerTest {
         return player;
     }
 
-
     /**
      * helper function to set current game state based on previous player's move
      */
@@ -596,6 +696,4 @@ class RuleControllerTest {
                 truthNumber.equals(ruler.getMatchableNumber()) &&
                 truthLevel == ruler.getNextPlayerSkiplevel();
     }
-
 }
-
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import UNO.*;
+
+/**
+ * Tests of the table host, advancing many games on a few worker threads.
+ */
+
+class TableHostTest {
+    /**
+     * 1. Test the table host: many human-vs-AI tables advanced by two workers, the human moves submitted
+     * from the listener (as a server front-end would), every table finishes and the host drains,
+     * and a table opened during a drain is either refused or finished.
+     */
+    @Test
+    public void testTableHost() throws InterruptedException {
+        int numTables = 500;
+        AtomicInteger finished = new AtomicInteger();
+        TableHost[] host = new TableHost[1];
+        host[0] = new TableHost(2, numTables, new TableHost.TableListener() {
+            @Override
+            public void awaitingHuman(long tableID, Game game) {
+                host[0].submit(tableID, humanMove(game));
+            }
+
+            @Override
+            public void finished(long tableID, Game game) {
+                assert(game.getWinnerID() != -1);
+                finished.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < numTables; i++) {
+            Game game = new Game(1, 1, i);
+            game.setUseGUI(false);
+            game.initializeGame();
+            assert(host[0].open(game, 0) != -1);
+        }
+        assert(host[0].drain(60, TimeUnit.SECONDS));
+        assert(finished.get() == numTables && host[0].openTables() == 0);
+        Game extra = new Game(1, 1, 0);
+        extra.initializeGame();
+        assert(host[0].open(extra, 0) == -1); // drained host refuses tables
+        assert(!host[0].submit(0, Move.skip()).join()); // closed table
+
+        // tables waiting for humans stay open without any thread, up to the cap
+        TableHost idleHost = new TableHost(1, 2, null);
+        for (int i = 0; i < 3; i++) {
+            Game game = new Game(2, 0, i);
+            game.initializeGame();
+            assert((idleHost.open(game, 0) == -1) == (i == 2));
+        }
+        assert(idleHost.openTables() == 2);
+        assert(!idleHost.submit(0, Move.pickColor(1)).join()); // illegal move is rejected
+        assert(!idleHost.drain(50, TimeUnit.MILLISECONDS)); // abandoned tables are dropped
+
+        // tables opened while the host starts draining are either refused or played to the end
+        for (int round = 0; round < 20; round++) {
+            AtomicInteger done = new AtomicInteger();
+            TableHost racingHost = new TableHost(1, numTables, new TableHost.TableListener() {
+                @Override
+                public void finished(long tableID, Game game) {
+                    done.incrementAndGet();
+                }
+            });
+            AtomicInteger opened = new AtomicInteger();
+            Thread opener = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    Game game = new Game(0, 2, i);
+                    game.setUseGUI(false);
+                    game.initializeGame();
+                    if (racingHost.open(game, 0) != -1) opened.incrementAndGet();
+                }
+            });
+            opener.start();
+            Thread.sleep(round % 3);
+            assert(racingHost.drain(60, TimeUnit.SECONDS));
+            opener.join();
+            assert(done.get() == opened.get() && racingHost.openTables() == 0);
+        }
+    }
+
+    /**
+     * Helper function choosing a legal move for the human of a table.
+     */
+    private static int humanMove(Game game) {
+        Player human = game.getPlayers().get(game.getCurrentPlayerID());
+        if (game.pendingDecision() == Game.DECISION_COLOR) return Move.pickColor(1);
+        ArrayList<Integer> legalCards = human.findLegalCard();
+        if (!legalCards.isEmpty()) return Move.playOne(legalCards.get(0));
+        return game.getRuler().getNextPlayerSkiplevel() != 0 ? Move.skip() : Move.drawAndPlay();
+    }
+}
@@ -29,6 +29,26 @@ class cardManagerTest {
 
     }
 
+    @Test
+    /**
+     * Test 0.1
+     * The precomputed attribute tables of parser should agree with the string descriptions
+     */
+    void testParserAttributeTables() {
+        CardParser parser = new CardParser();
+        for (int i = 1; i <= CardParser.TOTAL_CARDS; i++) {
+            String[] result = parser.parseCardDescription(parser.parseCardID(i));
+            assert (result[0].equals(CardParser.COLOR_NAMES[CardParser.colorOf(i)]));
+            assert (result[1].equals(CardParser.KIND_NAMES[CardParser.kindOf(i)]));
+            assert (result[2].equals(CardParser.FACE_NAMES[CardParser.faceOf(i)]));
+            assert (parser.isNonColorCard(i) == (CardParser.colorOf(i) == CardParser.COLOR_NA));
+        }
+        assert (parser.parseCardID(25).equals("red num 0"));
+        assert (parser.parseCardID(24).equals("red sym draw2"));
+        assert (parser.parseCardID(108).equals("NA sym wildDraw4"));
+        assert (CardParser.describe(CardParser.COLOR_BLUE, CardParser.FACE_WILD).equals("blue sym wild"));
+    }
+
     @Test
     /**
      * Test 1
@@ -85,14 +105,13 @@ class cardManagerTest {
         Game game = new Game(1,0);
         game.initializeGame();
         Player player = game.getPlayers().get(0);
-        ArrayList<Integer> cards = player.getCards(); // direct reference to player's card
         player.drawCards(game.getCardManager().numCardLeft()); // get all cards in draw pile
         assert(game.getCardManager().numCardLeft() == 0);
 
         // move 30 cards from players' to discard
         for (int i = 0; i < 30; i++) {
-            int cardID = cards.get(0);
-            cards.remove(0);
+            int cardID = player.getCards().get(0);
+            player.removeOneCard(cardID);
             game.getCardManager().insertOneCardToDiscardPile(cardID);
         }
         assert(game.getCardManager().numLeftDiscardPile() == 30);
@@ -113,14 +132,13 @@ class cardManagerTest {
         Game game = new Game(1,0);
         game.initializeGame();
         Player player = game.getPlayers().get(0);
-        ArrayList<Integer> cards = player.getCards(); // direct reference to player's card
         player.drawCards(game.getCardManager().numCardLeft() - 2); // get 99 cards from draw pile
         assert(game.getCardManager().numCardLeft() == 2);
 
         // move 30 cards from players' to discard
         for (int i = 0; i < 30; i++) {
-            int cardID = cards.get(0);
-            cards.remove(0);
+            int cardID = player.getCards().get(0);
+            player.removeOneCard(cardID);
             game.getCardManager().insertOneCardToDiscardPile(cardID);
         }
         assert(game.getCardManager().numLeftDiscardPile() == 30);
@@ -131,8 +149,41 @@ class cardManagerTest {
         assert(game.getCardManager().numLeftDiscardPile() == 28);
     }
 
-
-
+    @Test
+    /**
+     * Test 5
+     * Cards drawn into a hand come from the head of the draw pile, then from the discard pile,
+     * and no card is ever lost or duplicated between the piles and the hand.
+     */
+    void testDrawIntoHandConservesCards() {
+        CardManager cardManager = new CardManager();
+        Hand hand = new Hand();
+        ArrayList<Integer> pile = cardManager.getCardPile();
+        assert (cardManager.drawCards(hand, 3) == pile.get(2));
+        assert (hand.contains(pile.get(0)) && hand.contains(pile.get(1)));
+        assert (cardManager.getCardPile().get(0).equals(pile.get(3)));
+
+        assert (cardManager.removeFromCardPile(pile.get(10)));
+        assert (!cardManager.removeFromCardPile(pile.get(10)));
+        assert (!cardManager.getCardPile().contains(pile.get(10)));
+        assert (cardManager.getCardPile().get(6).equals(pile.get(9)));
+        assert (cardManager.getCardPile().get(7).equals(pile.get(11)));
+        hand.add(pile.get(10));
+
+        cardManager.drawCards(hand, cardManager.numCardLeft());
+        for (int i = 0; i < 50; i++) {
+            int cardID = hand.getCards().get(0);
+            hand.remove(cardID);
+            cardManager.insertOneCardToDiscardPile(cardID);
+            assert (cardManager.getDiscardPile().get(0) == cardID);
+        }
+        assert (cardManager.drawCards(hand, 20) != -1);
+        assert (cardManager.numLeftDiscardPile() == 30 && cardManager.numReshuffledCards() == 20);
+        assert (hand.size() + cardManager.numLeftDiscardPile() == 108);
+
+        // both piles run out: only cards available are drawn
+        assert (cardManager.drawCards(40).size() == 30);
+        assert (cardManager.drawCards(hand, 1) == -1);
+        assert (cardManager.numLeftDiscardPile() == 0);
+    }
 }
-
-
@@ -1,6 +1,8 @@
 package UNO;
 
 public abstract class AIPlayer extends Player {
+    protected final GameRandom rand; // random stream of this AI, derived from the stream of the game
+
     /**
      * Constructor for player objects
      *
@@ -9,7 +11,24 @@ public abstract class AIPlayer extends Player {
      */
     public AIPlayer(int ID, Game game) {
         super(ID, game);
+        rand = (game != null) ? game.splitRandom() : new GameRandom(GameRandom.randomSeed()); // null only for testing purpose
+    }
 
+    /**
+     * Copy also the state of the random stream, so that the copy makes the same decisions as this AI.
+     */
+    @Override
+    public Player copyFor(int ID, Game game) {
+        AIPlayer copy = (AIPlayer) super.copyFor(ID, game);
+        copy.rand.setState(rand.getState());
+        return copy;
+    }
+
+    /**
+     * @return the random stream of this AI
+     */
+    public GameRandom getRandom() {
+        return rand;
     }
 
     /**
@@ -30,6 +49,26 @@ public abstract class AIPlayer extends Player {
      */
     public abstract int makeActionDecision();
 
+    /**
+     * The move of this AI for the current round, built from makeActionDecision and playCard.
+     * @return a move packed by Move
+     */
+    public int decideMove() {
+        return switch (makeActionDecision()) {
+            case 1 -> Move.playOne(playCard());
+            case 2 -> Move.drawAndPlay();
+            default -> Move.skip();
+        };
+    }
+
+    /**
+     * The color declaration of this AI after it played a wild card, built from pickColor.
+     * @return a move packed by Move
+     */
+    public int decideColor() {
+        return Move.pickColor(color2colorID(pickColor()));
+    }
+
     /**
      * Convert color (ID) to Color (String)).
      * @param colorID 0, 1, 2, 3, 4
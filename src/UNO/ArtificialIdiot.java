@@ -16,6 +16,11 @@ public class ArtificialIdiot extends AIPlayer {
         super(ID, game);
     }
 
+    @Override
+    protected Player newInstance(int ID, Game game) {
+        return new ArtificialIdiot(ID, game);
+    }
+
     /**
      * This is how AI makes its action decision. This decision should always be legal.
      * @return 1 ("PlayOwned"), 2 ("Draw&Play"), 3 ("SKip")
@@ -38,12 +43,19 @@ public class ArtificialIdiot extends AIPlayer {
     }
 
 
+    /**
+     * @return true, makeActionDecision draws only when no card is legal
+     */
+    @Override
+    public boolean drawsOnlyWhenStuck() {
+        return true;
+    }
+
     /**
      * Randomly choose a card to play. Notice AI will only make this decision when it has legal cards.
      * @return The card (as ID) that AI decided to play
      */
     public int playCard() {
-        Random rand = new Random();
         int randIndex = rand.nextInt(legalCards.size());
         return legalCards.get(randIndex);
     }
@@ -53,9 +65,7 @@ public class ArtificialIdiot extends AIPlayer {
      * @return Color picked by AI
      */
     public String pickColor() {
-        ArrayList<Integer> colors = new ArrayList<Integer>(Arrays.asList(1,2,3,4));
-        Collections.shuffle(colors);
-        return colorID2color(colors.get(0));
+        return colorID2color(rand.nextInt(4) + 1);
     }
 
 }
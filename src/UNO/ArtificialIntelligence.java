@@ -1,11 +1,28 @@
 package UNO;
 
 import javax.print.attribute.standard.Finishings;
-import java.util.*;
+import java.util.Arrays;
 
+/**
+ * The strategic AI: every legal card is scored by fixed heuristic weights, and the best one is played.
+ * The whole decision runs on primitive arrays and the bitsets of the hand, it never allocates.
+ */
 public class ArtificialIntelligence extends AIPlayer {
-
-    private ArrayList<Integer> legalCards;
+    private static final int COLORS = CardParser.COLOR_NUM;
+
+    /* Score of a card by the rank of its color among the colors AI owns (0 best - 4 worst). */
+    private static final int[] RANK_SCORE = {8, 6, 4, 2, 1};
+    /* Score of a card by its face (0 - 9, skip, reverse, draw2, wild, wildDraw4), in common case. */
+    private static final int[] FACE_SCORE_COMMON = faceTable(15, 12, 3, 4, 2, 1);
+    /* Score of a card by its face when next player has no more than 2 cards. */
+    private static final int[] FACE_SCORE_LESS_THAN_2 = faceTable(2, 1, 3, 12, 15, 8);
+    /* Weight an owned card adds to its color when ranking colors. */
+    private static final int[] FACE_COLOR_WEIGHT = faceTable(2, 4, 5, 4, 6, 1);
+
+    private long legalLow;  // legal cards found by the last makeActionDecision, bits as in Hand
+    private long legalHigh;
+    private final int[] colorWeights = new int[COLORS]; // scratch buffers, reused by every decision
+    private final int[] colorRanks = new int[COLORS];   // colorRanks[colorID] = rank of the color
 
     /**
      * Constructor for player objects
@@ -17,28 +34,44 @@ public class ArtificialIntelligence extends AIPlayer {
         super(ID, game);
     }
 
+    @Override
+    protected Player newInstance(int ID, Game game) {
+        return new ArtificialIntelligence(ID, game);
+    }
+
     /**
      * This is how AI makes its action decision. This decision should always be legal.
      * @return 1 ("PlayOwned"), 2 ("Draw&Play"), 3 ("SKip")
      */
     public int makeActionDecision() {
-        int currentSkipLevel = getGameController().getRuler().getNextPlayerSkiplevel();
+        RuleController ruler = getGameController().getRuler();
+        int currentSkipLevel = ruler.getNextPlayerSkiplevel();
         if (currentSkipLevel == 3) {
             return 3; // skip
         }
-        legalCards = findLegalCard();
-        if (currentSkipLevel != 0 && legalCards.size() == 0) {
+        legalLow = ruler.legalCards(this, false);
+        legalHigh = ruler.legalCards(this, true);
+        boolean noLegalCard = (legalLow | legalHigh) == 0;
+        if (currentSkipLevel != 0 && noLegalCard) {
             // there's pending stacked draw, and AI don't have legal card to play
             return 3; // skip
         }
 
-        if (legalCards.size() == 0) {
+        if (noLegalCard) {
             // there's no pending stacked draw, and AI don't have legal card to play
             return 2; // draw and play
         }
         return 1; // play owned cards
     }
 
+    /**
+     * @return true, makeActionDecision draws only when no card is legal
+     */
+    @Override
+    public boolean drawsOnlyWhenStuck() {
+        return true;
+    }
+
     /**
      * Strategically choose a card to play. Notice AI will only make this decision when it has legal cards.
      * Also, AI will only play one card at a time.
@@ -47,9 +80,9 @@ public class ArtificialIntelligence extends AIPlayer {
     public int playCard() {
         int nextPlayerID = getGameController().getNextPlayerID();
         if (getGameController().getPlayerCardNumber(nextPlayerID) <= 2) {
-            return findBestCard_CaseNextPlayerLessThan2();
+            return findBestCard(FACE_SCORE_LESS_THAN_2);
         } else {
-            return findBestCard_CommonCase();
+            return findBestCard(FACE_SCORE_COMMON);
         }
     }
 
@@ -59,154 +92,93 @@ public class ArtificialIntelligence extends AIPlayer {
      * @return Color picked by AI
      */
     public String pickColor() {
-        ArrayList<Integer> colorRanks = findBestColors(getCards());
-        int bestColorID = colorRanks.get(0);
+        rankColors();
+        int bestColorID = colorOfRank(0);
         if (bestColorID == 0) { // AI owns A LOT OF wild cards. Extremely low probability.
-            return colorID2color(colorRanks.get(1));
+            return colorID2color(colorOfRank(1));
         }
         return colorID2color(bestColorID);
     }
 
-    private int findBestCard_CommonCase() {
-        ArrayList<Integer> priority = calcPriority_CommonCase(legalCards);
-        int maxScore = Collections.max(priority);
-        int maxIndex = priority.indexOf(maxScore);
-        return legalCards.get(maxIndex);
-    }
-
     /**
-     * Priority Heuristics in common case:
+     * Find the legal card with the highest priority (the one with smallest ID among equals).
+     *
+     * Priority Heuristics in common case (FACE_SCORE_COMMON):
      * (1) Worst color number > best color skip / draw2 / reserve.
      * (2) Play 0 first if possible.
      * (3) Always reserve wild/wildDraw4.
      * (4) reserve > skip > draw2
-     * @param cards candidate cards.
-     * @return the priority of each card.
+     *
+     * Priority Heuristics when next player has less than 2 cards left (FACE_SCORE_LESS_THAN_2):
+     * (1) draw2 > reverse > skip > wildDraw4 > wild > 0 > 1-9
+     * (2) worst color draw2/reverse/skip > best number
+     *
+     * @param faceScore score of each face
+     * @return the card (as ID) with highest priority
      */
-    private ArrayList<Integer> calcPriority_CommonCase(ArrayList<Integer> cards) {
-        ArrayList<Integer> priority = new ArrayList<>();
-        ArrayList<Integer> colorRanks = findBestColors(getCards()); // best color in all cards
-        for (int i = 0; i < cards.size(); i++) {
-            int cardID = cards.get(i);
-            String cardDesc = parser.parseCardID(cardID);
-            String color = parser.parseCardDescription(cardDesc)[0];
-            int colorID = color2colorID(color);
-            int rank = colorRanks.indexOf(colorID); // the ranking of color on the card
-            switch (rank) { // weighing based on color of card
-                case 0 -> priority.add(8); // best color
-                case 1 -> priority.add(6);
-                case 2 -> priority.add(4);
-                case 3 -> priority.add(2);
-                case 4 -> priority.add(1); // worst color
-            }
-            String content = parser.parseCardDescription(cardDesc)[2];
-            switch (content) { // weighing based on card content
-                case "skip" -> priority.set(i, priority.get(i) + 3);
-                case "draw2" -> priority.set(i, priority.get(i) + 2);
-                case "reverse" -> priority.set(i, priority.get(i) + 4);
-                case "0" -> priority.set(i, priority.get(i) + 15);
-                case "wild", "wildDraw4" -> priority.set(i, priority.get(i) + 1);
-                default -> priority.set(i, priority.get(i) + 12); // 1-9
+    private int findBestCard(int[] faceScore) {
+        rankColors(); // best color in all cards
+        int bestCard = -1;
+        int maxScore = Integer.MIN_VALUE;
+        for (int word = 0; word < 2; word++) {
+            for (long w = word == 0 ? legalLow : legalHigh; w != 0; w &= w - 1) {
+                int cardID = Long.numberOfTrailingZeros(w) + 1 + 64 * word;
+                int score = RANK_SCORE[colorRanks[CardParser.colorOf(cardID)]] + faceScore[CardParser.faceOf(cardID)];
+                if (score > maxScore) {
+                    maxScore = score;
+                    bestCard = cardID;
+                }
             }
         }
-        return priority;
-    }
-
-
-    private int findBestCard_CaseNextPlayerLessThan2() {
-        ArrayList<Integer> priority = calcPriority_CaseNextPlayerLessThan2(legalCards);
-        int maxScore = Collections.max(priority);
-        int maxIndex = priority.indexOf(maxScore);
-        return legalCards.get(maxIndex);
+        return bestCard;
     }
 
     /**
-     * Priority Heuristics when next player has less than 2 cards left,:
-     * (1) draw2 > reverse > skip > wildDraw4 > wild > 0 > 1-9
-     * (2) worst color draw2/reverse/skip > best number
-     *
-     * @param cards candidate cards.
-     * @return the priority of each card.
+     * Rank the colors by how much AI owns them (into colorRanks).
+     * Colors are weighted by the cards owned, different cards have different weight contribution.
+     * Ranking is descending by weight, colors with equal weights keep the order of their IDs.
+     * 0 NA, 1 red , 2 green, 3 blue, 4 yellow
      */
-
-    private ArrayList<Integer> calcPriority_CaseNextPlayerLessThan2(ArrayList<Integer> cards) {
-        ArrayList<Integer> priority = new ArrayList<>();
-        ArrayList<Integer> colorRanks = findBestColors(getCards()); // best color in all cards
-        for (int i = 0; i < cards.size(); i++) {
-            int cardID = cards.get(i);
-            String cardDesc = parser.parseCardID(cardID);
-            String color = parser.parseCardDescription(cardDesc)[0];
-            int colorID = color2colorID(color);
-            int rank = colorRanks.indexOf(colorID); // the ranking of color on the card
-            switch (rank) { // weighing based on color of card
-                case 0 -> priority.add(8); // best color
-                case 1 -> priority.add(6);
-                case 2 -> priority.add(4);
-                case 3 -> priority.add(2);
-                case 4 -> priority.add(1); // worst color
+    private void rankColors() {
+        Arrays.fill(colorWeights, 0);
+        Hand hand = getHand();
+        for (int word = 0; word < 2; word++) {
+            for (long w = word == 0 ? hand.getLow() : hand.getHigh(); w != 0; w &= w - 1) {
+                int cardID = Long.numberOfTrailingZeros(w) + 1 + 64 * word;
+                colorWeights[CardParser.colorOf(cardID)] += FACE_COLOR_WEIGHT[CardParser.faceOf(cardID)];
             }
-            String content = parser.parseCardDescription(cardDesc)[2];
-            switch (content) {  // weighing based on card content
-                case "skip" -> priority.set(i, priority.get(i) + 3);
-                case "draw2" -> priority.set(i, priority.get(i) + 15);
-                case "reverse" -> priority.set(i, priority.get(i) + 12);
-                case "0" -> priority.set(i, priority.get(i) + 2);
-                case "wild", "wildDraw4" -> priority.set(i, priority.get(i) + 8);
-                default -> priority.set(i, priority.get(i) + 1); // 1-9
+        }
+        for (int c = 0; c < COLORS; c++) {
+            int rank = 0;
+            for (int d = 0; d < COLORS; d++) {
+                if (colorWeights[d] > colorWeights[c] || (colorWeights[d] == colorWeights[c] && d < c)) rank++;
             }
+            colorRanks[c] = rank;
         }
-        return priority;
     }
 
-
     /**
-     * Find the best color that AI currently own most.
-     *
-     * @param cards candidate cards to be considered.
-     *              0 NA, 1 red , 2 green, 3 blue, 4 yellow
-     * @return ranking of owned color as ArrayList
+     * @return the color with a given rank, computed by the last rankColors
      */
-
-    private ArrayList<Integer> findBestColors(ArrayList<Integer> cards) {
-        ArrayList<Integer> weights = new ArrayList<>();
-        for (int i = 0; i < 5; i++) weights.add(0);  // 0 0 0 0 0
-
-        // adding weight by iterating through hand cards
-        for (Integer card : cards) {
-            String cardDesc = parser.parseCardID(card);
-            String color = parser.parseCardDescription(cardDesc)[0];
-            String content = parser.parseCardDescription(cardDesc)[2];
-            int colorID = color2colorID(color);
-            switch (content) { // different cards should have different weight contribution
-                case "skip" -> weights.set(colorID, weights.get(colorID) + 5);
-                case "draw2" -> weights.set(colorID, weights.get(colorID) + 6);
-                case "reverse" -> weights.set(colorID, weights.get(colorID) + 4);
-                case "0" -> weights.set(colorID, weights.get(colorID) + 2);
-                case "wild", "wildDraw4" -> weights.set(colorID, weights.get(colorID) + 1);//reserve wild cards
-                default -> weights.set(colorID, weights.get(colorID) + 4);
-            }
+    private int colorOfRank(int rank) {
+        for (int c = 0; c < COLORS; c++) {
+            if (colorRanks[c] == rank) return c;
         }
-        return argsort(weights.toArray(), false);
+        return -1; // should not be reached
     }
 
-
     /**
-     * Return sorted indices of given arraylist. (descending order)
-     * e.g. given array [4,1,2,3] -> return [0,3,2,1]
-     * Notice this version only support Integer!
-     * Equivalent to argsort in python.
+     * Build a table indexed by face ID.
      */
-    private ArrayList<Integer> argsort(final Object[] arrayToSort, boolean ascending) {
-        Integer[] indices = new Integer[arrayToSort.length];
-        for (int i = 0; i < indices.length; i++) {
-            indices[i] = i;
-        }
-        Arrays.sort(indices, new Comparator<Integer>() {
-            @Override
-            public int compare(final Integer i1, final Integer i2) {
-                return (ascending ? 1 : -1) * Integer.compare((Integer) arrayToSort[i1], (Integer) arrayToSort[i2]);
-            }
-        });
-        return new ArrayList<>(Arrays.asList(indices));
+    private static int[] faceTable(int zero, int number, int skip, int reverse, int draw2, int wild) {
+        int[] table = new int[CardParser.FACE_NUM];
+        Arrays.fill(table, 1, 10, number);
+        table[0] = zero;
+        table[CardParser.FACE_SKIP] = skip;
+        table[CardParser.FACE_REVERSE] = reverse;
+        table[CardParser.FACE_DRAW2] = draw2;
+        table[CardParser.FACE_WILD] = wild;
+        table[CardParser.FACE_WILD_DRAW4] = wild;
+        return table;
     }
-}
\ No newline at end of file
+}
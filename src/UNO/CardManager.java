@@ -1,88 +1,253 @@
 package UNO;
 
-import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
  * Card Manager class aiming to maintain draw pile and discard pile.
+ *
+ * Both piles are primitive byte arrays of capacity 108 (card IDs fit in a byte), so that no card is ever boxed
+ * or shifted, and a copy of the piles (see Game.fork) is a few hundred bytes:
+ * the draw pile is a ring buffer (cards are drawn from its head), and the discard pile is a stack
+ * (the newest card is on its top). Every draw and every discard is O(1).
+ *
+ * When the draw pile runs short, cards are drawn from the discard pile uniformly at random.
+ * Instead of shuffling the whole discard pile on every short draw, each such card is picked by
+ * one step of Fisher-Yates (swap a random card to the top and pop it), which is equivalent to
+ * "shuffle then draw" but costs O(1) per card drawn.
  */
 public class CardManager {
-    private ArrayList<Integer> cardPile;
-    private final ArrayList<Integer> discardPile;
-    private static CardParser parser;  // only for debug purpose...
+    private static final int CAPACITY = CardParser.TOTAL_CARDS;
+
+    private final byte[] cardPile;    // ring buffer, next card to draw is cardPile[pileHead]
+    private int pileHead = 0;
+    private int pileCount = 0;
+    private final byte[] discardPile; // stack, top card is discardPile[discardCount - 1]
+    private int discardCount = 0;
+    private int discardDraws = 0; // number of cards ever drawn from discard pile (reshuffled cards)
+    private final GameRandom rand;
+    private UndoStack journal; // records draws from discard pile while a move is made, null otherwise
 
     public CardManager() {
-        parser = new CardParser();
-        discardPile = new ArrayList<>();
+        this(new GameRandom(GameRandom.randomSeed()));
+    }
+
+    /**
+     * @param rand random stream of the game, used to shuffle the deck and to draw from discard pile
+     */
+    public CardManager(GameRandom rand) {
+        this.rand = rand;
+        cardPile = new byte[CAPACITY];
+        discardPile = new byte[CAPACITY];
         initializeCardPile();
     }
 
+    /**
+     * A copy of another card manager, including the state of its random stream (see Game.fork).
+     * Nothing is shuffled.
+     * @param other the card manager to copy
+     */
+    public CardManager(CardManager other) {
+        rand = new GameRandom(other.rand.getState());
+        cardPile = other.cardPile.clone(); // clones are not zeroed first, unlike new arrays
+        discardPile = other.discardPile.clone();
+        pileHead = other.pileHead;
+        pileCount = other.pileCount;
+        discardCount = other.discardCount;
+        discardDraws = other.discardDraws;
+    }
+
     /**
      * Initialize the cards and shuffle
      */
     private void initializeCardPile() {
-        cardPile = new ArrayList<Integer>();
-        for (int i = 1; i <= 108; i++) {
-            cardPile.add(i);
+        int[] deck = new int[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            deck[i] = i + 1;
         }
-        Collections.shuffle(cardPile);
+        rand.shuffle(deck, CAPACITY);
+        setCardPile(deck, 0, CAPACITY);
+    }
+
+    /**
+     * Make this card manager a copy of another one, including the state of its random stream.
+     * @param other the card manager to copy
+     */
+    public void copyFrom(CardManager other) {
+        System.arraycopy(other.cardPile, 0, cardPile, 0, CAPACITY);
+        pileHead = other.pileHead;
+        pileCount = other.pileCount;
+        System.arraycopy(other.discardPile, 0, discardPile, 0, other.discardCount);
+        discardCount = other.discardCount;
+        discardDraws = other.discardDraws;
+        rand.setState(other.rand.getState());
+    }
+
+    /**
+     * Write the piles, their counters and the state of the random stream (see Game.saveState).
+     * Takes 14 bytes plus one byte per card in the piles.
+     * @param out buffer receiving the state
+     */
+    public void saveState(ByteBuffer out) {
+        out.putLong(rand.getState());
+        out.putInt(discardDraws);
+        out.put((byte) pileCount);
+        for (int i = 0; i < pileCount; i++) out.put(cardPile[(pileHead + i) % CAPACITY]);
+        out.put((byte) discardCount);
+        out.put(discardPile, 0, discardCount);
+    }
+
+    /**
+     * Restore a state written by saveState.
+     * @param in buffer positioned at the state, positioned after it on return
+     */
+    public void loadState(ByteBuffer in) {
+        rand.setState(in.getLong());
+        discardDraws = in.getInt();
+        pileHead = 0;
+        pileCount = in.get() & 0xFF;
+        in.get(cardPile, 0, pileCount);
+        discardCount = in.get() & 0xFF;
+        in.get(discardPile, 0, discardCount);
+    }
+
+    /**
+     * Replace the draw pile, e.g. by a guess of its content (see Game.determinize).
+     * @param cards the new draw pile, cards[from] is drawn first
+     * @param from index of the first card
+     * @param count number of cards
+     */
+    public void setCardPile(int[] cards, int from, int count) {
+        for (int i = 0; i < count; i++) cardPile[i] = (byte) cards[from + i];
+        pileHead = 0;
+        pileCount = count;
+    }
+
+    /**
+     * Reseed the random stream drawing cards from the discard pile.
+     * @param state new state of the stream
+     */
+    public void setRandomState(long state) {
+        rand.setState(state);
+    }
+
+    /**
+     * Start or stop recording the draws from discard pile, which are the only changes that cannot be undone
+     * from the counters of mark alone.
+     * @param journal stack receiving one entry per card drawn from discard pile, null to stop recording
+     */
+    public void setJournal(UndoStack journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Pack the counters of the piles (draws from the draw pile and plays only move these).
+     * @return the mark, see undo
+     */
+    public long mark() {
+        return pileHead | (long) pileCount << 8 | (long) discardCount << 16 | (long) discardDraws << 32;
     }
 
     /**
-     * Print all cards left on the draw Pile.
+     * @return state of the random stream drawing from discard pile
      */
-//    public void printCardPile() {
-//        if (!cardPile.isEmpty()) {
-//            System.out.println("\n\n===================================================================");
-//            System.out.println("Current Card Pile has " + cardPile.size() + " card left:");
-//            for (int i = 0; i < cardPile.size(); i++) {
-//                System.out.println(parser.parseCardID(cardPile.get(i)));
-//            }
-//            System.out.println("===================================================================\n\n");
-//        } else {
-//            System.out.println("============================================================");
-//            System.out.println("There are no card left in the pile!");
-//        }
-//    }
+    public long getRandomState() {
+        return rand.getState();
+    }
+
+    /**
+     * Undo every draw and play since mark() was taken, while the journal was recorded.
+     * Within a move all draws happen before the plays, so the draws from discard pile are undone first.
+     * @param mark counters returned by mark
+     * @param randomState state of the random stream when the mark was taken
+     * @param journal the journal, whose top entries are the draws from discard pile since the mark
+     */
+    public void undo(long mark, long randomState, UndoStack journal) {
+        int markedCount = (int) (mark >>> 16 & 0xFF);
+        int markedDraws = (int) (mark >>> 32);
+        int swaps = discardDraws - markedDraws;
+        int count = markedCount - swaps; // size of the discard pile after its draws, before any play
+        for (int i = 0; i < swaps; i++) { // reverse the steps of Fisher-Yates, last one first
+            long entry = journal.pop();
+            int index = (int) (entry & 0xFF);
+            discardPile[count] = discardPile[index];
+            discardPile[index] = (byte) (entry >>> 8);
+            count++;
+        }
+        pileHead = (int) (mark & 0xFF);
+        pileCount = (int) (mark >>> 8 & 0xFF);
+        discardCount = markedCount;
+        discardDraws = markedDraws;
+        rand.setState(randomState);
+    }
 
     /**
      * Get the number of cards left in the draw pile.
      * @return number of cards left in the draw pile
      */
     public int numCardLeft() {
-        return cardPile.size();
+        return pileCount;
     }
 
 
     /**
      * Draw a certain number of cards from the draw (card) pile.
+     * If the draw pile is not enough, the rest will be drawn from discard pile at random.
      * @param numToDraw total number to draw. Should be positive integer
      * @return an ArrayList<Integer> of card drawn from the pile, represented as their ID
      */
     public ArrayList<Integer> drawCards(int numToDraw) {
         assert(numToDraw >= 0);
-
-        ArrayList<Integer> cardsDrawnFromDiscard = new ArrayList<>();
-        if (numCardLeft() < numToDraw) {
-            int numToDrawFromDiscard = numToDraw - cardPile.size();
-            numToDraw -= numToDrawFromDiscard;
-            cardsDrawnFromDiscard = drawCardsfromDiscardPile(numToDrawFromDiscard);
-            if (numToDraw == 0) return cardsDrawnFromDiscard; // we don't need to check cardPile anymore
+        ArrayList<Integer> drawnCards = new ArrayList<>(numToDraw);
+        for (int i = 0; i < numToDraw; i++) {
+            int cardID = drawOneCard();
+            if (cardID == -1) break;
+            drawnCards.add(cardID);
         }
-
-
-        ArrayList<Integer> drawnCards = new ArrayList<>(cardPile.subList(0, numToDraw));
-        drawnCards.addAll(cardsDrawnFromDiscard);
-        cardPile.subList(0, numToDraw).clear(); // erase the drawn cards
         return drawnCards;
     }
 
-    private ArrayList<Integer> drawCardsfromDiscardPile(int numToDraw) {
-        Collections.shuffle(discardPile); // shuffle discard pile before drawing
-        ArrayList<Integer> drawnCards = new ArrayList<>(discardPile.subList(0, numToDraw));
-        discardPile.subList(0, numToDraw).clear(); // erase the drawn cards
-        return drawnCards;
+    /**
+     * Draw a certain number of cards and put them directly into a hand, without allocating.
+     * If the draw pile is not enough, the rest will be drawn from discard pile at random.
+     * @param hand the hand receiving the cards
+     * @param numToDraw total number to draw. Should be positive integer
+     * @return ID of the last card drawn, -1 if no card could be drawn
+     */
+    public int drawCards(Hand hand, int numToDraw) {
+        assert(numToDraw >= 0);
+        int lastCard = -1;
+        for (int i = 0; i < numToDraw; i++) {
+            int cardID = drawOneCard();
+            if (cardID == -1) break;
+            hand.add(cardID);
+            lastCard = cardID;
+        }
+        return lastCard;
+    }
 
+    /**
+     * Draw one card, from draw pile if possible, else from discard pile.
+     * @return ID of the card, -1 if both piles are empty
+     */
+    private int drawOneCard() {
+        if (pileCount > 0) {
+            int cardID = cardPile[pileHead];
+            pileHead = (pileHead + 1) % CAPACITY;
+            pileCount--;
+            return cardID;
+        }
+        if (discardCount > 0) {
+            // one step of Fisher-Yates: swap a random card to the top, then pop it
+            int index = rand.nextInt(discardCount);
+            int cardID = discardPile[index];
+            if (journal != null) journal.push(index | (long) cardID << 8);
+            discardPile[index] = discardPile[discardCount - 1];
+            discardCount--;
+            discardDraws++;
+            return cardID;
+        }
+        return -1;
     }
 
     /**
@@ -90,29 +255,65 @@ public class CardManager {
      * @param cardID of the card to be inserted
      */
     public void insertOneCardToDiscardPile(int cardID) {
-        discardPile.add(0, cardID);
+        discardPile[discardCount++] = (byte) cardID;
+    }
+
+    /**
+     * @return the card on top of the discard pile (played most recently), 0 if the pile is empty
+     */
+    public int topCard() {
+        return discardCount > 0 ? discardPile[discardCount - 1] : 0;
     }
 
     /**
      * Get number of card left on discard pile.
      * @return  number of card left on discard pile
      */
-    public int numLeftDiscardPile() { return discardPile.size(); }
+    public int numLeftDiscardPile() { return discardCount; }
+
+    /**
+     * Get the number of cards that have been drawn from the discard pile (i.e. reshuffled back into play).
+     * @return number of cards drawn from discard pile since the game started
+     */
+    public int numReshuffledCards() { return discardDraws; }
 
     /**
      * Get all the cards currently in draw pile as a Array list.
-     * @return a reference to the cards (as ArrayList<Integer>) in draw (card) pile.
+     * The list is a copy, element 0 is the next card to be drawn.
+     * @return the cards (as ArrayList<Integer>) in draw (card) pile.
      */
-    public ArrayList<Integer> getCardPile() { return cardPile; }
+    public ArrayList<Integer> getCardPile() {
+        ArrayList<Integer> cards = new ArrayList<>(pileCount);
+        for (int i = 0; i < pileCount; i++) cards.add((int) cardPile[(pileHead + i) % CAPACITY]);
+        return cards;
+    }
 
     /**
      * Get all the cards currently in discard pile as a Array list.
-     * @return a reference to the cards (as ArrayList<Integer>) in discard pile.
+     * The list is a copy, element 0 is the card played most recently.
+     * @return the cards (as ArrayList<Integer>) in discard pile.
      */
-    public ArrayList<Integer> getDiscardPile() { return discardPile; }
-
+    public ArrayList<Integer> getDiscardPile() {
+        ArrayList<Integer> cards = new ArrayList<>(discardCount);
+        for (int i = discardCount - 1; i >= 0; i--) cards.add((int) discardPile[i]);
+        return cards;
+    }
 
+    /**
+     * For Test only. Take a given card out of the draw pile (e.g. when it is manually given to a player).
+     * @param cardID card to be removed
+     * @return whether the card was in the draw pile
+     */
+    public boolean removeFromCardPile(int cardID) {
+        for (int i = 0; i < pileCount; i++) {
+            if (cardPile[(pileHead + i) % CAPACITY] != cardID) continue;
+            for (int j = i; j > 0; j--) { // shift the cards above it down, keeping the draw order
+                cardPile[(pileHead + j) % CAPACITY] = cardPile[(pileHead + j - 1) % CAPACITY];
+            }
+            pileHead = (pileHead + 1) % CAPACITY;
+            pileCount--;
+            return true;
+        }
+        return false;
+    }
 }
-
-
-
@@ -10,12 +10,82 @@ import java.util.*;
  * 1-18 will be number cards (1-9), 25 will be 0, inclusively
  * 19-20 skip cards, 21-22 reverse, 23-24 draw4.
  * There will be (r,g,b,y) four color groups
+ *
+ * All attributes of the 108 cards are precomputed into static primitive tables when this class is loaded,
+ * so colorOf / kindOf / faceOf never allocate. The string API (parseCardID etc.) is only a view on these tables.
  */
 
 public class CardParser {
-    private final int NUMBER_PER_COLOR = 25; // there are 25 cards per color
-    private final int TOTAL_COLORS = 4; // R G B Y
-    private final int COLORED_CARD_NUM = NUMBER_PER_COLOR * TOTAL_COLORS;
+    private static final int NUMBER_PER_COLOR = 25; // there are 25 cards per color
+    private static final int TOTAL_COLORS = 4; // R G B Y
+    private static final int COLORED_CARD_NUM = NUMBER_PER_COLOR * TOTAL_COLORS;
+
+    /** Total number of cards in a deck. Card IDs range from 1 to TOTAL_CARDS inclusively. */
+    public static final int TOTAL_CARDS = 108;
+
+    /** Color IDs, consistent with colorDict and AIPlayer.color2colorID. Wild cards have color NA. */
+    public static final byte COLOR_NA = 0;
+    public static final byte COLOR_RED = 1;
+    public static final byte COLOR_GREEN = 2;
+    public static final byte COLOR_BLUE = 3;
+    public static final byte COLOR_YELLOW = 4;
+    public static final int COLOR_NUM = 5; // including NA
+
+    /** Kind (type) IDs: "num" or "sym". */
+    public static final byte KIND_NUM = 0;
+    public static final byte KIND_SYM = 1;
+
+    /** Face (content) IDs. 0-9 are the number cards themselves. */
+    public static final byte FACE_SKIP = 10;
+    public static final byte FACE_REVERSE = 11;
+    public static final byte FACE_DRAW2 = 12;
+    public static final byte FACE_WILD = 13;
+    public static final byte FACE_WILD_DRAW4 = 14;
+    public static final int FACE_NUM = 15;
+
+    /** String views of the IDs above, indexed by ID. */
+    public static final String[] COLOR_NAMES = {"NA", "red", "green", "blue", "yellow"};
+    public static final String[] KIND_NAMES = {"num", "sym"};
+    public static final String[] FACE_NAMES = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+            "skip", "reverse", "draw2", "wild", "wildDraw4"};
+
+    /* attribute tables indexed by card ID (index 0 is unused) */
+    private static final byte[] COLOR = new byte[TOTAL_CARDS + 1];
+    private static final byte[] KIND = new byte[TOTAL_CARDS + 1];
+    private static final byte[] FACE = new byte[TOTAL_CARDS + 1];
+    private static final String[] DESCRIPTION = new String[TOTAL_CARDS + 1];
+
+    /* descriptions for every (color, face) combination - e.g. a wild card after its color has been declared */
+    private static final String[][] DESCRIPTION_BY_ATTR = new String[COLOR_NUM][FACE_NUM];
+
+    static {
+        for (int color = 0; color < COLOR_NUM; color++) {
+            for (int face = 0; face < FACE_NUM; face++) {
+                String kind = KIND_NAMES[face <= 9 ? KIND_NUM : KIND_SYM];
+                DESCRIPTION_BY_ATTR[color][face] = COLOR_NAMES[color] + " " + kind + " " + FACE_NAMES[face];
+            }
+        }
+        for (int cardID = 1; cardID <= TOTAL_CARDS; cardID++) {
+            byte color, face;
+            if (cardID > COLORED_CARD_NUM) {
+                color = COLOR_NA;
+                face = cardID <= COLORED_CARD_NUM + 4 ? FACE_WILD : FACE_WILD_DRAW4;
+            } else {
+                color = (byte) ((cardID - 1) / NUMBER_PER_COLOR + 1);
+                int cardTypeID = cardID % NUMBER_PER_COLOR;
+                if (cardTypeID == 0) face = 0;                                   // case 0  <- 25, 50, 75, 100
+                else if (cardTypeID <= 18) face = (byte) (cardTypeID <= 9 ? cardTypeID : cardTypeID - 9); // 1 - 9
+                else if (cardTypeID <= 20) face = FACE_SKIP;
+                else if (cardTypeID <= 22) face = FACE_REVERSE;
+                else face = FACE_DRAW2;
+            }
+            COLOR[cardID] = color;
+            FACE[cardID] = face;
+            KIND[cardID] = face <= 9 ? KIND_NUM : KIND_SYM;
+            DESCRIPTION[cardID] = DESCRIPTION_BY_ATTR[color][face];
+        }
+    }
+
     public HashMap<Integer, String> colorDict;
 
     public CardParser() {
@@ -40,73 +110,10 @@ public class CardParser {
      * @return "{color} {type} {content}" as string
      */
     public String parseCardID(int cardID) {
-        if (cardID < 0) {
+        if (cardID < 1 || cardID > TOTAL_CARDS) {
             return "NA NA NA"; // should not be reached
         }
-
-        if (cardID > COLORED_CARD_NUM) {
-            return parseWildCard(cardID);
-        } else {
-            return parseColoredCard(cardID);
-        }
-    }
-
-    /**
-     * helper function for parse for cards without colors
-     */
-    private String parseWildCard(int cardID) {
-        if (cardID > COLORED_CARD_NUM && cardID <= COLORED_CARD_NUM + 4) {
-            return "NA sym wild";
-
-        }  else if (cardID > COLORED_CARD_NUM + 4 && cardID <= COLORED_CARD_NUM + 8) {
-            return "NA sym wildDraw4";
-        }
-        return "NA NA NA"; // should not be reached
-    }
-
-    /**
-     * helper function for parse for cards with colors
-     */
-    private String parseColoredCard(int cardID) {
-        int colorID = (cardID - 1) / NUMBER_PER_COLOR + 1;
-        String color = colorDict.get(colorID);
-        Integer cardTypeID = cardID  % NUMBER_PER_COLOR;
-
-        String type;
-        String content = "";
-        if (cardTypeID == 0) {
-            // case 0  <- 25, 50, 75, 100
-            type = "num";
-            content = "0";
-
-        } else if (cardTypeID <= 18) {
-            // case 1 - 9
-            type = "num";
-            cardTypeID = cardTypeID <= 9 ? cardTypeID : (cardTypeID - 9);
-            content = cardTypeID.toString();
-
-        } else if (cardTypeID <= 20) {
-            // case skip card
-            type = "sym";
-            content = "skip";
-
-        } else if (cardTypeID <= 22) {
-            // case reverse card
-            type = "sym";
-            content = "reverse";
-
-        } else {
-            // case draw 2
-            type = "sym";
-            content = "draw2";
-        }
-
-        return constructCardDescription(color, type, content);
-    }
-
-
-    private String constructCardDescription(String color, String type, String value) {
-        return color + " " + type + " " + value;
+        return DESCRIPTION[cardID];
     }
 
     /**
@@ -131,5 +138,74 @@ public class CardParser {
     public boolean isNonColorCard(int cardID) {
         return cardID > COLORED_CARD_NUM;
     }
-}
 
+    /**
+     * Get the color ID of a card (0 NA, 1 red, 2 green, 3 blue, 4 yellow).
+     * @param cardID a integer from 1 - 108
+     * @return color ID of the card
+     */
+    public static int colorOf(int cardID) {
+        return COLOR[cardID];
+    }
+
+    /**
+     * Get the kind of a card (KIND_NUM or KIND_SYM).
+     * @param cardID a integer from 1 - 108
+     * @return kind ID of the card
+     */
+    public static int kindOf(int cardID) {
+        return KIND[cardID];
+    }
+
+    /**
+     * Get the face of a card. 0-9 for number cards, FACE_SKIP ... FACE_WILD_DRAW4 for symbol cards.
+     * @param cardID a integer from 1 - 108
+     * @return face ID of the card
+     */
+    public static int faceOf(int cardID) {
+        return FACE[cardID];
+    }
+
+    /**
+     * Whether the card is a number card (0 - 9).
+     * @param cardID a integer from 1 - 108
+     */
+    public static boolean isNumberCard(int cardID) {
+        return KIND[cardID] == KIND_NUM;
+    }
+
+    /**
+     * Get the (shared, precomputed) description for a given color and face,
+     * in the same format as parseCardID. e.g. (COLOR_BLUE, FACE_WILD) -> "blue sym wild"
+     * @param colorID 0 - 4
+     * @param face 0 - 14
+     * @return "{color} {type} {content}" as string
+     */
+    public static String describe(int colorID, int face) {
+        return DESCRIPTION_BY_ATTR[colorID][face];
+    }
+
+    /**
+     * Find the ID of a color by its name.
+     * @param color "NA", "red", "green", "blue" or "yellow"
+     * @return color ID, -1 if not a color name
+     */
+    public static int colorID(String color) {
+        for (int i = 0; i < COLOR_NUM; i++) {
+            if (COLOR_NAMES[i].equals(color)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the ID of a face by its name.
+     * @param face "0" - "9", "skip", "reverse", "draw2", "wild" or "wildDraw4"
+     * @return face ID, -1 if not a face name
+     */
+    public static int faceID(String face) {
+        for (int i = 0; i < FACE_NUM; i++) {
+            if (FACE_NAMES[i].equals(face)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,250 @@
+package UNO;
+
+import java.util.Arrays;
+
+/**
+ * Card counting from the point of view of one seat: which cards the seat has not seen, how many of them there are
+ * by color and by face, and which colors each opponent is known not to hold (voids).
+ *
+ * Unseen cards are the cards whose place is unknown to the seat: in other hands, in the draw pile, or in the discard
+ * pile after an opponent drew from it (the seat cannot tell which card was drawn, so the whole discard pile becomes
+ * unseen again). An opponent who draws instead of playing, and draws only when it has no legal card (see
+ * Player.drawsOnlyWhenStuck, e.g. the rule-based AIs), holds no card of the color to match and no wild card;
+ * this void lasts until the opponent draws again for another reason, e.g. a penalty. Draws of other opponents
+ * (humans, MCTSPlayer) may be a choice, so they tell nothing.
+ *
+ * The tracker is a GameListener (see Game.addListener), and every event costs O(1), except the rare draw of an
+ * opponent from the discard pile which moves the known discard pile back to the unseen cards once.
+ * Sets of cards are bit words as in Hand.
+ */
+public class CardTracker implements GameListener {
+    private static final int VOID_BITS = CardParser.COLOR_NUM; // void colors of a player, one bit per color ID
+    /** Maximal number of players a tracker can follow. */
+    public static final int MAX_PLAYERS = Long.SIZE / VOID_BITS;
+
+    private final int seat;
+    private final Player owner;
+    private long unseenLow;   // unseen cards 1 - 64
+    private long unseenHigh;  // unseen cards 65 - 108
+    private long discardLow;  // cards known to be in the discard pile
+    private long discardHigh;
+    private int unseenCount;
+    private final int[] unseenByColor = new int[CardParser.COLOR_NUM];
+    private final int[] unseenByFace = new int[CardParser.FACE_NUM];
+    private long voids; // VOID_BITS bits per player
+
+    /**
+     * Track a game from the point of view of a player, starting from its current position:
+     * everything but the hand of the player and the discard pile is unseen.
+     * @param seat ID of the player
+     * @param owner the player, whose hand is known
+     */
+    public CardTracker(int seat, Player owner) {
+        assert(seat < MAX_PLAYERS);
+        this.seat = seat;
+        this.owner = owner;
+        reset();
+    }
+
+    /**
+     * A copy of another tracker, following the same seat in a fork of its game.
+     * @param other the tracker to copy
+     * @param owner the player in the fork, whose hand is the same as the hand of the owner of other
+     */
+    public CardTracker(CardTracker other, Player owner) {
+        seat = other.seat;
+        this.owner = owner;
+        unseenLow = other.unseenLow;
+        unseenHigh = other.unseenHigh;
+        discardLow = other.discardLow;
+        discardHigh = other.discardHigh;
+        unseenCount = other.unseenCount;
+        System.arraycopy(other.unseenByColor, 0, unseenByColor, 0, unseenByColor.length);
+        System.arraycopy(other.unseenByFace, 0, unseenByFace, 0, unseenByFace.length);
+        voids = other.voids;
+    }
+
+    /**
+     * Forget everything learnt, and start again from the current position of the game.
+     */
+    public void reset() {
+        unseenLow = unseenHigh = discardLow = discardHigh = voids = 0;
+        unseenCount = 0;
+        Arrays.fill(unseenByColor, 0);
+        Arrays.fill(unseenByFace, 0);
+        for (int cardID = 1; cardID <= CardParser.TOTAL_CARDS; cardID++) addUnseen(cardID);
+        Hand hand = owner.getHand();
+        for (int cardID = 1; cardID <= CardParser.TOTAL_CARDS; cardID++) {
+            if (hand.contains(cardID)) removeUnseen(cardID);
+        }
+        Game game = owner.getGameController();
+        if (game != null) {
+            for (int cardID : game.getCardManager().getDiscardPile()) {
+                removeUnseen(cardID);
+                addDiscard(cardID);
+            }
+        }
+    }
+
+    @Override
+    public void cardPlayed(int playerID, int cardID) {
+        removeUnseen(cardID);
+        addDiscard(cardID);
+    }
+
+    @Override
+    public void cardDrawn(int playerID, int cardID, boolean fromDiscardPile) {
+        if (playerID == seat) { // the only draws whose card is known
+            removeUnseen(cardID);
+            removeDiscard(cardID);
+            return;
+        }
+        voids &= ~(mask(VOID_BITS) << shift(playerID)); // the new card may be of any color
+        if (fromDiscardPile) {
+            for (; discardLow != 0; discardLow &= discardLow - 1) addUnseen(Long.numberOfTrailingZeros(discardLow) + 1);
+            for (; discardHigh != 0; discardHigh &= discardHigh - 1) addUnseen(Long.numberOfTrailingZeros(discardHigh) + 65);
+        }
+    }
+
+    @Override
+    public void drewInsteadOfPlaying(int playerID, int colorID) {
+        if (playerID == seat) return;
+        Game game = owner.getGameController();
+        if (game == null || !game.getPlayers().get(playerID).drawsOnlyWhenStuck()) return; // maybe drew by choice
+        long bits = 1L << CardParser.COLOR_NA; // a wild card could have been played
+        if (colorID >= CardParser.COLOR_RED && colorID <= CardParser.COLOR_YELLOW) bits |= 1L << colorID;
+        voids |= bits << shift(playerID);
+    }
+
+    /**
+     * @return ID of the player this tracker counts for
+     */
+    public int getSeat() {
+        return seat;
+    }
+
+    /**
+     * @return whether the seat has not seen where the card is
+     */
+    public boolean isUnseen(int cardID) {
+        return cardID <= 64 ? (unseenLow & 1L << (cardID - 1)) != 0 : (unseenHigh & 1L << (cardID - 65)) != 0;
+    }
+
+    /**
+     * @return number of unseen cards
+     */
+    public int unseenCount() {
+        return unseenCount;
+    }
+
+    /**
+     * @param colorID CardParser.COLOR_NA (wild cards) - COLOR_YELLOW
+     * @return number of unseen cards of the color
+     */
+    public int unseenColorCount(int colorID) {
+        return unseenByColor[colorID];
+    }
+
+    /**
+     * @param face 0 - 9, or CardParser.FACE_SKIP - FACE_WILD_DRAW4
+     * @return number of unseen cards of the face
+     */
+    public int unseenFaceCount(int face) {
+        return unseenByFace[face];
+    }
+
+    /**
+     * Write the unseen cards into a buffer, in ascending order.
+     * @param out buffer of a length of at least unseenCount()
+     * @return number of cards written
+     */
+    public int unseenCards(int[] out) {
+        int count = 0;
+        for (long bits = unseenLow; bits != 0; bits &= bits - 1) out[count++] = Long.numberOfTrailingZeros(bits) + 1;
+        for (long bits = unseenHigh; bits != 0; bits &= bits - 1) out[count++] = Long.numberOfTrailingZeros(bits) + 65;
+        return count;
+    }
+
+    /**
+     * @param colorID CardParser.COLOR_NA (wild cards) - COLOR_YELLOW
+     * @return whether the player is known to hold no card of the color
+     */
+    public boolean isVoid(int playerID, int colorID) {
+        return (voids >>> shift(playerID) & 1L << colorID) != 0;
+    }
+
+    /**
+     * @return the void colors of a player, bit colorID set for every void color
+     */
+    public int voidColors(int playerID) {
+        return (int) (voids >>> shift(playerID) & mask(VOID_BITS));
+    }
+
+    /**
+     * Probability that an opponent holds at least one card of a color, if its hand was drawn uniformly
+     * from the unseen cards (0 for a void color).
+     * @param colorID CardParser.COLOR_NA (wild cards) - COLOR_YELLOW
+     */
+    public double probabilityOfColor(int playerID, int colorID) {
+        if (isVoid(playerID, colorID)) return 0;
+        return atLeastOne(unseenByColor[colorID], owner.getGameController().getPlayerCardNumber(playerID));
+    }
+
+    /**
+     * Probability that an opponent holds at least one card of a face, if its hand was drawn uniformly
+     * from the unseen cards.
+     * @param face 0 - 9, or CardParser.FACE_SKIP - FACE_WILD_DRAW4
+     */
+    public double probabilityOfFace(int playerID, int face) {
+        return atLeastOne(unseenByFace[face], owner.getGameController().getPlayerCardNumber(playerID));
+    }
+
+    /**
+     * Hypergeometric probability that a hand of handSize unseen cards contains at least one of matching cards.
+     */
+    private double atLeastOne(int matching, int handSize) {
+        double none = 1;
+        for (int i = 0; i < handSize && none > 0; i++) {
+            int left = unseenCount - i;
+            if (left <= 0) break;
+            none *= Math.max(0, left - matching) / (double) left;
+        }
+        return 1 - none;
+    }
+
+    private void addUnseen(int cardID) {
+        if (isUnseen(cardID)) return;
+        if (cardID <= 64) unseenLow |= 1L << (cardID - 1);
+        else unseenHigh |= 1L << (cardID - 65);
+        unseenCount++;
+        unseenByColor[CardParser.colorOf(cardID)]++;
+        unseenByFace[CardParser.faceOf(cardID)]++;
+    }
+
+    private void removeUnseen(int cardID) {
+        if (!isUnseen(cardID)) return;
+        if (cardID <= 64) unseenLow &= ~(1L << (cardID - 1));
+        else unseenHigh &= ~(1L << (cardID - 65));
+        unseenCount--;
+        unseenByColor[CardParser.colorOf(cardID)]--;
+        unseenByFace[CardParser.faceOf(cardID)]--;
+    }
+
+    private void addDiscard(int cardID) {
+        if (cardID <= 64) discardLow |= 1L << (cardID - 1);
+        else discardHigh |= 1L << (cardID - 65);
+    }
+
+    private void removeDiscard(int cardID) {
+        if (cardID <= 64) discardLow &= ~(1L << (cardID - 1));
+        else discardHigh &= ~(1L << (cardID - 65));
+    }
+
+    private static int shift(int playerID) {
+        return playerID * VOID_BITS;
+    }
+
+    private static long mask(int bits) {
+        return (1L << bits) - 1;
+    }
+}
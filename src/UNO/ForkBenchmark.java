@@ -0,0 +1,46 @@
+package UNO;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Benchmark of Game.fork, the copy of a game search AIs make for every playout.
+ * Positions are taken from 4-player games of strategic AIs, a few rounds after the deal.
+ */
+public class ForkBenchmark {
+    private static final int POSITIONS = 64;
+
+    /**
+     * @param args [number of forks per run] [runs]
+     */
+    public static void main(String[] args) {
+        int forks = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Game[] positions = new Game[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            Game game = new Game(0, 4, GameRandom.seedOf(2020, i));
+            game.setUseGUI(false);
+            game.initializeGame();
+            for (int round = 0; round < 10 + i % 10; round++) game.playAIRound();
+            positions[i] = game;
+        }
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean threads = bean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) bean : null;
+        long threadID = Thread.currentThread().getId();
+        long sink = 0; // keeps the forks from being optimized away
+        for (int run = 0; run < runs; run++) {
+            long bytesBefore = threads != null ? threads.getThreadAllocatedBytes(threadID) : 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < forks; i++) {
+                sink += positions[i & (POSITIONS - 1)].fork().getRounds();
+            }
+            long nanos = System.nanoTime() - start;
+            long bytes = threads != null ? threads.getThreadAllocatedBytes(threadID) - bytesBefore : 0;
+            System.out.printf("run %d: %.0f ns per fork, %d bytes allocated per fork%n",
+                    run, (double) nanos / forks, bytes / forks);
+        }
+        if (sink == 42) System.out.println(); // never true, uses the sink
+    }
+}
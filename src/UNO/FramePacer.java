@@ -0,0 +1,140 @@
+package UNO;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the presentation of game frames (pages) so that humans can follow AI rounds,
+ * while the game computes the following rounds ahead of the screen.
+ *
+ * A frame is a snapshot prepared before a round is played (e.g. a page of a fork of the game). present() queues it
+ * and returns: each frame is shown one gap after the previous one and hidden one gap after being shown,
+ * so the game thread is free to go on and compute the following AI rounds meanwhile.
+ * At most MAX_BACKLOG frames wait to be shown: beyond, present() waits for the oldest one to be shown, so a game
+ * runs a bounded number of rounds ahead of the screen and every frame is shown, in order.
+ * All pacers share a single daemon timer thread.
+ */
+public class FramePacer {
+    /** Maximal number of frames waiting to be shown. */
+    public static final int MAX_BACKLOG = 8;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "uno-frame-pacer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The place of a frame in the schedule.
+     */
+    private static class Slot {
+        Runnable show; // null once shown
+        Runnable hide; // null once hidden, or for a frame staying on screen
+    }
+
+    private long gapNanos;
+    private long nextFrameAt; // System.nanoTime() from which the next frame may be shown
+    private Slot last; // slot of the frame presented last
+    private int waiting = 0; // slots not shown yet
+
+    /**
+     * @param gapMillis time every frame stays on screen (as 1/1000 seconds), 0 to present frames immediately
+     */
+    public FramePacer(int gapMillis) {
+        gapNanos = TimeUnit.MILLISECONDS.toNanos(gapMillis);
+        nextFrameAt = System.nanoTime();
+    }
+
+    /**
+     * Change the time every frame stays on screen, from the next frame presented on.
+     * @param gapMillis as 1/1000 seconds, 0 to present frames immediately
+     */
+    public synchronized void setGap(int gapMillis) {
+        gapNanos = TimeUnit.MILLISECONDS.toNanos(gapMillis);
+    }
+
+    /**
+     * Queue a frame. Blocks while MAX_BACKLOG frames wait to be shown, must not be called by a show or hide task.
+     * @param show shows the frame, run (on the timer thread unless due now) when all earlier frames are done
+     * @param hide hides the frame one gap after it is shown, may be null for frames staying on screen
+     */
+    public void present(Runnable show, Runnable hide) {
+        Runnable dueNow;
+        boolean interrupted = false;
+        synchronized (this) {
+            while (waiting >= MAX_BACKLOG) { // far enough ahead of the screen
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the frame is queued all the same
+                }
+            }
+            dueNow = schedule(show, hide);
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (dueNow != null) dueNow.run();
+    }
+
+    /**
+     * Give a frame the next place in the schedule.
+     * @return the task presenting it, to be run by the caller if it is due now, else null (run by the timer)
+     */
+    private Runnable schedule(Runnable show, Runnable hide) {
+        long now = System.nanoTime();
+        long showAt = Math.max(now, nextFrameAt);
+        nextFrameAt = showAt + gapNanos;
+        Slot previous = last;
+        Slot slot = new Slot();
+        slot.show = show;
+        slot.hide = hide;
+        last = slot;
+        boolean due = showAt <= now && waiting == 0; // else an earlier frame is still to be shown first
+        waiting++;
+        Runnable task = () -> {
+            hide(previous); // make sure frames never overlap
+            show(slot);
+        };
+        if (!due) timer.schedule(task, showAt - now, TimeUnit.NANOSECONDS);
+        if (due && gapNanos == 0) {
+            return () -> {
+                task.run();
+                hide(slot);
+            };
+        }
+        timer.schedule(() -> hide(slot), nextFrameAt - now, TimeUnit.NANOSECONDS);
+        return due ? task : null;
+    }
+
+    private void show(Slot slot) {
+        Runnable show;
+        synchronized (this) {
+            show = slot.show;
+            slot.show = null;
+            waiting--;
+            notifyAll(); // a place in the backlog is free
+        }
+        show.run();
+    }
+
+    /**
+     * Hide the frame of a slot, if it is still on screen.
+     */
+    private void hide(Slot slot) {
+        if (slot == null) return;
+        Runnable hide;
+        synchronized (this) {
+            if (slot.show != null) return; // not shown yet, its own task hides the previous frame
+            hide = slot.hide;
+            slot.hide = null;
+        }
+        if (hide != null) hide.run();
+    }
+
+    /**
+     * @return time (as 1/1000 seconds) before the frames queued so far have all been shown for a gap
+     */
+    public synchronized long backlogMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(nextFrameAt - System.nanoTime()));
+    }
+}
@@ -1,9 +1,14 @@
 package UNO;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.lang.Thread;
+import javax.swing.SwingUtilities;
 import GUI.*;
-import java.io.*;
 
 /**
  * !!!!!!!!!!!!!!!!!!!!!! Controller IN MVC !!!!!!!!!!!!!!!!!!!!!!!
@@ -15,31 +20,70 @@ public class Game {
     //    private static CardParser parser = new CardParser();
     private static final int INIT_DRAW = 7; // every player get 7 cards at beginning
 
+    /** Decisions a game can be waiting for, see pendingDecision. */
+    public static final int DECISION_NONE = 0;  // the game is over
+    public static final int DECISION_MOVE = 1;  // current player plays, draws & plays, or skips (see Move)
+    public static final int DECISION_COLOR = 2; // current player declares a color after playing a wild card
+    /** Upper bound of the number of legal moves in a position, see legalMoves. */
+    public static final int MAX_MOVES = CardParser.TOTAL_CARDS + TwoCardRule.MAX_PAIRS + 2;
+    /** Maximal number of seats of a game saved by saveState / saveSnapshot, as many as a replay log records. */
+    public static final int MAX_SAVED_PLAYERS = ReplayLog.MAX_PLAYERS;
+    /** Upper bound of the size of a state written by saveState, see stateBytes. */
+    public static final int STATE_BYTES = stateBytes(MAX_SAVED_PLAYERS);
+    /** First bytes of a snapshot written by saveSnapshot: "UNOS" and the version of the format. */
+    public static final byte[] SNAPSHOT_MAGIC = {'U', 'N', 'O', 'S', 1};
+    /** Upper bound of the size of a snapshot. */
+    public static final int SNAPSHOT_BYTES = SNAPSHOT_MAGIC.length + 8 + 1 + MAX_SAVED_PLAYERS + STATE_BYTES;
+    /** Kinds of seats in a snapshot. */
+    public static final int SEAT_HUMAN = 0;
+    public static final int SEAT_AI = 1;    // ArtificialIntelligence
+    public static final int SEAT_IDIOT = 2; // ArtificialIdiot
+    public static final int SEAT_MCTS = 3;  // MCTSPlayer, with default settings
+
     private int rounds = 1;
     private RuleController ruler;
     private CardManager gameCardManager;
     private ArrayList<Player> players;
-    private boolean setupDone = false;
     private int winnerID = -1;
     private int currentPlayerID; // playerID starts from 0 !!!!!
     private int humanNum;
     private int AINum;
-    private boolean startNewGame = false;
-    private int gapTime = 5000; // as micro-seconds
+    private int gapTime = 5000; // as 1/1000 seconds
     private boolean useGUI = true;
     private boolean manualSetup = false;
+    private final long seed;
+    private final GameRandom rand; // every random decision of this game is derived from this stream
+    private FramePacer pacer; // presents GUI pages, so that AI rounds never sleep
+    private Ponderer ponderer; // lets AI seats think during human think-time, null if never started
+    private List<GameListener> listeners = new ArrayList<>(); // observers of plays and draws, empty during makeMove
+    private UndoStack journal; // moves made by makeMove, created on first use
+    private int journaledMoves = 0; // moves on the journal
+    private int[] pairs;       // scratch buffer of legalMoves, created on first use
+    private ReplayLog replayLog; // records the game, null if it is not recorded
+    private AutoSaver autoSaver; // saves the game every few rounds, null for none
 
     /**
-     * The action current player choose. Will only be modified by GameStagePage when
-     * current player make a legal move. (i.e. play is legal)
+     * The action current player choose, taken from HandOff.userActions.
      */
     private int currentPlayerAction;
 
+    /* Hand-off between the GUI (Viewer) and the game thread, created on first use (forks never need it). */
+    private HandOff handOff;
+
     /**
-     * Whether a color has been declared in ChooseColorPage. Will only be modified by ChooseColorPage when
-     * current player plays a wild card and click one of the four color buttons.
+     * The game thread blocks on these (sleeping, not spinning) until the GUI fires the corresponding setter
+     * from the event dispatch thread.
      */
-    private boolean colorIsPicked;
+    private static class HandOff {
+        /** Actions posted by GameStagePage when current player makes a legal move (i.e. play is legal). */
+        final BlockingQueue<Integer> userActions = new LinkedBlockingQueue<>();
+        /** Released by ChooseColorPopUp when current player plays a wild card and clicks one of the four color buttons. */
+        final Semaphore colorPicked = new Semaphore(0);
+        /** Opened by PlayerNumPage when number of players has been decided. */
+        final CountDownLatch setupDone = new CountDownLatch(1);
+        /** Opened by PlayerWinPage when users ask for a new game. */
+        final CountDownLatch startNewGame = new CountDownLatch(1);
+    }
 
     /**
      * Default constructor for Game object
@@ -48,10 +92,23 @@ public class Game {
      * Notice that humanPlayerNum + AIPlayerNum should be in [2,10) in formal games.
      */
     public Game(int humanPlayerNum, int AIPlayerNum) {
+        this(humanPlayerNum, AIPlayerNum, GameRandom.randomSeed());
+    }
+
+    /**
+     * Constructor for a reproducible game: two games created with the same seed (and the same players)
+     * shuffle, deal and play exactly the same way.
+     * @param humanPlayerNum number of human players for the game
+     * @param AIPlayerNum number of AI players for the game
+     * @param seed the seed all randomness of the game is derived from
+     */
+    public Game(int humanPlayerNum, int AIPlayerNum, long seed) {
         humanNum = humanPlayerNum;
         AINum = AIPlayerNum;
-        gameCardManager = new CardManager();
-        ruler = new RuleController();
+        this.seed = seed;
+        rand = new GameRandom(seed);
+        gameCardManager = new CardManager(rand.split());
+        ruler = new RuleController(rand.split());
     }
 
 
@@ -62,6 +119,14 @@ public class Game {
         int playerNum = humanNum + AINum;
         decideFirstPlayerID(playerNum);
         if (!manualSetup) initializePlayers();
+        if (replayLog != null) {
+            if (players.size() > ReplayLog.MAX_PLAYERS) {
+                throw new IllegalStateException("a replay log records at most " + ReplayLog.MAX_PLAYERS + " seats");
+            }
+            int humanSeats = 0;
+            for (int i = 0; i < players.size(); i++) if (players.get(i).isHuman()) humanSeats |= 1 << i;
+            replayLog.gameStarted(seed, players.size(), humanSeats, currentPlayerID);
+        }
         for (Player player : players) {
             player.drawCards(INIT_DRAW);
         }
@@ -70,14 +135,13 @@ public class Game {
     private void initializePlayers() {
         int playerNum = humanNum + AINum;
         players = new ArrayList<>();
-        ArrayList<Boolean> isHuman = new ArrayList<>();
-        for (int i = 0; i < humanNum; i++) isHuman.add(true);
-        for (int i = 0; i < AINum; i++) isHuman.add(false);
-        Collections.shuffle(isHuman);
+        int[] isHuman = new int[playerNum]; // 1 for human, 0 for AI
+        for (int i = 0; i < humanNum; i++) isHuman[i] = 1;
+        rand.shuffle(isHuman, playerNum);
 
         /* playerID starts from 0 !!!!! */
         for (int i = 0; i < playerNum; i++) {
-            Player player = isHuman.get(i) ? new Player(i, this) : new ArtificialIntelligence(i, this);
+            Player player = isHuman[i] == 1 ? new Player(i, this) : new ArtificialIntelligence(i, this);
             players.add(player);
         }
     }
@@ -88,7 +152,6 @@ public class Game {
      * @param playerNum total number of players
      */
     private void decideFirstPlayerID(int playerNum) {
-        Random rand = new Random();
         currentPlayerID = rand.nextInt(playerNum);
     }
 
@@ -106,21 +169,301 @@ public class Game {
 
     /**
      * This is where the game loop starts.
+     * Every round the current player makes a decision (through the GUI for humans), which is applied by step.
      */
     public void gameStart() throws InterruptedException {
-        while (true) {
-            colorIsPicked = false; // be ready for each human player request of picking colors.
+        while (pendingDecision() != DECISION_NONE) {
             Player currentPlayer = players.get(currentPlayerID);
             if (currentPlayer.isHuman()) {
                 handleHumanBehavior(currentPlayer);
             } else {
                 handleAIBehavior((AIPlayer) currentPlayer);
             }
+        }
+    }
+
+    /**
+     * Game loop for games with only AI players, without any GUI, pause or console output.
+     * Used for batch simulation (see Simulator).
+     * @param maxRounds the game is abandoned (no winner) after this many rounds
+     * @return whether the game finished with a winner
+     */
+    public boolean playHeadless(int maxRounds) {
+        while (pendingDecision() != DECISION_NONE) {
+            if (rounds > maxRounds) return false;
+            Player currentPlayer = players.get(currentPlayerID);
+            assert(!currentPlayer.isHuman());
+            playAITurn((AIPlayer) currentPlayer);
+        }
+        return true;
+    }
+
+    /**
+     * The decision the game is waiting for. It is always a decision of the current player.
+     * @return DECISION_MOVE, DECISION_COLOR, or DECISION_NONE if the game is over
+     */
+    public int pendingDecision() {
+        if (winnerID != -1) return DECISION_NONE;
+        return ruler.isWaitingForColor() ? DECISION_COLOR : DECISION_MOVE;
+    }
+
+    /**
+     * Apply a move of the current player and advance the game. This never blocks, so a game can be
+     * driven by any thread (GUI, AI, a server ...) as long as one thread at a time calls it.
+     * An illegal move, or a move not answering the pending decision, is rejected without changing anything.
+     * The round ends (and the next player becomes current) after the move, unless a wild card was played,
+     * in which case the same player has to pick a color first.
+     * @param move a move packed by Move
+     * @return whether the move was legal and applied
+     */
+    public boolean step(int move) {
+        if (replayLog == null) return apply(move);
+        int mark = replayLog.moveStarted(currentPlayerID, move);
+        boolean applied = apply(move);
+        if (!applied) replayLog.moveRejected(mark);
+        return applied;
+    }
+
+    /**
+     * Body of step, without recording.
+     */
+    private boolean apply(int move) {
+        int decision = pendingDecision();
+        if (decision == DECISION_NONE) return false;
+        Player player = players.get(currentPlayerID);
+        if (decision == DECISION_COLOR) {
+            int colorID = Move.color(move);
+            if (Move.kind(move) != Move.PICK_COLOR || colorID < CardParser.COLOR_RED || colorID > CardParser.COLOR_YELLOW) return false;
+            ruler.updateGameStateBasedOnPickedColor(CardParser.COLOR_NAMES[colorID]);
+            endRound(player);
+            return true;
+        }
+
+        boolean skipped = ruler.getNextPlayerSkiplevel() != 0;
+        /* Only skip after a skip card. Checked here, as the plays below would clear the skip level
+           (RuleController.checkSkipAndDraw) before being rejected. */
+        if (ruler.getNextPlayerSkiplevel() == 3 && Move.kind(move) != Move.SKIP) return false;
+        Hand hand = player.getHand();
+        switch (Move.kind(move)) {
+            case Move.PLAY_ONE -> {
+                int cardID = Move.cardOne(move);
+                if (!hand.contains(cardID) || !player.optionPlayOwnedCard(cardID, true)) return false;
+                ruler.setPreviousActionID(RuleController.ACTION_PLAY_ONE);
+                fireCardPlayed(cardID);
+            }
+            case Move.PLAY_ADD, Move.PLAY_SUB -> {
+                int cardID1 = Move.cardOne(move);
+                int cardID2 = Move.cardTwo(move);
+                if (cardID1 == cardID2 || !hand.contains(cardID1) || !hand.contains(cardID2)) return false;
+                boolean played = Move.kind(move) == Move.PLAY_ADD
+                        ? player.optionPlayTwoOwnedCard_Add(cardID1, cardID2, true)
+                        : player.optionPlayTwoOwnedCard_Sub(cardID1, cardID2, true);
+                if (!played) return false;
+                ruler.setPreviousActionID(RuleController.ACTION_PLAY_TWO);
+                fireCardPlayed(cardID1);
+                fireCardPlayed(cardID2);
+            }
+            case Move.DRAW_PLAY -> {
+                if (skipped) return false; // If there is pending stacked draw, player cannot draw&play
+                if (gameCardManager.numCardLeft() + gameCardManager.numLeftDiscardPile() == 0) {
+                    ruler.setPreviousActionID(RuleController.ACTION_DRAW_PLAY_FAIL); // nothing left to draw
+                } else {
+                    int colorID = ruler.getMatchableColorID();
+                    player.drawCards(1);
+                    for (int i = 0; i < listeners.size(); i++) listeners.get(i).drewInsteadOfPlaying(currentPlayerID, colorID);
+                    boolean legal = player.optionPlayOwnedCard(player.getLastDrawnCard(), true);
+                    ruler.setPreviousActionID(legal ? RuleController.ACTION_DRAW_PLAY_OK : RuleController.ACTION_DRAW_PLAY_FAIL);
+                    if (legal) fireCardPlayed(player.getLastDrawnCard());
+                }
+            }
+            case Move.SKIP -> {
+                if (!skipped) return false; // player can only skip when being skipped
+                ruler.setPreviousActionID(RuleController.ACTION_SKIP);
+                player.optionSkip();
+            }
+            default -> {
+                return false;
+            }
+        }
+        if (!ruler.isWaitingForColor()) endRound(player);
+        return true;
+    }
+
+    /**
+     * Apply a move like step, and record on a journal how to undo it exactly (see unmakeMove), so that
+     * a search can walk a tree of moves on one game instead of forking it. Nothing is allocated once
+     * the journal has grown to the depth of the search.
+     * The move is not part of the game: listeners are not told about it, and it is not recorded in the replay log nor saved.
+     * @param move a move packed by Move
+     * @return whether the move was legal and applied (nothing is recorded otherwise)
+     */
+    public boolean makeMove(int move) {
+        if (journal == null) journal = new UndoStack();
+        Player player = players.get(currentPlayerID);
+        long ruleState = ruler.getState();
+        long pileMark = gameCardManager.mark();
+        long pileRandom = gameCardManager.getRandomState();
+        long handLow = player.getHand().getLow();
+        long handHigh = player.getHand().getHigh();
+        long turn = (long) currentPlayerID | (long) (winnerID + 1) << 8 | (long) (player.getLastDrawnCard() + 1) << 16
+                | (long) rounds << 32;
+        gameCardManager.setJournal(journal); // draws from discard pile are pushed below the frame
+        List<GameListener> observers = listeners;
+        ReplayLog log = replayLog;
+        AutoSaver saver = autoSaver;
+        listeners = Collections.emptyList();
+        replayLog = null;
+        autoSaver = null;
+        boolean applied = step(move);
+        listeners = observers;
+        replayLog = log;
+        autoSaver = saver;
+        gameCardManager.setJournal(null);
+        if (!applied) return false;
+        journal.push(ruleState);
+        journal.push(pileMark);
+        journal.push(pileRandom);
+        journal.push(handLow);
+        journal.push(handHigh);
+        journal.push(turn);
+        journaledMoves++;
+        return true;
+    }
+
+    /**
+     * Undo the last move applied by makeMove (and not undone yet): piles, rule state, hand of the player,
+     * whose turn it is, winner and rounds are exactly as before the move.
+     */
+    public void unmakeMove() {
+        assert(journaledMoves > 0);
+        journaledMoves--;
+        long turn = journal.pop();
+        long handHigh = journal.pop();
+        long handLow = journal.pop();
+        long pileRandom = journal.pop();
+        long pileMark = journal.pop();
+        long ruleState = journal.pop();
+        gameCardManager.undo(pileMark, pileRandom, journal);
+        ruler.setState(ruleState);
+        currentPlayerID = (int) (turn & 0xFF);
+        winnerID = (int) (turn >>> 8 & 0xFF) - 1;
+        rounds = (int) (turn >>> 32);
+        players.get(currentPlayerID).restore(handLow, handHigh, (int) (turn >>> 16 & 0xFF) - 1);
+    }
+
+    /**
+     * @return number of moves made by makeMove which can still be undone
+     */
+    public int undoableMoves() {
+        return journaledMoves;
+    }
+
+    /**
+     * Enumerate the legal moves answering the pending decision, i.e. the moves step would accept.
+     * Nothing is changed.
+     * @param out buffer receiving the moves packed by Move (length of at least MAX_MOVES)
+     * @return number of moves, 0 if the game is over
+     */
+    public int legalMoves(int[] out) {
+        int decision = pendingDecision();
+        if (decision == DECISION_NONE) return 0;
+        int count = 0;
+        if (decision == DECISION_COLOR) {
+            for (int colorID = CardParser.COLOR_RED; colorID <= CardParser.COLOR_YELLOW; colorID++) {
+                out[count++] = Move.pickColor(colorID);
+            }
+            return count;
+        }
+        int skipLevel = ruler.getNextPlayerSkiplevel();
+        out[count++] = skipLevel != 0 ? Move.skip() : Move.drawAndPlay();
+        if (skipLevel == 3) return count; // a skip card was played, nothing else is possible
+        Player player = players.get(currentPlayerID);
+        long low = ruler.legalCards(player, false);
+        long high = ruler.legalCards(player, true);
+        for (; low != 0; low &= low - 1) out[count++] = Move.playOne(Long.numberOfTrailingZeros(low) + 1);
+        for (; high != 0; high &= high - 1) out[count++] = Move.playOne(Long.numberOfTrailingZeros(high) + 65);
+        if (pairs == null) pairs = new int[TwoCardRule.MAX_PAIRS];
+        int numPairs = player.findTwoCardPairs(pairs);
+        for (int i = 0; i < numPairs; i++) {
+            int cardID1 = TwoCardRule.cardOne(pairs[i]);
+            int cardID2 = TwoCardRule.cardTwo(pairs[i]);
+            boolean legal = TwoCardRule.op(pairs[i]) == TwoCardRule.OP_ADD
+                    ? player.optionPlayTwoOwnedCard_Add(cardID1, cardID2, false)
+                    : player.optionPlayTwoOwnedCard_Sub(cardID1, cardID2, false);
+            if (legal) out[count++] = Move.playTwo(cardID1, cardID2, TwoCardRule.op(pairs[i]));
+        }
+        return count;
+    }
+
+    /**
+     * Register an observer of the plays and draws of this game (e.g. a CardTracker).
+     * Listeners are not copied by fork.
+     * @param listener the observer
+     */
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister all observers, e.g. in a fork where they are of no use.
+     */
+    public void clearListeners() {
+        listeners.clear();
+    }
+
+    /**
+     * Record this game in a replay log, from the deal on. Must be called before initializeGame.
+     * Forks are never recorded.
+     * @param log the log, null to stop recording
+     */
+    public void setReplayLog(ReplayLog log) {
+        replayLog = log;
+    }
+
+    /**
+     * Save the game every few rounds from now on (see AutoSaver), without stopping play.
+     * @param saver the saver, null to stop saving
+     */
+    public void setAutoSaver(AutoSaver saver) {
+        autoSaver = saver;
+    }
 
-            if (winnerID != -1) break;
-            updateNextPlayerID();
-            rounds++;
+    /**
+     * @return whether any observer is registered or the game is recorded, so that events need to be reported
+     */
+    boolean hasListeners() {
+        return !listeners.isEmpty() || replayLog != null;
+    }
+
+    private void fireCardPlayed(int cardID) {
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).cardPlayed(currentPlayerID, cardID);
+    }
+
+    /**
+     * Report a card drawn by a player, called by Player.drawCards.
+     */
+    void fireCardDrawn(int playerID, int cardID, boolean fromDiscardPile) {
+        if (replayLog != null) replayLog.cardDrawn(playerID, cardID, fromDiscardPile);
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).cardDrawn(playerID, cardID, fromDiscardPile);
+    }
+
+    /**
+     * Finish the round of a player: record the winner, or pass the turn to the next player.
+     */
+    private void endRound(Player player) {
+        if (player.playerWin()) { // a player played out all hand cards
+            winnerID = currentPlayerID;
+            if (replayLog != null) {
+                replayLog.checksum((int) positionKey());
+                replayLog.gameEnded(winnerID, rounds);
+            }
+            if (autoSaver != null) autoSaver.roundEnded(this);
+            return;
         }
+        updateNextPlayerID();
+        rounds++;
+        if (replayLog != null && rounds % ReplayLog.CHECKSUM_INTERVAL == 0) replayLog.checksum((int) positionKey());
+        if (autoSaver != null) autoSaver.roundEnded(this);
     }
 
     /**
@@ -131,24 +474,19 @@ public class Game {
      *
      * TEST MANUALLY
      */
-    public void handleHumanBehavior(Player currentPlayer) {
-        GameStagePage gamePage = new GameStagePage(this);
-        currentPlayerAction = -1;
-
-        PrintStream original = System.out;
-        System.setOut(new PrintStream(new OutputStream() {public void write(int b) {}})); // we don't want garbage print-out information
-        while (currentPlayerAction == -1) { // see the comment for this variable on top for details
-            System.out.println("looping..."); // do not delete this line or code won't run!
-        }
-        System.setOut(original);
+    public void handleHumanBehavior(Player currentPlayer) throws InterruptedException {
+        handOff().userActions.clear(); // drop clicks left over from a previous page
+        GameStagePage gamePage = new GameStagePage(this, false);
+        pacer().present(() -> SwingUtilities.invokeLater(gamePage::showPage), null); // after the pages of previous AI rounds
+        startPondering();
+        currentPlayerAction = handOff().userActions.take(); // sleep until the player makes a legal move
+        ponderer.stop();
 
         /* Actions arriving here is guaranteed to be legal. */
-        handleCurrentPlayerAction(gamePage, currentPlayer);
+        handleCurrentPlayerAction(gamePage);
+        if (pendingDecision() == DECISION_COLOR) promptPlayerChooseColor(); // wild card, choose color
 
-        if (currentPlayer.playerWin()) { // a player played out all hand cards
-            winnerID = currentPlayerID;
-            new PlayerWinPage(this);
-        }
+        if (winnerID != -1) new PlayerWinPage(this);
         gamePage.dispose();
     }
 
@@ -156,53 +494,27 @@ public class Game {
      * handle the decision made by human player. (share part of the functionality of handleHumanBehavior)
      * TESTED MANUALLY
      */
-    private void handleCurrentPlayerAction(GameStagePage gamePage, Player currentPlayer) {
+    private void handleCurrentPlayerAction(GameStagePage gamePage) {
         switch (currentPlayerAction) {
-            case 1 -> { // play owned cards - case where user plays one owned card
-                ArrayList<Integer> selectedCards = gamePage.getSelectedCards();
-                humanPlayOwned(currentPlayer, selectedCards);
-            }
-            case 2 -> { // draw & play
-                /* draw pile and discard pile are both empty, we simply skip */
-                if (gameCardManager.numCardLeft() + gameCardManager.numLeftDiscardPile() == 0) {
-                    currentPlayer.optionSkip();
-                    return;
-                }
-                currentPlayer.drawCards(1);
-                int newCardID = currentPlayer.getCards().get(getPlayerCardNumber(currentPlayerID) - 1);
-                boolean legal = currentPlayer.optionPlayOwnedCard(newCardID, true);
-                String prevCardColor = ruler.getPreviousCard().split(" ")[0];
-                String action = legal ? "Draw & Play (OK)" : "Draw & Play (FAIL)";
-                ruler.setPreviousAction(action);
-                if (prevCardColor.equals("NA")) promptPlayerChooseColor(); // wild card, choose color
-            }
-            case 3 -> {
-                ruler.setPreviousAction("Skip");
-                currentPlayer.optionSkip(); // skip
-            }
+            case 1 -> humanPlayOwned(gamePage.getSelectedCards()); // play owned cards
+            case 2 -> step(Move.drawAndPlay()); // draw & play
+            case 3 -> step(Move.skip()); // skip
         }
     }
 
     /**
      * Helper function for handling a human player's valid play.
-     * @param currentPlayer the player being in the round
      * @param selectedCards arraylist of cards selected by the player (obtained from Viewer)
      */
-    private void humanPlayOwned(Player currentPlayer, ArrayList<Integer> selectedCards) {
+    private void humanPlayOwned(ArrayList<Integer> selectedCards) {
         if (selectedCards.size() == 1) { // player selected one card to play
-            int cardID = selectedCards.get(0);
-            currentPlayer.optionPlayOwnedCard(cardID, true);
-            String prevCardColor = ruler.getPreviousCard().split(" ")[0];
-            ruler.setPreviousAction("Play Owned (1)");
-            if (prevCardColor.equals("NA")) promptPlayerChooseColor();
-
+            step(Move.playOne(selectedCards.get(0)));
         } else {  // play owned cards - case where player selected two cards to play
             int cardID1 = selectedCards.get(0);
             int cardID2 = selectedCards.get(1);
-            ruler.setPreviousAction("Play Owned (2)");
             /* only one of following two will succeed */
-            if (!currentPlayer.optionPlayTwoOwnedCard_Add(cardID1, cardID2, true))
-                currentPlayer.optionPlayTwoOwnedCard_Sub(cardID1, cardID2, true);
+            if (!step(Move.playTwo(cardID1, cardID2, TwoCardRule.OP_ADD)))
+                step(Move.playTwo(cardID1, cardID2, TwoCardRule.OP_SUB));
         }
     }
 
@@ -214,63 +526,341 @@ public class Game {
      * This function could not be combined with handleBehavior.
      */
     public void handleAIBehavior(AIPlayer currentPlayer) {
-        GameStagePage gamePage = useGUI ? new GameStagePage(this) : null;
-        int decision = currentPlayer.makeActionDecision();
-        switch (decision) {
-            case 1 -> { // play owned cards. Notice AI won't play 2 cards at one time
-                AIPlayOwned(currentPlayer);
-            }
-            case 2 -> { // draw & play
-                AIDrawAndPlay(currentPlayer);
-            }
-            case 3 -> { // skip this round
-                ruler.setPreviousAction("Skip");
-                currentPlayer.optionSkip(); // skip
+        if (!useGUI) { // nothing to present, no pacing
+            playAITurn(currentPlayer);
+            return;
+        }
+        Game snapshot = fork(); // the round before the AI moves, its page is only built when its turn comes
+        playAITurn(currentPlayer);
+        /* The page is shown for gapTime by the pacer, while this thread goes on with the following rounds,
+           at most FramePacer.MAX_BACKLOG rounds ahead of the screen. It is built, shown and disposed on the
+           event dispatch thread. */
+        GameStagePage[] page = new GameStagePage[1];
+        pacer().present(() -> SwingUtilities.invokeLater(() -> {
+            page[0] = new GameStagePage(snapshot, false);
+            page[0].showPage();
+        }), () -> SwingUtilities.invokeLater(() -> {
+            if (page[0] != null) page[0].dispose();
+        }));
+        if (winnerID != -1) {
+            pacer().present(() -> SwingUtilities.invokeLater(() -> new PlayerWinPage(this, true)), null);
+        }
+    }
+
+    /**
+     * Get the pacer presenting the pages of this game, created with the current gap time on first use
+     * (setGapTime changes the gap of an existing pacer).
+     */
+    private FramePacer pacer() {
+        if (pacer == null) pacer = new FramePacer(gapTime);
+        return pacer;
+    }
+
+    /**
+     * Get the hand-off with the GUI, created on first use.
+     */
+    private synchronized HandOff handOff() {
+        if (handOff == null) handOff = new HandOff();
+        return handOff;
+    }
+
+    /**
+     * Play one round of an AI player without any GUI or pause: the AI decides its move (and its color
+     * if it plays a wild card), and the moves are applied by step.
+     * @param currentPlayer the current AI player in the round
+     */
+    private void playAITurn(AIPlayer currentPlayer) {
+        if (pendingDecision() == DECISION_MOVE) {
+            int move = ponderer != null ? ponderer.answer(this, currentPlayer) : 0; // answer found while a human thought
+            if (move == 0) move = currentPlayer.decideMove();
+            if (!step(move)) {
+                // should not be reached as AI decisions are legal, but never let a faulty AI stall the game
+                step(ruler.getNextPlayerSkiplevel() != 0 ? Move.skip() : Move.drawAndPlay());
             }
         }
+        if (pendingDecision() == DECISION_COLOR) step(currentPlayer.decideColor()); // a wild card is played by AI
+    }
 
-        try { Thread.sleep(gapTime);}
-        catch (Exception e) { System.out.println("Interrupted"); }  // should not be reached
-        if (currentPlayer.playerWin()) { // a player played out all hand cards
-            winnerID = currentPlayerID;
-            if (useGUI) new PlayerWinPage(this);
+    /**
+     * Play the round of the current player if it is an AI (see playAITurn), for drivers advancing the game from outside.
+     * @return whether an AI round was played, false if the game is over or waiting for a human
+     */
+    public boolean playAIRound() {
+        if (pendingDecision() == DECISION_NONE) return false;
+        Player currentPlayer = players.get(currentPlayerID);
+        if (currentPlayer.isHuman()) return false;
+        playAITurn((AIPlayer) currentPlayer);
+        return true;
+    }
+
+
+    /**
+     * Let the AI seats ponder their answers to every possible move of the current (human) player in the background.
+     * Must be called by the thread driving the game. See Ponderer.
+     * @return the ponderer of this game
+     */
+    public Ponderer startPondering() {
+        if (ponderer == null) ponderer = new Ponderer();
+        ponderer.start(this);
+        return ponderer;
+    }
+
+    /**
+     * Create an independent copy of this game in its current position: piles, rule state, hands, whose turn it is,
+     * and the state of every random stream, so the copy plays on exactly like this game would.
+     * The copy has no GUI and no pacing. Used for looking ahead (pondering, search).
+     * @return the copy
+     */
+    public Game fork() {
+        return new Game(this);
+    }
+
+    /**
+     * Copy constructor behind fork: only primitive state and arrays are copied, nothing mutable is shared,
+     * and nothing is shuffled or drawn from a random stream.
+     */
+    private Game(Game original) {
+        humanNum = original.humanNum;
+        AINum = original.AINum;
+        seed = original.seed;
+        rand = new GameRandom(original.rand.getState());
+        ruler = new RuleController(original.ruler.getState());
+        gameCardManager = new CardManager(original.gameCardManager);
+        useGUI = false;
+        gapTime = 0;
+        manualSetup = true;
+        rounds = original.rounds;
+        winnerID = original.winnerID;
+        currentPlayerID = original.currentPlayerID;
+        if (original.players != null) {
+            players = new ArrayList<>(original.players.size());
+            for (int i = 0; i < original.players.size(); i++) players.add(original.players.get(i).copyFor(i, this));
         }
-        if (gamePage != null) gamePage.dispose();
+        rand.setState(original.rand.getState()); // players split their streams from it, which is undone by copyFor
     }
 
+    /**
+     * A game set up like a game recorded in a replay log (see ReplayEngine): same seed, number of seats and first
+     * player, and dealt. Seats are plain players, since the recorded moves are applied by step.
+     * @param humanSeats bit i set if seat i was human
+     */
+    static Game replayed(long seed, int numPlayers, int humanSeats, int firstPlayerID) {
+        int humans = Integer.bitCount(humanSeats);
+        Game game = new Game(humans, numPlayers - humans, seed);
+        game.useGUI = false;
+        game.gapTime = 0;
+        game.manualSetup = true;
+        game.players = new ArrayList<>(numPlayers);
+        for (int i = 0; i < numPlayers; i++) game.players.add(new Player(i, game));
+        game.initializeGame();
+        game.currentPlayerID = firstPlayerID; // decided by a stream the recorded seats split differently
+        return game;
+    }
 
     /**
-     * Helper function for AI drawing a card and play.
-     * @param currentPlayer the current AI player in the round
+     * Write the whole state of the game in a compact binary form: rule state, piles, hands, whose turn it is, and
+     * the state of every random stream, i.e. what fork copies (about 250 bytes for 4 players, see stateBytes).
+     * Nothing about the seats but their hands is written, see loadState.
+     * @param out buffer receiving the state, at least stateBytes(number of players) bytes
+     * @throws IllegalArgumentException if the game has more than MAX_SAVED_PLAYERS seats
      */
-    private void AIDrawAndPlay(AIPlayer currentPlayer) {
-        currentPlayer.drawCards(1);
-        int newCardID = currentPlayer.getCards().get(getPlayerCardNumber(currentPlayerID) - 1);
-        boolean legal = currentPlayer.optionPlayOwnedCard(newCardID, true);
-        String prevCardColor = ruler.getPreviousCard().split(" ")[0];
-        if (prevCardColor.equals("NA")) { // a wild card is played by AI
-            String colorDecision = currentPlayer.pickColor();
-            ruler.updateGameStateBasedOnPickedColor(colorDecision);
+    public void saveState(ByteBuffer out) {
+        checkSavable();
+        out.putLong(ruler.getState());
+        out.putLong(rand.getState());
+        out.putInt(rounds);
+        out.put((byte) currentPlayerID);
+        out.put((byte) (winnerID + 1));
+        gameCardManager.saveState(out);
+        out.put((byte) players.size());
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            out.putLong(player.getHand().getLow());
+            out.putLong(player.getHand().getHigh());
+            out.put((byte) (player.getLastDrawnCard() + 1));
+            out.putLong(player instanceof AIPlayer ? ((AIPlayer) player).getRandom().getState() : 0);
         }
-        String action = legal ? "Draw & Play (OK)" : "Draw & Play (FAIL)";
-        ruler.setPreviousAction(action);
     }
 
     /**
-     * Helper function for AI playing his owned cards.
-     * @param currentPlayer the current AI player in the round
+     * @return upper bound of the size of a state written by saveState for a number of players
      */
-    private void AIPlayOwned(AIPlayer currentPlayer) {
-        int cardID = currentPlayer.playCard();
-        currentPlayer.optionPlayOwnedCard(cardID, true);
-        String prevCardColor = ruler.getPreviousCard().split(" ")[0];
-        if (prevCardColor.equals("NA")) { // a wild card is played by AI
-            String colorDecision = currentPlayer.pickColor();
-            ruler.updateGameStateBasedOnPickedColor(colorDecision);
+    public static int stateBytes(int numPlayers) {
+        return 8 + 8 + 4 + 1 + 1 + 14 + CardParser.TOTAL_CARDS + 1 + numPlayers * 25;
+    }
+
+    private void checkSavable() {
+        if (players.size() > MAX_SAVED_PLAYERS) {
+            throw new IllegalArgumentException("cannot save a game of more than " + MAX_SAVED_PLAYERS + " seats");
         }
-        ruler.setPreviousAction("Play Owned (1)");  // (1) because one card is played
     }
 
+    /**
+     * Restore a state written by saveState, into a game with the same number of seats. The undo journal
+     * of makeMove is cleared, listeners and the replay log are kept.
+     * @param in buffer positioned at the state, positioned after it on return
+     */
+    public void loadState(ByteBuffer in) {
+        ruler.setState(in.getLong());
+        rand.setState(in.getLong());
+        rounds = in.getInt();
+        currentPlayerID = in.get();
+        winnerID = in.get() - 1;
+        gameCardManager.loadState(in);
+        int numPlayers = in.get();
+        assert(numPlayers == players.size());
+        for (int i = 0; i < numPlayers; i++) {
+            Player player = players.get(i);
+            long low = in.getLong();
+            long high = in.getLong();
+            player.restore(low, high, in.get() - 1);
+            long randomState = in.getLong();
+            if (player instanceof AIPlayer) ((AIPlayer) player).getRandom().setState(randomState);
+        }
+        if (journal != null) journal.clear();
+        journaledMoves = 0;
+    }
+
+    /**
+     * Write a snapshot of the whole game, enough to resume it in another JVM (see fromSnapshot): SNAPSHOT_MAGIC,
+     * the seed, the kind of every seat (SEAT_HUMAN ...) and the state written by saveState - deck order, hands,
+     * rule state with the pending decision, whose turn it is and every random stream. At most SNAPSHOT_BYTES.
+     * @param out buffer receiving the snapshot
+     * @throws IllegalArgumentException if a seat is an AI of another kind, or there are more than MAX_SAVED_PLAYERS seats
+     */
+    public void saveSnapshot(ByteBuffer out) {
+        checkSavable();
+        out.put(SNAPSHOT_MAGIC);
+        out.putLong(seed);
+        out.put((byte) players.size());
+        for (int i = 0; i < players.size(); i++) out.put((byte) seatKind(players.get(i)));
+        saveState(out);
+    }
+
+    private static int seatKind(Player player) {
+        if (player instanceof MCTSPlayer) return SEAT_MCTS;
+        if (player instanceof ArtificialIdiot) return SEAT_IDIOT;
+        if (player instanceof ArtificialIntelligence) return SEAT_AI;
+        if (!player.isHuman()) throw new IllegalArgumentException("cannot save a seat of " + player.getClass().getSimpleName());
+        return SEAT_HUMAN;
+    }
+
+    /**
+     * Resume a game from a snapshot written by saveSnapshot: the game plays on exactly like the saved game
+     * would have, from the same decision of the same player. MCTS seats start with default settings, and their
+     * card trackers start over from the resumed position (own hand and discard pile seen, no void known). Like a new game, it has a GUI until setUseGUI(false).
+     * @param in buffer positioned at the snapshot, positioned after it on return
+     * @return the game, ready for gameStart, playHeadless or step
+     * @throws IllegalArgumentException if it is not a snapshot
+     */
+    public static Game fromSnapshot(ByteBuffer in) {
+        for (byte b : SNAPSHOT_MAGIC) {
+            if (!in.hasRemaining() || in.get() != b) throw new IllegalArgumentException("not a game snapshot");
+        }
+        long seed = in.getLong();
+        int numPlayers = in.get();
+        int[] kinds = new int[numPlayers];
+        int humans = 0;
+        for (int i = 0; i < numPlayers; i++) {
+            kinds[i] = in.get();
+            if (kinds[i] == SEAT_HUMAN) humans++;
+        }
+        Game game = new Game(humans, numPlayers - humans, seed);
+        game.manualSetup = true;
+        game.players = new ArrayList<>(numPlayers);
+        for (int i = 0; i < numPlayers; i++) {
+            game.players.add(switch (kinds[i]) {
+                case SEAT_HUMAN -> new Player(i, game);
+                case SEAT_AI -> new ArtificialIntelligence(i, game);
+                case SEAT_IDIOT -> new ArtificialIdiot(i, game);
+                case SEAT_MCTS -> new MCTSPlayer(i, game);
+                default -> throw new IllegalArgumentException("unknown seat kind " + kinds[i]);
+            });
+        }
+        game.loadState(in); // also the streams the seats split from the game
+        for (int i = 0; i < numPlayers; i++) { // built before the hands and piles were loaded
+            if (kinds[i] == SEAT_MCTS) ((MCTSPlayer) game.players.get(i)).getTracker().reset();
+        }
+        return game;
+    }
+
+    /**
+     * Replace everything a player cannot see by a random guess consistent with what the player knows:
+     * the cards of all other hands and of the draw pile are shuffled together and dealt again
+     * (every hand keeps its size), and the random streams of the game and of its card manager are reseeded.
+     * Meant for forks (see fork), e.g. the determinized playouts of MCTSPlayer.
+     * @param viewerID the player whose knowledge is kept, i.e. own hand and discard pile
+     * @param random stream the guess is drawn from
+     */
+    public void determinize(int viewerID, GameRandom random) {
+        determinize(viewerID, random, null);
+    }
+
+    /**
+     * Same as determinize(viewerID, random), but the guess also respects the voids inferred by a card tracker
+     * of the viewer: an opponent known to hold no card of a color is dealt none, as long as enough cards are left.
+     * @param tracker card tracker of the viewer, null for none
+     */
+    public void determinize(int viewerID, GameRandom random, CardTracker tracker) {
+        int[] unseen = new int[CardParser.TOTAL_CARDS];
+        int count = 0;
+        for (int cardID : gameCardManager.getCardPile()) unseen[count++] = cardID;
+        for (int i = 0; i < players.size(); i++) {
+            if (i == viewerID) continue;
+            Hand hand = players.get(i).getHand();
+            for (int cardID : hand.getCards()) unseen[count++] = cardID;
+        }
+        random.shuffle(unseen, count);
+        int dealt = 0;
+        for (int i = 0; i < players.size(); i++) {
+            if (i == viewerID) continue;
+            Hand hand = players.get(i).getHand();
+            int size = hand.size();
+            int voids = tracker != null ? tracker.voidColors(i) : 0;
+            hand.clear();
+            for (int j = 0; j < size; j++) {
+                int pick = dealt;
+                // first card of the shuffled rest not of a void color (the rest is still in random order)
+                while (voids != 0 && pick < count && (voids & 1 << CardParser.colorOf(unseen[pick])) != 0) pick++;
+                if (pick == count) pick = dealt;
+                int cardID = unseen[pick];
+                unseen[pick] = unseen[dealt];
+                unseen[dealt++] = cardID;
+                hand.add(cardID);
+            }
+        }
+        gameCardManager.setCardPile(unseen, dealt, count - dealt);
+        gameCardManager.setRandomState(random.nextLong());
+        rand.setState(random.nextLong());
+    }
+
+    /**
+     * A 64-bit key of the current position: rule state, whose turn it is, all hands and pile sizes.
+     * Equal positions have equal keys, different positions collide with negligible probability.
+     * @return key of the position
+     */
+    public long positionKey() {
+        long key = GameRandom.mix64(ruler.getState() ^ ((long) currentPlayerID << 48) ^ ((long) (winnerID + 1) << 56));
+        for (int i = 0; i < players.size(); i++) {
+            Hand hand = players.get(i).getHand();
+            key = GameRandom.mix64(key ^ hand.getLow());
+            key = GameRandom.mix64(key ^ hand.getHigh());
+        }
+        return GameRandom.mix64(key ^ gameCardManager.numCardLeft() ^ ((long) gameCardManager.numLeftDiscardPile() << 8));
+    }
+
+    /**
+     * Zobrist key of the current position (see Zobrist): hands, top card, rule state, whose turn it is and winner.
+     * Hands maintain their part on every move, so this costs one XOR per player. The draw pile is not part of it.
+     * @return key of the position
+     */
+    public long zobristKey() {
+        long key = Zobrist.stateKey(ruler, gameCardManager.topCard(), currentPlayerID, winnerID);
+        for (int seat = 0; seat < players.size(); seat++) {
+            key ^= Zobrist.handKey(seat, players.get(seat).getHand().getHash());
+        }
+        return key;
+    }
 
     /**
      * Getter for game rounds.
@@ -282,6 +872,22 @@ public class Game {
     }
 
 
+    /**
+     * Get the seed this game was created with. Creating a game with this seed reproduces it.
+     * @return seed of the game
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Derive a new independent random stream from the stream of this game (e.g. for an AI player).
+     * @return a new random stream
+     */
+    public GameRandom splitRandom() {
+        return rand.split();
+    }
+
     /**
      * Get game state (rule controller) info.
      *
@@ -330,7 +936,7 @@ public class Game {
      * @return the number of cards left in the player's hand
      */
     public int getPlayerCardNumber(int playerID) {
-        return players.get(playerID).getCards().size();
+        return players.get(playerID).getHand().size();
     }
 
     /**
@@ -343,17 +949,18 @@ public class Game {
     }
 
     /**
+     * Post the action of the current human player, waking up the game thread.
      * actionID - { 1 : play, 2 : draw & play, 3 : skip}
      */
     public void setUserAction(int actionID) {
-        currentPlayerAction = actionID;
+        handOff().userActions.offer(actionID);
     }
 
     /**
-     * Set color is picked as TRUE.
+     * Inform the game thread that a color has been picked.
      */
     public void setColorIsPicked() {
-        colorIsPicked = true;
+        handOff().colorPicked.release();
     }
 
     /**
@@ -368,12 +975,10 @@ public class Game {
      * Create a pop-up window for users who played wild cards to pick color.
      * TESTED MANUALLY!
      */
-    private void promptPlayerChooseColor() {
-        ChooseColorPopUp colorPage = new ChooseColorPopUp(this);
-        while (!colorIsPicked) {
-            colorPage.setAsVisible(true); // prevent clicking on "X" by chance
-            if (colorIsPicked) colorPage.setAsVisible(false); // prevent race condition
-        }
+    private void promptPlayerChooseColor() throws InterruptedException {
+        handOff().colorPicked.drainPermits(); // be ready for this request of picking colors
+        new ChooseColorPopUp(this);
+        handOff().colorPicked.acquire(); // sleep until one of the color buttons is clicked
     }
 
     /**
@@ -390,21 +995,28 @@ public class Game {
      * Prepared for GUI - player number page (view) to inform the game controller that set up is ready.
      */
     public void setSetupDone() {
-        setupDone = true;
+        handOff().setupDone.countDown();
     }
 
     /**
      * Whether the game initialization set-up is ready.
      */
     public boolean isSetupDone() {
-        return setupDone;
+        return handOff().setupDone.getCount() == 0;
+    }
+
+    /**
+     * Block the calling thread until the game initialization set-up is ready.
+     */
+    public void awaitSetupDone() throws InterruptedException {
+        handOff().setupDone.await();
     }
 
     /**
      * Prepared for GUI - winner page (view) to inform the game controller to start a new game.
      */
     public void setStartNewGame() {
-        startNewGame = true;
+        handOff().startNewGame.countDown();
     }
 
     /**
@@ -412,15 +1024,23 @@ public class Game {
      * @return Whether to start a new game after this game is finished
      */
     public boolean toStartNewGame() {
-        return startNewGame;
+        return handOff().startNewGame.getCount() == 0;
+    }
+
+    /**
+     * Block the calling thread until users ask for a new game.
+     */
+    public void awaitStartNewGame() throws InterruptedException {
+        handOff().startNewGame.await();
     }
 
     /**
-     * To set a time gap after each AI player made a decision.
-     * @param t time for sleeping (as 1/1000 seconds)
+     * To set how long the page of each AI round stays on screen. The game itself does not pause.
+     * @param t time for presenting a page (as 1/1000 seconds)
      */
     public void setGapTime(int t) {
         gapTime = t;
+        if (pacer != null) pacer.setGap(t); // pages already queued keep their gap, so that they never overlap
     }
 
     /**
@@ -477,7 +1097,7 @@ public class Game {
      * @param color color picked by the player
      */
     public void updateGameStateBasedOnPickedColor(String color) {
-        ruler.updateGameStateBasedOnPickedColor(color);
+        step(Move.pickColor(CardParser.colorID(color)));
     }
 
     /**
@@ -485,7 +1105,7 @@ public class Game {
      * @param playerID the target player
      * @return hand cards of a player
      */
-    public ArrayList<Integer> getPlayerCards(int playerID) {
+    public List<Integer> getPlayerCards(int playerID) {
         return players.get(playerID).getCards();
     }
 
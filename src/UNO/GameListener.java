@@ -0,0 +1,23 @@
+package UNO;
+
+/**
+ * Observer of the events of a game, registered by Game.addListener. Callbacks are invoked by the thread
+ * driving the game, in the order the events happen, and must not modify the game.
+ *
+ * Draws are reported with the card drawn, which only its owner is supposed to see: a listener acting for
+ * a seat (e.g. CardTracker) must ignore the cards drawn by other players.
+ */
+public interface GameListener {
+    /** A card was played by a player and put on the discard pile (reported once per card for two-card plays). */
+    default void cardPlayed(int playerID, int cardID) {}
+
+    /** A card was drawn by a player, from the draw pile or (when it is empty) from the discard pile. */
+    default void cardDrawn(int playerID, int cardID, boolean fromDiscardPile) {}
+
+    /**
+     * A player chose draw & play while colorID was to be matched (reported after the card is drawn, before it
+     * is played). Draw & play is always legal, so the player may have held a legal card, unless it is a player
+     * that draws only when stuck (see Player.drawsOnlyWhenStuck).
+     */
+    default void drewInsteadOfPlaying(int playerID, int colorID) {}
+}
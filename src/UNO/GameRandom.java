@@ -0,0 +1,117 @@
+package UNO;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The random number stream of one game.
+ *
+ * Every source of randomness in a game (deck shuffling, first card, first player, AI choices)
+ * is derived from one 64-bit seed by splitting, so a game can be replayed bit-for-bit from its seed,
+ * and games running in parallel never contend on a shared generator.
+ *
+ * The generator is a SplitMix-style stream with a fixed gamma (a Weyl sequence, as in java.util.SplittableRandom)
+ * whose outputs go through the fmix64 finalizer of MurmurHash3 (see mix64), rather than the variant finalizer of
+ * SplittableRandom. Its whole state is a single long that can be saved and restored (see getState / setState).
+ */
+public class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final AtomicLong seeder = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+    private long state;
+
+    /**
+     * @param seed the seed of the stream
+     */
+    public GameRandom(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Generate a fresh seed, for games that are not required to be reproducible.
+     * @return a seed different for every call
+     */
+    public static long randomSeed() {
+        return mix64(seeder.getAndAdd(GOLDEN_GAMMA));
+    }
+
+    /**
+     * Seed of the index-th game of a batch, equal to the index-th long of a stream seeded with baseSeed.
+     * It only depends on (baseSeed, index), so games of a batch can be created in any order or in parallel.
+     * @param baseSeed seed of the batch
+     * @param index index of the game in the batch, starting from 0
+     * @return seed of the game
+     */
+    public static long seedOf(long baseSeed, long index) {
+        return mix64(baseSeed + (index + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Derive an independent stream from this one (this stream advances by one step).
+     * @return a new GameRandom
+     */
+    public GameRandom split() {
+        return new GameRandom(mix64(nextLong()) ^ GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return next pseudo-random long
+     */
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    /**
+     * Next pseudo-random int uniformly distributed in [0, bound).
+     * @param bound upper bound (exclusive), must be positive
+     * @return next pseudo-random int in [0, bound)
+     */
+    public int nextInt(int bound) {
+        assert(bound > 0);
+        int r = (int) (nextLong() >>> 32);
+        int m = bound - 1;
+        if ((bound & m) == 0) return r & m; // power of two
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = (int) (nextLong() >>> 33)) {
+            // reject values from the incomplete last block to stay unbiased
+        }
+        return r;
+    }
+
+    /**
+     * Shuffle an int array in place (Fisher-Yates).
+     * @param array the array to be shuffled
+     * @param length number of leading elements to shuffle
+     */
+    public void shuffle(int[] array, int length) {
+        for (int i = length - 1; i > 0; i--) {
+            int j = nextInt(i + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * @return the whole state of this stream
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restore the stream to a state previously returned by getState.
+     * @param s the state
+     */
+    public void setState(long s) {
+        state = s;
+    }
+
+    /**
+     * The fmix64 finalizer of MurmurHash3: a bijection of longs, every input bit affecting every output bit.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
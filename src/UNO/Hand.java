@@ -0,0 +1,177 @@
+package UNO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * !!!!!!!!!!!!!!!!!!!!!!!!! Part of  Model in MVC !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+ * Hand cards of a player, stored as a bitset over card IDs (1 - 108) in two long words.
+ * Card i lives in bit (i - 1) of low when i <= 64, otherwise in bit (i - 65) of high.
+ * Since every card ID is unique in a deck, membership, insertion and removal are all O(1).
+ *
+ * Number of cards per color and per face (and the Zobrist hash of the hand) are maintained incrementally,
+ * so questions like "does the player own any red card" never need to scan the hand.
+ */
+public class Hand {
+    private static final int LOW_BITS = 64;
+
+    private long low;
+    private long high;
+    private int size;
+    private long hash; // XOR of Zobrist.cardKey of the cards
+    private final int[] colorCount = new int[CardParser.COLOR_NUM];
+    private final int[] faceCount = new int[CardParser.FACE_NUM];
+
+    /* lazily materialized list view, null when the hand has changed since last getCards() */
+    private List<Integer> cardsView;
+
+    /**
+     * Add one card to the hand. Adding a card already owned has no effect.
+     * @param cardID card (1 - 108) to be added
+     */
+    public void add(int cardID) {
+        if (contains(cardID)) return;
+        if (cardID <= LOW_BITS) low |= 1L << (cardID - 1);
+        else high |= 1L << (cardID - LOW_BITS - 1);
+        size++;
+        hash ^= Zobrist.cardKey(cardID);
+        colorCount[CardParser.colorOf(cardID)]++;
+        faceCount[CardParser.faceOf(cardID)]++;
+        cardsView = null;
+    }
+
+    /**
+     * Remove one card from the hand.
+     * @param cardID card (1 - 108) to be removed
+     * @return whether the card was owned (and thus removed)
+     */
+    public boolean remove(int cardID) {
+        if (!contains(cardID)) return false;
+        if (cardID <= LOW_BITS) low &= ~(1L << (cardID - 1));
+        else high &= ~(1L << (cardID - LOW_BITS - 1));
+        size--;
+        hash ^= Zobrist.cardKey(cardID);
+        colorCount[CardParser.colorOf(cardID)]--;
+        faceCount[CardParser.faceOf(cardID)]--;
+        cardsView = null;
+        return true;
+    }
+
+    /**
+     * Whether the hand owns the given card.
+     * @param cardID card (1 - 108) to check
+     */
+    public boolean contains(int cardID) {
+        if (cardID < 1 || cardID > CardParser.TOTAL_CARDS) return false;
+        if (cardID <= LOW_BITS) return (low & (1L << (cardID - 1))) != 0;
+        return (high & (1L << (cardID - LOW_BITS - 1))) != 0;
+    }
+
+    /**
+     * Remove all cards from the hand.
+     */
+    public void clear() {
+        low = 0;
+        high = 0;
+        size = 0;
+        hash = 0;
+        Arrays.fill(colorCount, 0);
+        Arrays.fill(faceCount, 0);
+        cardsView = null;
+    }
+
+    /**
+     * Set the hand back to a given content (e.g. recorded before a move), touching only the cards that differ.
+     * @param newLow cards 1 - 64, as returned by getLow
+     * @param newHigh cards 65 - 108, as returned by getHigh
+     */
+    public void restore(long newLow, long newHigh) {
+        for (long bits = low & ~newLow; bits != 0; bits &= bits - 1) remove(Long.numberOfTrailingZeros(bits) + 1);
+        for (long bits = high & ~newHigh; bits != 0; bits &= bits - 1) remove(Long.numberOfTrailingZeros(bits) + LOW_BITS + 1);
+        for (long bits = newLow & ~low; bits != 0; bits &= bits - 1) add(Long.numberOfTrailingZeros(bits) + 1);
+        for (long bits = newHigh & ~high; bits != 0; bits &= bits - 1) add(Long.numberOfTrailingZeros(bits) + LOW_BITS + 1);
+    }
+
+    /**
+     * Make this hand a copy of another hand.
+     * @param other the hand to copy
+     */
+    public void copyFrom(Hand other) {
+        low = other.low;
+        high = other.high;
+        size = other.size;
+        hash = other.hash;
+        System.arraycopy(other.colorCount, 0, colorCount, 0, colorCount.length);
+        System.arraycopy(other.faceCount, 0, faceCount, 0, faceCount.length);
+        cardsView = null;
+    }
+
+    /**
+     * @return XOR of the Zobrist keys of the cards (see Zobrist), maintained on every add / remove
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return number of cards in the hand
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the hand is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of owned cards of a color.
+     * @param colorID 0 NA (wild cards), 1 red, 2 green, 3 blue, 4 yellow
+     */
+    public int colorCount(int colorID) {
+        return colorCount[colorID];
+    }
+
+    /**
+     * Number of owned cards of a face.
+     * @param face 0 - 9 or CardParser.FACE_SKIP ... CardParser.FACE_WILD_DRAW4
+     */
+    public int faceCount(int face) {
+        return faceCount[face];
+    }
+
+    /**
+     * @return bits for card 1 - 64
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return bits for card 65 - 108
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * Get all cards as a list in ascending order of ID.
+     * The list is only rebuilt when the hand has changed since the last call.
+     * It is read-only, since it is shared by the callers: use add/remove to change the hand.
+     * @return cards in hand, an unmodifiable list
+     */
+    public List<Integer> getCards() {
+        if (cardsView == null) {
+            ArrayList<Integer> cards = new ArrayList<>(size);
+            for (long w = low; w != 0; w &= w - 1) cards.add(Long.numberOfTrailingZeros(w) + 1);
+            for (long w = high; w != 0; w &= w - 1) cards.add(Long.numberOfTrailingZeros(w) + LOW_BITS + 1);
+            cardsView = Collections.unmodifiableList(cards);
+        }
+        return cardsView;
+    }
+}
@@ -0,0 +1,289 @@
+package UNO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An AI choosing its moves by determinized Monte Carlo tree search.
+ *
+ * Every iteration forks the game, replaces what this AI cannot see (the other hands and the draw pile) by a random
+ * guess (Game.determinize, respecting the voids found by its CardTracker), applies one of its legal moves, then plays the fork out headless with the strategic AI
+ * (ArtificialIntelligence) at every seat. The moves are selected by UCB1 on their win rate, and the move played
+ * most often wins. Wild cards are searched together with the color declared, so the color is decided at once.
+ *
+ * The tree is kept to the root: deeper nodes would mix positions of different guesses (the hidden cards differ),
+ * the playouts of the strategic AI stand in for them. Search runs on a budget of iterations and / or time per
+ * decision, and with root parallelism: every thread searches its own statistics with its own random stream,
+ * and the statistics are added up at the end.
+ */
+public class MCTSPlayer extends AIPlayer {
+    public static final int DEFAULT_ITERATIONS = 200;
+    private static final double EXPLORATION = 0.7; // UCB1 constant, rewards are in [0, 1]
+    private static final int PLAYOUT_ROUNDS = 1000; // playouts longer than this are counted as lost
+
+    private final int iterations; // per decision, 0 for no limit
+    private final long millis;    // per decision, 0 for no limit
+    private final int threads;
+    private int plannedColor = 0; // color searched together with the wild card played last, 0 if none
+    private int lastMove;         // move found by the last search
+    private final CardTracker tracker; // voids of the opponents, respected by the guesses of hidden cards
+
+    /**
+     * A search of DEFAULT_ITERATIONS iterations per decision on one thread.
+     * @param ID   An unique integer identifier for a player
+     * @param game An game controller object representing the game player being in
+     */
+    public MCTSPlayer(int ID, Game game) {
+        this(ID, game, DEFAULT_ITERATIONS, 0, 1);
+    }
+
+    /**
+     * @param ID   An unique integer identifier for a player
+     * @param game An game controller object representing the game player being in
+     * @param iterations playouts per decision, 0 for no limit
+     * @param millis time per decision (as 1/1000 seconds), 0 for no limit. Not both 0
+     * @param threads number of threads searching in parallel (on the common ForkJoinPool if more than one)
+     */
+    public MCTSPlayer(int ID, Game game, int iterations, long millis, int threads) {
+        super(ID, game);
+        assert(iterations > 0 || millis > 0);
+        this.iterations = iterations;
+        this.millis = millis;
+        this.threads = Math.max(1, threads);
+        tracker = new CardTracker(ID, this);
+        if (game != null) game.addListener(tracker);
+    }
+
+    /**
+     * A copy of an MCTS AI for another game (see copyFor), which keeps what the card tracker has learnt.
+     */
+    private MCTSPlayer(int ID, Game game, MCTSPlayer original) {
+        super(ID, game);
+        iterations = original.iterations;
+        millis = original.millis;
+        threads = original.threads;
+        tracker = new CardTracker(original.tracker, this);
+        game.addListener(tracker);
+    }
+
+    @Override
+    protected Player newInstance(int ID, Game game) {
+        return new MCTSPlayer(ID, game, this);
+    }
+
+    /**
+     * @return the card tracker of this AI
+     */
+    public CardTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * @return the color searched together with the wild card of the last decideMove, 0 if none
+     */
+    int getPlannedColor() {
+        return plannedColor;
+    }
+
+    /**
+     * Restore the color of a decision taken on a copy of this AI (see Ponderer), so that decideColor declares it
+     * instead of searching again.
+     * @param colorID the color, 0 for none
+     */
+    void setPlannedColor(int colorID) {
+        plannedColor = colorID;
+    }
+
+    @Override
+    public int decideMove() {
+        plannedColor = 0;
+        long action = search();
+        plannedColor = (int) (action >>> 32);
+        return (int) action;
+    }
+
+    @Override
+    public int decideColor() {
+        if (plannedColor != 0) { // decided together with the wild card
+            int colorID = plannedColor;
+            plannedColor = 0;
+            return Move.pickColor(colorID);
+        }
+        return (int) search(); // e.g. a wild card drawn by draw & play
+    }
+
+    /**
+     * This is how AI makes its action decision. This decision should always be legal.
+     * @return 1 ("PlayOwned"), 2 ("Draw&Play"), 3 ("SKip")
+     */
+    public int makeActionDecision() {
+        return switch (Move.kind(decideMove())) {
+            case Move.DRAW_PLAY -> 2;
+            case Move.SKIP -> 3;
+            default -> 1;
+        };
+    }
+
+    /**
+     * The card of the move found by the last makeActionDecision. The search may also choose two cards
+     * played together, which only decideMove can express, then the first one is returned.
+     * @return The card (as ID) that AI decided to play
+     */
+    public int playCard() {
+        return Move.cardOne(lastMove);
+    }
+
+    /**
+     * @return the color searched for the last wild card, or the result of a new search
+     */
+    public String pickColor() {
+        return colorID2color(Move.color(decideColor()));
+    }
+
+    /**
+     * Search the pending decision of the game this AI is the current player of.
+     * @return the best action: a move, with the color to declare afterwards (if any) in the high 32 bits
+     */
+    private long search() {
+        Game game = getGameController();
+        int[] moves = new int[Game.MAX_MOVES];
+        int numMoves = game.legalMoves(moves);
+        long[] actions = expandColors(moves, numMoves);
+        if (actions.length == 1) return remember(actions[0]);
+
+        long deadline = millis > 0 ? System.nanoTime() + millis * 1_000_000 : Long.MAX_VALUE;
+        Stats total = new Stats(actions.length);
+        if (threads == 1) {
+            searchRoot(game.fork(), actions, iterations > 0 ? iterations : Integer.MAX_VALUE, deadline, rand, total);
+        } else {
+            ArrayList<ForkJoinTask<Stats>> tasks = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                Game root = game.fork(); // forked here, so that workers never touch the game
+                GameRandom workerRand = rand.split();
+                int share = iterations > 0 ? (iterations + threads - 1 - t) / threads : Integer.MAX_VALUE;
+                tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                    Stats stats = new Stats(actions.length);
+                    searchRoot(root, actions, share, deadline, workerRand, stats);
+                    return stats;
+                }));
+            }
+            for (ForkJoinTask<Stats> task : tasks) total.add(task.join());
+        }
+        return remember(actions[total.mostVisited()]);
+    }
+
+    private long remember(long action) {
+        lastMove = (int) action;
+        return action;
+    }
+
+    /**
+     * The legal moves, with every play of a wild card expanded into one action per color.
+     */
+    private static long[] expandColors(int[] moves, int numMoves) {
+        long[] actions = new long[numMoves * 4];
+        int count = 0;
+        for (int i = 0; i < numMoves; i++) {
+            int move = moves[i];
+            if (Move.kind(move) == Move.PLAY_ONE && Player.parser.isNonColorCard(Move.cardOne(move))) {
+                for (long colorID = CardParser.COLOR_RED; colorID <= CardParser.COLOR_YELLOW; colorID++) {
+                    actions[count++] = move | colorID << 32;
+                }
+            } else {
+                actions[count++] = move;
+            }
+        }
+        return Arrays.copyOf(actions, count);
+    }
+
+    /**
+     * Run iterations from a root position until the budget is spent.
+     */
+    private void searchRoot(Game root, long[] actions, int budget, long deadline, GameRandom random, Stats stats) {
+        int viewerID = root.getCurrentPlayerID();
+        for (int i = 0; i < budget; i++) {
+            if (deadline != Long.MAX_VALUE && i > 0 && System.nanoTime() > deadline) break;
+            int a = stats.select(i);
+            stats.update(a, playout(root, viewerID, actions[a], random, tracker));
+        }
+    }
+
+    /**
+     * One iteration: guess the hidden cards, apply the action, play out with strategic AIs.
+     * @return 1 if this AI wins the playout, else 0
+     */
+    private static double playout(Game root, int viewerID, long action, GameRandom random, CardTracker tracker) {
+        Game game = root.fork();
+        game.clearListeners(); // nobody follows a playout
+        game.determinize(viewerID, random, tracker);
+        ArrayList<Player> players = new ArrayList<>(game.getPlayers().size());
+        for (int i = 0; i < game.getPlayers().size(); i++) {
+            Player policy = new ArtificialIntelligence(i, game);
+            policy.getHand().copyFrom(game.getPlayers().get(i).getHand());
+            players.add(policy);
+        }
+        game.setPlayers(players);
+
+        game.step((int) action);
+        int colorID = (int) (action >>> 32);
+        if (game.pendingDecision() == Game.DECISION_COLOR && colorID != 0) game.step(Move.pickColor(colorID));
+        game.playHeadless(game.getRounds() + PLAYOUT_ROUNDS);
+        return game.getWinnerID() == viewerID ? 1 : 0;
+    }
+
+    /**
+     * Visits and rewards of the root actions.
+     */
+    private static class Stats {
+        final int[] visits;
+        final double[] rewards;
+
+        Stats(int numActions) {
+            visits = new int[numActions];
+            rewards = new double[numActions];
+        }
+
+        /**
+         * UCB1: every action once, then the best upper confidence bound.
+         */
+        int select(int iteration) {
+            if (iteration < visits.length) return iteration;
+            double logTotal = Math.log(iteration);
+            int best = 0;
+            double bestValue = -1;
+            for (int a = 0; a < visits.length; a++) {
+                double value = rewards[a] / visits[a] + EXPLORATION * Math.sqrt(logTotal / visits[a]);
+                if (value > bestValue) {
+                    best = a;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        void update(int action, double reward) {
+            visits[action]++;
+            rewards[action] += reward;
+        }
+
+        void add(Stats other) {
+            for (int a = 0; a < visits.length; a++) {
+                visits[a] += other.visits[a];
+                rewards[a] += other.rewards[a];
+            }
+        }
+
+        /**
+         * The most visited action, ties broken by reward.
+         */
+        int mostVisited() {
+            int best = 0;
+            for (int a = 1; a < visits.length; a++) {
+                if (visits[a] > visits[best] || (visits[a] == visits[best] && rewards[a] > rewards[best])) best = a;
+            }
+            return best;
+        }
+    }
+}
@@ -2,10 +2,6 @@ package UNO;
 
 import GUI.*;
 
-import javax.swing.*;
-import java.io.OutputStream;
-import java.io.PrintStream;
-
 /**
  * Enter point for the whole game.
  */
@@ -19,25 +15,10 @@ public class Main {
         while(true) {
             Game game = new Game(0, 0); // declare an uninitialized game
             new WelcomePage(game);
-            PrintStream original = System.out;
-            System.setOut(new PrintStream(new OutputStream() {
-                public void write(int b) {
-                }
-            })); // we don't want garbage print-out information
-            while (!game.isSetupDone()) { // see the comment for this variable on top for details
-                System.out.println("looping..."); // do not delete this line or code won't run!
-            }
-            System.setOut(original);
+            game.awaitSetupDone(); // sleep until the player number page is done
             game.initializeGame();
             game.gameStart();
-            System.setOut(new PrintStream(new OutputStream() {
-                public void write(int b) {
-                }
-            })); // we don't want garbage print-out information
-            while (!game.toStartNewGame()) { // see the comment for this variable on top for details
-                System.out.println("looping..."); // do not delete this line or code won't run!
-            }
-            System.setOut(original);
+            game.awaitStartNewGame(); // sleep until the winner page asks for a new game
         }
     }
 }
@@ -0,0 +1,75 @@
+package UNO;
+
+/**
+ * Moves accepted by Game.step, packed into a single int: kind | first << 8 | second << 16.
+ *
+ * PLAY_ONE      first = card played
+ * PLAY_ADD      first, second = two number cards played as their sum (extra rule of assignment-1.1)
+ * PLAY_SUB      first, second = two number cards played as their difference
+ * DRAW_PLAY     draw one card and play it if possible (only when the player is not being skipped)
+ * SKIP          take the stacked penalty and skip the round (only when the player is being skipped)
+ * PICK_COLOR    first = color ID (1 red, 2 green, 3 blue, 4 yellow) declared after playing a wild card
+ */
+public class Move {
+    public static final int PLAY_ONE = 1;
+    public static final int PLAY_ADD = 2;
+    public static final int PLAY_SUB = 3;
+    public static final int DRAW_PLAY = 4;
+    public static final int SKIP = 5;
+    public static final int PICK_COLOR = 6;
+
+    private static final String[] KIND_NAMES = {"none", "play", "add", "sub", "draw&play", "skip", "pick"};
+
+    private Move() {}
+
+    public static int playOne(int cardID) {
+        return pack(PLAY_ONE, cardID, 0);
+    }
+
+    /**
+     * @param op TwoCardRule.OP_ADD or TwoCardRule.OP_SUB
+     */
+    public static int playTwo(int cardID1, int cardID2, int op) {
+        return pack(op == TwoCardRule.OP_ADD ? PLAY_ADD : PLAY_SUB, cardID1, cardID2);
+    }
+
+    public static int drawAndPlay() {
+        return DRAW_PLAY;
+    }
+
+    public static int skip() {
+        return SKIP;
+    }
+
+    public static int pickColor(int colorID) {
+        return pack(PICK_COLOR, colorID, 0);
+    }
+
+    private static int pack(int kind, int first, int second) {
+        return kind | (first << 8) | (second << 16);
+    }
+
+    public static int kind(int move) { return move & 0xFF; }
+
+    public static int cardOne(int move) { return (move >>> 8) & 0xFF; }
+
+    public static int cardTwo(int move) { return (move >>> 16) & 0xFF; }
+
+    public static int color(int move) { return (move >>> 8) & 0xFF; }
+
+    /**
+     * Human readable description of a move, e.g. "skip", "pick blue", or "play " followed by the card description.
+     */
+    public static String describe(int move) {
+        int kind = kind(move);
+        if (kind < 1 || kind > PICK_COLOR) return "invalid";
+        String name = KIND_NAMES[kind];
+        return switch (kind) {
+            case PLAY_ONE -> name + " " + RuleController.parser.parseCardID(cardOne(move));
+            case PLAY_ADD, PLAY_SUB -> name + " " + RuleController.parser.parseCardID(cardOne(move))
+                    + (kind == PLAY_ADD ? " + " : " - ") + RuleController.parser.parseCardID(cardTwo(move));
+            case PICK_COLOR -> name + " " + CardParser.COLOR_NAMES[Math.min(color(move), CardParser.COLOR_NUM - 1)];
+            default -> name;
+        };
+    }
+}
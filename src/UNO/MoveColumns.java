@@ -0,0 +1,390 @@
+package UNO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Recorded moves as columns, for card-level analytics over millions of games.
+ *
+ * extract replays the games of an archive (or of a replay log) once and writes one file of primitives per field,
+ * one row per move: game, turn, seat, strategy, kind, card, card2, face, action, penalty, flags (see the accessors).
+ * open maps the column files, and the operators (count, countBy, histogram, quantiles) scan rows [0, size) split in
+ * ranges run by a ForkJoinPool, as Tournament does with games: each range aggregates into its own counters, which are
+ * merged when subtasks are joined. Queries are written against the accessors, e.g. how draw & play ends:
+ *     long[] outcomes = moves.countBy(moves::action, 6, row -> moves.kind(row) == Move.DRAW_PLAY);
+ *     // outcomes[RuleController.ACTION_DRAW_PLAY_OK], outcomes[RuleController.ACTION_DRAW_PLAY_FAIL]
+ * A scan reads only the columns its query touches, from mapped memory. A directory holds up to 500M moves
+ * (a mapped column stays below 2 GB).
+ */
+public class MoveColumns {
+    /** flags: the seat of the move won its game. */
+    public static final int FLAG_WINNER = 1;
+    /** flags: the move ended its game. */
+    public static final int FLAG_FINAL = 2;
+
+    private static final int ROWS_PER_TASK = 1 << 16; // ranges smaller than this are scanned sequentially
+    private static final String STRATEGY_FILE = "strategies";
+
+    /**
+     * The columns, with the width of their primitives in bytes.
+     */
+    private enum Column {
+        GAME(4), TURN(2), SEAT(1), STRATEGY(1), KIND(1), CARD(1), CARD2(1), FACE(1), ACTION(1), PENALTY(2), FLAGS(1);
+
+        final int width;
+
+        Column(int width) {
+            this.width = width;
+        }
+
+        Path file(Path directory) {
+            return directory.resolve(name().toLowerCase() + ".col");
+        }
+    }
+
+    private final ByteBuffer games, turns, seats, strategies, kinds, cards, cards2, faces, actions, penalties, flags;
+    private final String[] strategyNames;
+    private final int size;
+    private final ForkJoinPool pool;
+
+    private MoveColumns(ByteBuffer[] columns, String[] strategyNames, ForkJoinPool pool) {
+        games = columns[Column.GAME.ordinal()];
+        turns = columns[Column.TURN.ordinal()];
+        seats = columns[Column.SEAT.ordinal()];
+        strategies = columns[Column.STRATEGY.ordinal()];
+        kinds = columns[Column.KIND.ordinal()];
+        cards = columns[Column.CARD.ordinal()];
+        cards2 = columns[Column.CARD2.ordinal()];
+        faces = columns[Column.FACE.ordinal()];
+        actions = columns[Column.ACTION.ordinal()];
+        penalties = columns[Column.PENALTY.ordinal()];
+        flags = columns[Column.FLAGS.ordinal()];
+        this.strategyNames = strategyNames;
+        size = flags.limit();
+        this.pool = pool;
+    }
+
+    /**
+     * Map the columns extracted into a directory, scanned on the common pool (one worker per core).
+     */
+    public static MoveColumns open(Path directory) throws IOException {
+        return open(directory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param directory directory written by extract
+     * @param pool pool running the scans
+     */
+    public static MoveColumns open(Path directory, ForkJoinPool pool) throws IOException {
+        ByteBuffer[] columns = new ByteBuffer[Column.values().length];
+        for (Column column : Column.values()) {
+            try (FileChannel channel = FileChannel.open(column.file(directory), StandardOpenOption.READ)) {
+                columns[column.ordinal()] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        List<String> names = Files.readAllLines(directory.resolve(STRATEGY_FILE), StandardCharsets.UTF_8);
+        return new MoveColumns(columns, names.toArray(new String[0]), pool);
+    }
+
+    /**
+     * Replay every game of an archive and write its moves as columns.
+     * @param archive the archive, which gives the strategies of the seats
+     * @param directory directory receiving the column files, created if needed
+     */
+    public static void extract(ReplayArchive archive, Path directory) throws IOException {
+        String[] names = new String[archive.numStrategies()];
+        for (int i = 0; i < names.length; i++) names[i] = archive.strategyName(i);
+        try (Extractor extractor = new Extractor(directory, names)) {
+            for (int game = 0; game < archive.numGames(); game++) {
+                extractor.begin(game, archive);
+                archive.replay(game, extractor);
+            }
+        }
+    }
+
+    /**
+     * Replay every game of a replay log and write its moves as columns. The strategies of the seats are unknown (-1).
+     * @param log the games, e.g. new ReplayEngine(ByteBuffer.wrap(Files.readAllBytes(file)))
+     * @param directory directory receiving the column files, created if needed
+     */
+    public static void extract(ReplayEngine log, Path directory) throws IOException {
+        try (Extractor extractor = new Extractor(directory, new String[0])) {
+            for (int game = 0; game < log.numGames(); game++) {
+                extractor.begin(game, null);
+                log.replay(game, extractor);
+            }
+        }
+    }
+
+    /**
+     * @return number of moves (rows)
+     */
+    public int size() {
+        return size;
+    }
+
+    /** @return index of the game of the move, in the archive or log it was extracted from */
+    public int game(int row) { return games.getInt(row * 4); }
+
+    /** @return number of moves of the game before this one */
+    public int turn(int row) { return turns.getShort(row * 2) & 0xFFFF; }
+
+    public int seat(int row) { return seats.get(row); }
+
+    /** @return strategy of the seat (see strategyName), -1 if unknown */
+    public int strategy(int row) {
+        int strategy = strategies.get(row) & 0xFF;
+        return strategy == 0xFF ? -1 : strategy;
+    }
+
+    /** @return kind of the move, see Move */
+    public int kind(int row) { return kinds.get(row); }
+
+    /** @return card played (PLAY_ONE, first card of PLAY_ADD / PLAY_SUB), card drawn (DRAW_PLAY), 0 for none */
+    public int card(int row) { return cards.get(row) & 0xFF; }
+
+    /** @return second card of PLAY_ADD / PLAY_SUB, color picked by PICK_COLOR, 0 for none */
+    public int card2(int row) { return cards2.get(row) & 0xFF; }
+
+    /** @return face of card (see CardParser.faceOf), -1 for none */
+    public int face(int row) { return faces.get(row); }
+
+    /** @return previous action of the rule state after the move, RuleController.ACTION_NONE ... ACTION_DRAW_PLAY_FAIL */
+    public int action(int row) { return actions.get(row); }
+
+    /** @return stacked penalty draw pending before the move, e.g. > 0 when a draw card is stacked onto another */
+    public int penalty(int row) { return penalties.getShort(row * 2) & 0xFFFF; }
+
+    /** @return FLAG_WINNER | FLAG_FINAL */
+    public int flags(int row) { return flags.get(row); }
+
+    /**
+     * @return name of a strategy, i.e. the simple class name of the player
+     */
+    public String strategyName(int strategy) {
+        return strategyNames[strategy];
+    }
+
+    /**
+     * @return index of a strategy, -1 if it does not occur
+     */
+    public int strategyOf(String name) {
+        return Arrays.asList(strategyNames).indexOf(name);
+    }
+
+    /**
+     * @param filter rows to count
+     * @return number of rows matching the filter
+     */
+    public long count(IntPredicate filter) {
+        return countBy(row -> 0, 1, filter)[0];
+    }
+
+    /**
+     * Group-by count, e.g. plays per face: countBy(moves::face, CardParser.FACE_NUM, row -> moves.kind(row) == Move.PLAY_ONE)
+     * @param key key of a row, rows whose key is not in [0, numKeys) are not counted
+     * @param numKeys number of keys
+     * @param filter rows to count
+     * @return number of matching rows for every key
+     */
+    public long[] countBy(IntUnaryOperator key, int numKeys, IntPredicate filter) {
+        return pool.invoke(new Scan(0, size, numKeys, row -> filter.test(row) ? key.applyAsInt(row) : -1));
+    }
+
+    /**
+     * @param value value of a row, e.g. moves::turn
+     * @param min smallest value counted
+     * @param max largest value counted, values outside [min, max] are not counted
+     * @param filter rows to count
+     * @return number of matching rows for every value, histogram[v - min] for value v
+     */
+    public long[] histogram(IntUnaryOperator value, int min, int max, IntPredicate filter) {
+        return countBy(row -> value.applyAsInt(row) - min, max - min + 1, filter);
+    }
+
+    /**
+     * Exact quantiles of the values of the matching rows (the values are integers in [min, max]).
+     * @param fractions e.g. 0.5 for the median, 0.99
+     * @return the quantiles, in the order of fractions (min - 1 if no row matches)
+     */
+    public int[] quantiles(IntUnaryOperator value, int min, int max, IntPredicate filter, double... fractions) {
+        long[] histogram = histogram(value, min, max, filter);
+        long total = 0;
+        for (long count : histogram) total += count;
+        int[] quantiles = new int[fractions.length];
+        for (int i = 0; i < fractions.length; i++) {
+            long rank = (long) Math.ceil(fractions[i] * total); // the value of the rank-th smallest row
+            long seen = 0;
+            int v = 0;
+            while (v < histogram.length && (seen += histogram[v]) < Math.max(1, rank)) v++;
+            quantiles[i] = total == 0 ? min - 1 : min + v;
+        }
+        return quantiles;
+    }
+
+    /**
+     * Counts of rows [from, to) by key (-1 for rows not counted).
+     */
+    private class Scan extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L; // tasks are never serialized, ForkJoinTask is Serializable
+
+        private final int from;
+        private final int to;
+        private final int numKeys;
+        private final IntUnaryOperator key;
+
+        Scan(int from, int to, int numKeys, IntUnaryOperator key) {
+            this.from = from;
+            this.to = to;
+            this.numKeys = numKeys;
+            this.key = key;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= ROWS_PER_TASK) {
+                long[] counts = new long[numKeys];
+                for (int row = from; row < to; row++) {
+                    int k = key.applyAsInt(row);
+                    if (k >= 0 && k < numKeys) counts[k]++;
+                }
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            Scan left = new Scan(from, mid, numKeys, key);
+            left.fork();
+            long[] counts = new Scan(mid, to, numKeys, key).compute();
+            long[] leftCounts = left.join();
+            for (int k = 0; k < numKeys; k++) counts[k] += leftCounts[k];
+            return counts;
+        }
+    }
+
+    /**
+     * Writes the moves of replayed games as columns. The rows of a game are kept until its end,
+     * when the seat of the winner is known.
+     */
+    private static class Extractor implements ReplayEngine.ReplayListener, AutoCloseable {
+        private static final int BUFFER_ROWS = 1 << 14;
+
+        private final Path directory;
+        private final String[] strategyNames;
+        private final FileChannel[] channels = new FileChannel[Column.values().length];
+        private final ByteBuffer[] buffers = new ByteBuffer[Column.values().length];
+        private long[] pending = new long[1024]; // rows of the current game, packed by moveApplied
+        private int numPending = 0;
+        private int game;
+        private ReplayArchive archive;
+        private int penalty; // penalty pending before the next move
+
+        Extractor(Path directory, String[] strategyNames) throws IOException {
+            this.directory = directory;
+            this.strategyNames = strategyNames;
+            Files.createDirectories(directory);
+            for (Column column : Column.values()) {
+                channels[column.ordinal()] = FileChannel.open(column.file(directory), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                buffers[column.ordinal()] = ByteBuffer.allocate(BUFFER_ROWS * column.width);
+            }
+        }
+
+        /**
+         * The next game replayed is a game of an archive (null if the strategies are unknown).
+         */
+        void begin(int game, ReplayArchive archive) {
+            this.game = game;
+            this.archive = archive;
+        }
+
+        @Override
+        public void gameStarted(int gameIndex, Game replayed) {
+            numPending = 0;
+            penalty = replayed.getPenaltyDraw();
+        }
+
+        @Override
+        public void moveApplied(int gameIndex, int turn, int seat, int move, Game replayed) {
+            int kind = Move.kind(move);
+            int card = 0, card2 = 0;
+            switch (kind) {
+                case Move.PLAY_ONE -> card = Move.cardOne(move);
+                case Move.PLAY_ADD, Move.PLAY_SUB -> {
+                    card = Move.cardOne(move);
+                    card2 = Move.cardTwo(move);
+                }
+                case Move.DRAW_PLAY -> card = Math.max(0, replayed.getPlayers().get(seat).getLastDrawnCard());
+                case Move.PICK_COLOR -> card2 = Move.color(move);
+            }
+            if (numPending == pending.length) pending = Arrays.copyOf(pending, numPending * 2);
+            pending[numPending++] = Math.min(turn, 0xFFFF) | (long) seat << 16 | (long) kind << 20 | (long) card << 24
+                    | (long) card2 << 32 | (long) replayed.getRuler().getPreviousActionID() << 40
+                    | (long) Math.min(penalty, 0xFFFF) << 48;
+            penalty = replayed.getPenaltyDraw();
+        }
+
+        @Override
+        public void gameEnded(int gameIndex, Game replayed) {
+            int winner = replayed.getWinnerID();
+            for (int i = 0; i < numPending; i++) {
+                long row = pending[i];
+                int seat = (int) (row >>> 16 & 0xF);
+                int card = (int) (row >>> 24 & 0xFF);
+                int strategy = archive != null ? archive.strategy(game, seat) : -1;
+                int rowFlags = (seat == winner ? FLAG_WINNER : 0) | (winner != -1 && i == numPending - 1 ? FLAG_FINAL : 0);
+                ensureRoom();
+                buffer(Column.GAME).putInt(game);
+                buffer(Column.TURN).putShort((short) row);
+                buffer(Column.SEAT).put((byte) seat);
+                buffer(Column.STRATEGY).put((byte) strategy);
+                buffer(Column.KIND).put((byte) (row >>> 20 & 0xF));
+                buffer(Column.CARD).put((byte) card);
+                buffer(Column.CARD2).put((byte) (row >>> 32));
+                buffer(Column.FACE).put((byte) (card != 0 ? CardParser.faceOf(card) : -1));
+                buffer(Column.ACTION).put((byte) (row >>> 40 & 0xFF));
+                buffer(Column.PENALTY).putShort((short) (row >>> 48));
+                buffer(Column.FLAGS).put((byte) rowFlags);
+            }
+            numPending = 0;
+        }
+
+        private ByteBuffer buffer(Column column) {
+            return buffers[column.ordinal()];
+        }
+
+        private void ensureRoom() {
+            if (buffer(Column.FLAGS).hasRemaining()) return;
+            try {
+                writeBuffers();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeBuffers() throws IOException {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i].flip();
+                while (buffers[i].hasRemaining()) channels[i].write(buffers[i]);
+                buffers[i].clear();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writeBuffers();
+            for (FileChannel channel : channels) channel.close();
+            Files.write(directory.resolve(STRATEGY_FILE), Arrays.asList(strategyNames), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -8,8 +8,9 @@ import java.util.*;
  * There will be no interaction with the Viewer (GUI) in this class.
  */
 public class Player {
-    public static CardParser parser;
-    private final ArrayList<Integer> cards;
+    public static final CardParser parser = RuleController.parser; // immutable tables, shared by all games
+    private final Hand hand;
+    private int lastDrawnCard = -1;
     private Game gameController;
     private RuleController ruler;
 
@@ -20,10 +21,9 @@ public class Player {
      * @param game An game controller object representing the game player being in
      */
     public Player(int ID, Game game) {
-        cards = new ArrayList<>();
+        hand = new Hand();
         gameController = game;
         ruler = (game != null) ? game.getRuler() : null;  // null only for testing purpose
-        parser = (game != null) ? RuleController.parser : null;
 //        prompterCmd = useCmdAsUI ? new CmdUI(this) : null;
 //        prompterGUI = useCmdAsUI ? null : new GUI(this);
     }
@@ -34,29 +34,64 @@ public class Player {
      * @param numToDraw number of cards to draw
      */
     public void drawCards(int numToDraw) {
-        ArrayList<Integer> newCards = gameController.getCardManager().drawCards(numToDraw); // Initial draw
-        cards.addAll(newCards);
+        CardManager cardManager = gameController.getCardManager();
+        if (!gameController.hasListeners()) {
+            int lastCard = cardManager.drawCards(hand, numToDraw);
+            if (lastCard != -1) lastDrawnCard = lastCard;
+            return;
+        }
+        int playerID = gameController.getPlayers().indexOf(this);
+        for (int i = 0; i < numToDraw; i++) { // one by one, so that observers learn where each card comes from
+            boolean fromDiscardPile = cardManager.numCardLeft() == 0;
+            int cardID = cardManager.drawCards(hand, 1);
+            if (cardID == -1) break;
+            lastDrawnCard = cardID;
+            gameController.fireCardDrawn(playerID, cardID, fromDiscardPile);
+        }
     }
 
 
     /**
-     * Iterate through cards to find all playable cards under the game state controlled by player.ruler
+     * Find all playable cards under the game state controlled by player.ruler (ascending by ID)
      * @return an array list of legal cardID
      */
     public ArrayList<Integer> findLegalCard() {
         ArrayList<Integer> legalCards = new ArrayList<>();
-        for (int cardID : cards) {
-            if (ruler.isValidPlay(this, cardID, false)) legalCards.add(cardID);
-        }
+        for (long w = ruler.legalCards(this, false); w != 0; w &= w - 1) legalCards.add(Long.numberOfTrailingZeros(w) + 1);
+        for (long w = ruler.legalCards(this, true); w != 0; w &= w - 1) legalCards.add(Long.numberOfTrailingZeros(w) + 65);
         return legalCards;
     }
 
+    /**
+     * Whether the player owns any card playable under the game state controlled by player.ruler
+     */
+    public boolean hasLegalCard() {
+        return (ruler.legalCards(this, false) | ruler.legalCards(this, true)) != 0;
+    }
+
     /**
      * Getter for cards (private attribute for tracking all cards owned by a player)
-     * @return the reference of cards (ArrayList<Integer>) of the player
+     * The list is a read-only view materialized from the hand (ascending by ID).
+     * @return cards (unmodifiable List<Integer>) of the player
      */
-    public ArrayList<Integer> getCards() {
-        return cards;
+    public List<Integer> getCards() {
+        return hand.getCards();
+    }
+
+    /**
+     * Getter for the hand (bitset of owned cards with per-color/per-face counters).
+     * @return the reference of hand of the player
+     */
+    public Hand getHand() {
+        return hand;
+    }
+
+    /**
+     * Get the card most recently drawn by this player (e.g. the card to be played in Draw & Play).
+     * @return ID of the last drawn card, -1 if the player never drew
+     */
+    public int getLastDrawnCard() {
+        return lastDrawnCard;
     }
 
 
@@ -65,7 +100,15 @@ public class Player {
      * @param cardID cardID to be inserted
      */
     public void addOneCard(int cardID) {
-        cards.add(cardID);
+        hand.add(cardID);
+    }
+
+    /**
+     * For Test only. Remove one card with Given card ID from the player's cards.
+     * @param cardID cardID to be removed
+     */
+    public void removeOneCard(int cardID) {
+        hand.remove(cardID);
     }
 
 
@@ -84,11 +127,11 @@ public class Player {
      */
     public boolean optionPlayOwnedCard(int cardID, boolean updateIfPossible) {
         if (ruler.checkSkipAndDraw(this, false)) return false;
-        assert(cards.contains(cardID));
+        assert(hand.contains(cardID));
         boolean isLegal = ruler.isValidPlay(this, cardID, updateIfPossible);
         if (isLegal && updateIfPossible) {
             /* maintain list-cards and discardPile */
-            cards.remove(cards.indexOf(cardID));
+            hand.remove(cardID);
             gameController.getCardManager().insertOneCardToDiscardPile(cardID);
             if (parser.isNonColorCard(cardID)) {
                 /* instead of choose colors,
@@ -117,12 +160,13 @@ public class Player {
     public boolean optionDrawCardAndPlay() {
         if (ruler.checkSkipAndDraw(this, false)) return false;
 
+        CardManager cardManager = gameController.getCardManager();
+        if (cardManager.numCardLeft() + cardManager.numLeftDiscardPile() == 0) return false; // nothing to draw
         drawCards(1);
-        int chosenCardIndex = getCards().size() - 1;
-        int newCard = cards.get(chosenCardIndex);
+        int newCard = lastDrawnCard;
         if (ruler.isValidPlay(this, newCard, true)) {
-            cards.remove(chosenCardIndex);
-            gameController.getCardManager().insertOneCardToDiscardPile(newCard);
+            hand.remove(newCard);
+            cardManager.insertOneCardToDiscardPile(newCard);
             if (parser.isNonColorCard(newCard)) {
                 /* instead of choose colors,
                  we will forcefully set it to red for assignment 0 to make testing easier */
@@ -163,14 +207,14 @@ public class Player {
      */
     public boolean optionPlayTwoOwnedCard_Add(int cardID1, int cardID2, boolean updateIfPossible) {
         if (ruler.checkSkipAndDraw(this, false)) return false;
-        assert(cards.contains(cardID1) && cards.contains(cardID2)); // checks player owns the card
+        assert(hand.contains(cardID1) && hand.contains(cardID2)); // checks player owns the card
         int equiCardID = addTwoCard(cardID1, cardID2); // the equivalent card ID after edition
         if (equiCardID == -1) return false;
         boolean isLegal = ruler.isValidPlay(this, equiCardID, updateIfPossible);
         if (isLegal && updateIfPossible) {
             // maintain list-cards and discardPile
-            cards.remove(cards.indexOf(cardID1));
-            cards.remove(cards.indexOf(cardID2));
+            hand.remove(cardID1);
+            hand.remove(cardID2);
             gameController.getCardManager().insertOneCardToDiscardPile(cardID1);
             gameController.getCardManager().insertOneCardToDiscardPile(cardID2);
             return true;
@@ -197,8 +241,8 @@ public class Player {
         boolean isLegal = ruler.isValidPlay(this, equiCardID, updateIfPossible);
         if (isLegal && updateIfPossible) {
             // maintain list-cards and discardPile
-            cards.remove(cards.indexOf(cardID1));
-            cards.remove(cards.indexOf(cardID2));
+            hand.remove(cardID1);
+            hand.remove(cardID2);
             gameController.getCardManager().insertOneCardToDiscardPile(cardID1);
             gameController.getCardManager().insertOneCardToDiscardPile(cardID2);
             return true;
@@ -212,7 +256,7 @@ public class Player {
      * @return whether the player wins
      */
     public boolean playerWin() {
-        return cards.isEmpty();
+        return hand.isEmpty();
     }
 
     /**
@@ -224,17 +268,7 @@ public class Player {
      * @return (int) The cardID with equivalent effect of the addition, -1 if addition not legal or not found
      */
     private int addTwoCard(int cardID1, int cardID2) {
-        int[] parseResult = parseNumber(cardID1, cardID2);
-        if (parseResult == null) return -1;      // different color, or two cards are not addable
-        int num1 = parseResult[0];
-        int num2 = parseResult[1];
-        int numResult = num1 + num2;
-        String equiDesc = equiDescConstructor(cardID1, numResult);
-        for (int i = 1; i <= 108; i++) {
-            String iterDesc = parser.parseCardID(i);
-            if (iterDesc.equals(equiDesc)) return i;
-        }
-        return -1;  // not able to find corresponding card - e.g. red 8 + red 5 = red 13 not a legal card
+        return TwoCardRule.add(cardID1, cardID2); // precomputed, e.g. red 8 + red 5 = red 13 is -1
     }
 
 
@@ -248,56 +282,49 @@ public class Player {
      * @return (int) The cardID with equivalent effect of the subtraction, -1 if addition not legal or not found
      */
     private int subTwoCard(int cardID1, int cardID2) {
-        int[] parseResult = parseNumber(cardID1, cardID2);
-        if (parseResult == null) return -1;      // different color, or two cards are not addable
-        int num1 = parseResult[0];
-        int num2 = parseResult[1];
-        int numResult = num1 > num2 ? (num1 - num2) : (num2 - num1); // make sure result is always positive
-        String equiDesc = equiDescConstructor(cardID1, numResult);
-        for (int i = 1; i <= 108; i++) {
-            String iterDesc = parser.parseCardID(i);
-            if (iterDesc.equals(equiDesc)) return i;
-        }
-        return -1;  // should not be reached
+        return TwoCardRule.sub(cardID1, cardID2);
     }
 
     /**
-     * Construct equivalent description for composition of two cards
+     * Find all pairs of owned cards that can be played together by addition / subtraction rules.
+     * The legality of the equivalent cards under current game state is not checked.
+     * @param out buffer receiving the pairs packed by TwoCardRule.pack (length of at least TwoCardRule.MAX_PAIRS)
+     * @return number of pairs found
      */
-    private String equiDescConstructor(int cardID, int numResult) {
-        String cardDescription1 = parser.parseCardID(cardID);
-        String[] result1 = parser.parseCardDescription(cardDescription1);
-        String color1 = result1[0];
-        String equiDesc = color1 + " " + "num " + numResult;  // "color num numResult" as equivalent description
-        return equiDesc;
+    public int findTwoCardPairs(int[] out) {
+        return TwoCardRule.findPairs(hand, out);
     }
 
+
+
     /**
-     * Helper function for subTwo and addTwo for parsing card numbers
-     * @Return an array of length two representing the number on two cards
-     * return null if either card are not number, or have different color
+     * Create a copy of this player (same class, same hand) sitting in another game, e.g. a fork of the game.
+     * @param ID the ID of the player
+     * @param game the game of the copy
+     * @return the copy
      */
-    private int[] parseNumber(int cardID1, int cardID2) {
-        String cardDescription1 = parser.parseCardID(cardID1);         // parse ID 1
-        String[] result1 = parser.parseCardDescription(cardDescription1);
-        String color1 = result1[0];
-        String type1 = result1[1];
-        String content1 = result1[2];
-
-        String cardDescription2 = parser.parseCardID(cardID2);         // parse ID 2
-        String[] result2 = parser.parseCardDescription(cardDescription2);
-        String color2 = result2[0];
-        String type2 = result2[1];
-        String content2 = result2[2];
-
-        // color different or either one not number card, return null
-        if (!color1.equals(color2) || !type1.equals("num") || !type2.equals("num")) return null;
-        int num1 = Integer.parseInt(content1);
-        int num2 = Integer.parseInt(content2);
-        return new int[]{num1, num2};
+    public Player copyFor(int ID, Game game) {
+        Player copy = newInstance(ID, game);
+        copy.hand.copyFrom(hand);
+        copy.lastDrawnCard = lastDrawnCard;
+        return copy;
     }
 
+    /**
+     * Undo the changes of a move to this player: hand and last drawn card are set back to values recorded before it.
+     * Used by Game.unmakeMove.
+     */
+    void restore(long handLow, long handHigh, int lastDrawnCard) {
+        hand.restore(handLow, handHigh);
+        this.lastDrawnCard = lastDrawnCard;
+    }
 
+    /**
+     * Create a player of the same class as this one, used by copyFor. Subclasses should override it.
+     */
+    protected Player newInstance(int ID, Game game) {
+        return new Player(ID, game);
+    }
 
     /**
      * Setter for player ID
@@ -338,6 +365,14 @@ public class Player {
         return true;
     }
 
+    /**
+     * Whether this player only chooses draw & play when it has no legal card, so that its draws tell opponents
+     * which colors it lacks (see CardTracker). False for humans, who may draw while holding a legal card.
+     */
+    public boolean drawsOnlyWhenStuck() {
+        return false;
+    }
+
 
 
 }
\ No newline at end of file
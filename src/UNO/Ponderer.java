@@ -0,0 +1,165 @@
+package UNO;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets AI seats think during human think-time.
+ *
+ * When a human starts deciding, start() forks the game and, in the background, tries every move the human can make
+ * on its own fork, then lets the AI who plays next decide its move in each resulting position. Answers are keyed by
+ * Game.positionKey, so when the AI's turn comes, answer() serves the precomputed move if the position was predicted.
+ *
+ * Draws are predicted exactly too, since a fork copies the draw pile and the state of every random stream.
+ * An answer also restores the random stream of the AI to its state after the speculative decision, and the color
+ * an MCTSPlayer searched with a wild card, so a game with pondering plays exactly like the same game without it.
+ */
+public class Ponderer {
+    // games ponder in parallel, and a cancelled pondering may still finish its current decision beside a new one
+    private static final ExecutorService background = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "uno-ponderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A speculative decision of an AI.
+     */
+    private static class Answer {
+        final int move;
+        final int color; // searched together with a wild card (see MCTSPlayer.getPlannedColor), 0 if none
+        final long randBefore; // state of the random stream of the AI before deciding
+        final long randAfter;
+
+        Answer(int move, int color, long randBefore, long randAfter) {
+            this.move = move;
+            this.color = color;
+            this.randBefore = randBefore;
+            this.randAfter = randAfter;
+        }
+    }
+
+    /**
+     * The pondering on one position, with its own answers and cancellation, so that a stale one never
+     * mixes its answers with those of the next.
+     */
+    private static class Pondering {
+        final ConcurrentHashMap<Long, Answer> answers = new ConcurrentHashMap<>();
+        volatile boolean cancelled = false;
+        Future<?> task;
+    }
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private volatile Pondering current; // null if never started
+
+    /**
+     * Start pondering on the position of a game where a human is to decide. Must be called by the thread driving the game.
+     * @param game the game
+     */
+    public void start(Game game) {
+        stop();
+        Game snapshot = game.fork(); // taken on the game thread, the game may change while pondering
+        Pondering pondering = new Pondering();
+        pondering.task = background.submit(() -> ponder(snapshot, pondering));
+        current = pondering;
+    }
+
+    /**
+     * Stop pondering (e.g. the human has decided). Answers already computed are kept.
+     */
+    public void stop() {
+        Pondering pondering = current;
+        if (pondering != null) pondering.cancelled = true;
+    }
+
+    /**
+     * Block until the current pondering is finished. For testing purpose.
+     */
+    public void await() throws Exception {
+        Pondering pondering = current;
+        if (pondering != null) pondering.task.get();
+    }
+
+    /**
+     * Serve the precomputed move of the current AI player of a game.
+     * @param game the game, whose current player is ai
+     * @param ai the AI to move
+     * @return the move, 0 if the position was not predicted
+     */
+    public int answer(Game game, AIPlayer ai) {
+        Pondering pondering = current;
+        Answer answer = pondering != null ? pondering.answers.get(game.positionKey()) : null;
+        if (answer == null || answer.randBefore != ai.getRandom().getState()) {
+            misses.incrementAndGet();
+            return 0;
+        }
+        ai.getRandom().setState(answer.randAfter);
+        if (ai instanceof MCTSPlayer) ((MCTSPlayer) ai).setPlannedColor(answer.color);
+        hits.incrementAndGet();
+        return answer.move;
+    }
+
+    /**
+     * @return number of AI moves served from pondering
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of AI moves which had to be computed at their turn
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Try every move of the human on a fork of the snapshot, and record the answer of the AI moving next.
+     */
+    private void ponder(Game snapshot, Pondering pondering) {
+        Player human = snapshot.getPlayers().get(snapshot.getCurrentPlayerID());
+        int[] pairs = new int[TwoCardRule.MAX_PAIRS];
+        int numPairs = human.findTwoCardPairs(pairs);
+        int numMoves = 2 + human.getHand().size() + numPairs;
+        for (int i = 0; i < numMoves && !pondering.cancelled; i++) {
+            int move;
+            if (i == 0) move = Move.skip();
+            else if (i == 1) move = Move.drawAndPlay();
+            else if (i < 2 + human.getHand().size()) move = Move.playOne(human.getCards().get(i - 2));
+            else {
+                int pair = pairs[i - 2 - human.getHand().size()];
+                move = Move.playTwo(TwoCardRule.cardOne(pair), TwoCardRule.cardTwo(pair), TwoCardRule.op(pair));
+            }
+            Game after = snapshot.fork();
+            if (!after.step(move)) continue; // illegal for the human
+            if (after.pendingDecision() == Game.DECISION_COLOR) {
+                for (int colorID = CardParser.COLOR_RED; colorID <= CardParser.COLOR_YELLOW; colorID++) {
+                    Game colored = after.fork();
+                    colored.step(Move.pickColor(colorID));
+                    record(colored, pondering.answers);
+                }
+            } else {
+                record(after, pondering.answers);
+            }
+        }
+    }
+
+    /**
+     * Let the AI to move in a position decide, and record its answer.
+     */
+    private void record(Game position, ConcurrentHashMap<Long, Answer> answers) {
+        if (position.pendingDecision() != Game.DECISION_MOVE) return;
+        Player player = position.getPlayers().get(position.getCurrentPlayerID());
+        if (player.isHuman()) return;
+        AIPlayer ai = (AIPlayer) player;
+        long randBefore = ai.getRandom().getState();
+        long key = position.positionKey();
+        int move = ai.decideMove();
+        int color = ai instanceof MCTSPlayer ? ((MCTSPlayer) ai).getPlannedColor() : 0;
+        answers.put(key, new Answer(move, color, randBefore, ai.getRandom().getState()));
+    }
+}
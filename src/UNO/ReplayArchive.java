@@ -0,0 +1,392 @@
+package UNO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * An archive of recorded games, for millions of games: a directory of segments, read through memory mapping.
+ *
+ * Segment n is two files. segment-n.log is a replay log (see ReplayLog) of its games, segment-n.idx is INDEX_MAGIC
+ * followed by one fixed-width entry (ENTRY_BYTES) per game, in the same order:
+ *
+ * offset      long   position of the GAME record of the game in the log
+ * length      int    bytes of the records of the game
+ * rounds      int    rounds played (Game.getRounds)
+ * seed        long
+ * winner      byte   -1 for an abandoned game
+ * players     byte   number of seats
+ * strategies  byte[MAX_SEATS]  strategy of every seat, as an index in the file "strategies" (one name per line)
+ *
+ * Games are found by scanning the index only, e.g. all games where seat 2 won in less than 30 rounds:
+ *     archive.select(game -> archive.winner(game) == 2 && archive.rounds(game) < 30)
+ * The log of a game is touched only when it is replayed (see replay, events).
+ * Games are added by a Writer, e.g. the one of a Simulator (see Simulator.setArchive).
+ */
+public class ReplayArchive {
+    /** First bytes of an index file: "UNOI", the version of the format, and padding. */
+    public static final byte[] INDEX_MAGIC = {'U', 'N', 'O', 'I', 1, 0, 0, 0};
+    /** Maximal number of seats of an archived game. */
+    public static final int MAX_SEATS = 16;
+    /** Maximal number of strategies of an archive, stored as unsigned bytes (0xFF stands for an unknown one). */
+    public static final int MAX_STRATEGIES = 255;
+    public static final int ENTRY_BYTES = 48;
+    /** Default size from which a writer starts a new segment, a mapped segment must stay below 2 GB. */
+    public static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+
+    private static final int OFFSET = 0, LENGTH = 8, ROUNDS = 12, SEED = 16, WINNER = 24, PLAYERS = 25, STRATEGIES = 26;
+    private static final String STRATEGY_FILE = "strategies";
+
+    private final String[] strategies;
+    private final MappedByteBuffer[] indexes;
+    private final MappedByteBuffer[] logs;
+    private final int[] firstGames; // index of the first game of every segment
+    private final int numGames;
+    private final ReplayEngine[] engines; // of every segment, created on first replay
+    private int lastSegment = 0; // segment found by segmentOf last, racy but always checked
+
+    private ReplayArchive(String[] strategies, MappedByteBuffer[] indexes, MappedByteBuffer[] logs) {
+        this.strategies = strategies;
+        this.indexes = indexes;
+        this.logs = logs;
+        firstGames = new int[indexes.length];
+        int games = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            firstGames[i] = games;
+            games += (indexes[i].limit() - INDEX_MAGIC.length) / ENTRY_BYTES;
+        }
+        numGames = games;
+        engines = new ReplayEngine[indexes.length];
+    }
+
+    /**
+     * Map the segments of an archive. The files are not read, pages are loaded by the OS when they are accessed.
+     * @param directory directory of the archive
+     * @return the archive, with the games written (closed) so far
+     * @throws IOException if a file cannot be mapped or is not part of an archive
+     */
+    public static ReplayArchive open(Path directory) throws IOException {
+        int segments = countSegments(directory);
+        MappedByteBuffer[] indexes = new MappedByteBuffer[segments];
+        MappedByteBuffer[] logs = new MappedByteBuffer[segments];
+        for (int i = 0; i < segments; i++) {
+            indexes[i] = map(segmentFile(directory, i, ".idx"));
+            logs[i] = map(segmentFile(directory, i, ".log"));
+            for (int j = 0; j < INDEX_MAGIC.length; j++) {
+                if (indexes[i].limit() < INDEX_MAGIC.length || indexes[i].get(j) != INDEX_MAGIC[j]) {
+                    throw new IOException("not an index of a replay archive: " + segmentFile(directory, i, ".idx"));
+                }
+            }
+        }
+        Path strategyFile = directory.resolve(STRATEGY_FILE);
+        List<String> names = Files.exists(strategyFile) ? Files.readAllLines(strategyFile, StandardCharsets.UTF_8) : List.of();
+        return new ReplayArchive(names.toArray(new String[0]), indexes, logs);
+    }
+
+    /**
+     * @return number of games in the archive
+     */
+    public int numGames() {
+        return numGames;
+    }
+
+    /**
+     * @return number of segments of the archive
+     */
+    public int numSegments() {
+        return indexes.length;
+    }
+
+    public long seed(int game) {
+        return index(game).getLong(entry(game) + SEED);
+    }
+
+    /**
+     * @return rounds played in a game
+     */
+    public int rounds(int game) {
+        return index(game).getInt(entry(game) + ROUNDS);
+    }
+
+    /**
+     * @return seat of the winner of a game, -1 if it was abandoned
+     */
+    public int winner(int game) {
+        return index(game).get(entry(game) + WINNER);
+    }
+
+    public int numPlayers(int game) {
+        return index(game).get(entry(game) + PLAYERS);
+    }
+
+    /**
+     * @return index of the strategy of a seat (see strategyName), cheaper than comparing names in queries
+     */
+    public int strategy(int game, int seat) {
+        return index(game).get(entry(game) + STRATEGIES + seat) & 0xFF;
+    }
+
+    /**
+     * @param strategy index of a strategy, as returned by strategy
+     * @return name of the strategy, i.e. the simple class name of the player
+     */
+    public String strategyName(int strategy) {
+        return strategies[strategy];
+    }
+
+    /**
+     * @return number of strategies of the archive, indexed 0 - numStrategies() - 1
+     */
+    public int numStrategies() {
+        return strategies.length;
+    }
+
+    /**
+     * @param name name of a strategy, e.g. "ArtificialIntelligence"
+     * @return its index in this archive, -1 if no game of the archive has it
+     */
+    public int strategyOf(String name) {
+        return Arrays.asList(strategies).indexOf(name);
+    }
+
+    /**
+     * Scan the index for the games matching a query. The logs of the games are not touched.
+     * @param query tells whether a game matches, from the index fields of the game (seed, rounds, winner ...)
+     * @return the matching games, in order
+     */
+    public int[] select(IntPredicate query) {
+        int[] games = new int[64];
+        int count = 0;
+        for (int game = 0; game < numGames; game++) {
+            if (!query.test(game)) continue;
+            if (count == games.length) games = Arrays.copyOf(games, count * 2);
+            games[count++] = game;
+        }
+        return Arrays.copyOf(games, count);
+    }
+
+    /**
+     * @return the records of a game (see ReplayReader.ofRecords), a read-only view of the mapped log
+     */
+    public ByteBuffer events(int game) {
+        int segment = segmentOf(game);
+        int entry = entry(game);
+        int offset = (int) indexes[segment].getLong(entry + OFFSET);
+        return logs[segment].duplicate().position(offset).limit(offset + indexes[segment].getInt(entry + LENGTH)).slice();
+    }
+
+    /**
+     * Replay a game (see ReplayEngine.replay).
+     * @param listener callbacks, may be null
+     * @return the game in its final position
+     */
+    public Game replay(int game, ReplayEngine.ReplayListener listener) {
+        return engine(segmentOf(game)).replay(game - firstGames[segmentOf(game)], listener);
+    }
+
+    /**
+     * @return the replay engine of the segment of a game, to seek its positions. The game is
+     *         game - firstGame(segment) in the engine.
+     */
+    public ReplayEngine engine(int segment) {
+        if (engines[segment] == null) engines[segment] = new ReplayEngine(logs[segment].duplicate());
+        return engines[segment];
+    }
+
+    /**
+     * @return index of the first game of a segment
+     */
+    public int firstGame(int segment) {
+        return firstGames[segment];
+    }
+
+    /**
+     * @return segment holding a game
+     */
+    public int segmentOf(int game) {
+        int segment = lastSegment; // scans go game by game, so this is mostly the segment of the game
+        if (game >= firstGames[segment] && (segment + 1 == firstGames.length || game < firstGames[segment + 1])) {
+            return segment;
+        }
+        segment = Arrays.binarySearch(firstGames, game);
+        if (segment >= 0) {
+            while (segment + 1 < firstGames.length && firstGames[segment + 1] == game) segment++; // skip empty segments
+        } else {
+            segment = -segment - 2;
+        }
+        lastSegment = segment;
+        return segment;
+    }
+
+    private ByteBuffer index(int game) {
+        return indexes[segmentOf(game)];
+    }
+
+    /**
+     * @return position of the index entry of a game in the index of its segment
+     */
+    private int entry(int game) {
+        return INDEX_MAGIC.length + (game - firstGames[segmentOf(game)]) * ENTRY_BYTES;
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid once closed
+        }
+    }
+
+    private static Path segmentFile(Path directory, int segment, String extension) {
+        return directory.resolve(String.format("segment-%05d%s", segment, extension));
+    }
+
+    private static int countSegments(Path directory) {
+        int segments = 0;
+        while (Files.exists(segmentFile(directory, segments, ".idx"))) segments++;
+        return segments;
+    }
+
+    /**
+     * Adds games to an archive, one game at a time: begin before the game is dealt, end once it is over.
+     * New games go to new segments, existing ones are never modified. The games are readable (see open) once
+     * the writer is closed.
+     */
+    public static class Writer implements AutoCloseable {
+        private static final int ENTRIES = 1024; // buffered entries
+
+        private final Path directory;
+        private final long segmentBytes;
+        private final ArrayList<String> strategies = new ArrayList<>();
+        private final HashMap<String, Integer> strategyIndexes = new HashMap<>();
+        private final ByteBuffer entries = ByteBuffer.allocate(ENTRIES * ENTRY_BYTES);
+        private int segment;
+        private ReplayLog log;
+        private FileChannel index;
+        private long gameOffset = -1; // position of the game begun in the log, -1 if none
+
+        /**
+         * @param directory directory of the archive, created if needed
+         */
+        public Writer(Path directory) throws IOException {
+            this(directory, DEFAULT_SEGMENT_BYTES);
+        }
+
+        /**
+         * @param directory directory of the archive, created if needed
+         * @param segmentBytes a new segment is started once a segment log exceeds this size
+         */
+        public Writer(Path directory, long segmentBytes) throws IOException {
+            this.directory = directory;
+            this.segmentBytes = segmentBytes;
+            Files.createDirectories(directory);
+            Path strategyFile = directory.resolve(STRATEGY_FILE);
+            if (Files.exists(strategyFile)) {
+                for (String name : Files.readAllLines(strategyFile, StandardCharsets.UTF_8)) strategyIndex(name);
+            }
+            segment = countSegments(directory);
+            openSegment();
+        }
+
+        /**
+         * Start recording a game, whose players are set and which is not initialized yet (see Game.initializeGame).
+         * @throws UncheckedIOException if a new segment cannot be created
+         */
+        public void begin(Game game) {
+            assert(gameOffset == -1 && game.getPlayers().size() <= MAX_SEATS);
+            if (log.size() >= segmentBytes) {
+                try {
+                    closeSegment();
+                    segment++;
+                    openSegment();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            gameOffset = log.size();
+            game.setReplayLog(log);
+        }
+
+        /**
+         * Stop recording a game (finished or abandoned) and index it.
+         * @throws UncheckedIOException if the index cannot be written
+         */
+        public void end(Game game) {
+            assert(gameOffset != -1);
+            game.setReplayLog(null);
+            if (!entries.hasRemaining()) {
+                try {
+                    writeEntries();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int start = entries.position();
+            entries.putLong(gameOffset);
+            entries.putInt((int) (log.size() - gameOffset));
+            entries.putInt(game.getRounds());
+            entries.putLong(game.getSeed());
+            entries.put((byte) game.getWinnerID());
+            entries.put((byte) game.getPlayers().size());
+            for (int seat = 0; seat < MAX_SEATS; seat++) {
+                int strategy = seat < game.getPlayers().size()
+                        ? strategyIndex(game.getPlayers().get(seat).getClass().getSimpleName()) : 0;
+                entries.put((byte) strategy);
+            }
+            entries.position(start + ENTRY_BYTES);
+            gameOffset = -1;
+        }
+
+        /**
+         * Close the current segment, and write the names of the strategies.
+         */
+        @Override
+        public void close() throws IOException {
+            closeSegment();
+            Files.write(directory.resolve(STRATEGY_FILE), strategies, StandardCharsets.UTF_8);
+        }
+
+        private int strategyIndex(String name) {
+            Integer strategy = strategyIndexes.get(name);
+            if (strategy != null) return strategy;
+            if (strategies.size() == MAX_STRATEGIES) throw new IllegalStateException("too many strategies: " + name);
+            strategies.add(name);
+            strategyIndexes.put(name, strategies.size() - 1);
+            return strategies.size() - 1;
+        }
+
+        private void openSegment() throws IOException {
+            Path logFile = segmentFile(directory, segment, ".log");
+            Files.deleteIfExists(logFile); // left without index by a writer which was never closed
+            log = ReplayLog.append(logFile);
+            // the index gets its name once the log is complete (see closeSegment), so open never sees a partial one
+            index = FileChannel.open(segmentFile(directory, segment, ".idx.tmp"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            index.write(ByteBuffer.wrap(INDEX_MAGIC));
+        }
+
+        private void closeSegment() throws IOException {
+            writeEntries();
+            index.close();
+            log.close();
+            Files.move(segmentFile(directory, segment, ".idx.tmp"), segmentFile(directory, segment, ".idx"),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void writeEntries() throws IOException {
+            entries.flip();
+            while (entries.hasRemaining()) index.write(entries);
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package UNO;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Replays the games recorded in a replay log (see ReplayLog).
+ *
+ * A game is rebuilt from its seed (Game.replayed deals exactly like the recorded game), then its recorded moves are
+ * applied by Game.step. Draws come out of the rebuilt piles, and the CHECKSUM / END records of the log are compared
+ * with the rebuilt game, so a replay which does not reproduce its game fails loudly (IllegalStateException).
+ *
+ * seek jumps to any move of a game in O(CHECKPOINT_INTERVAL): the first visit of a game saves a compact snapshot of
+ * it (Game.saveState, ~250 bytes for 4 players) every CHECKPOINT_INTERVAL moves, with the position of the following records
+ * (the deltas) in the log. Later seeks load the closest snapshot before the move and apply at most
+ * CHECKPOINT_INTERVAL - 1 moves. replay / replayAll go through whole games at full speed for analytics,
+ * without snapshots.
+ *
+ * An engine is used by one thread at a time.
+ */
+public class ReplayEngine {
+    /** Moves between two checkpoints of a game. */
+    public static final int CHECKPOINT_INTERVAL = 32;
+
+    /**
+     * Callbacks of replay, invoked in the order of the recorded game. They must not modify the game.
+     */
+    public interface ReplayListener {
+        /** A game is dealt and about to start. */
+        default void gameStarted(int gameIndex, Game game) {}
+
+        /**
+         * A recorded move was applied.
+         * @param turn number of moves applied before this one
+         * @param seat the player who made the move
+         * @param move the move, packed by Move
+         * @param game the game, in the position after the move
+         */
+        default void moveApplied(int gameIndex, int turn, int seat, int move, Game game) {}
+
+        /** All records of a game are replayed (the winner is -1 for an abandoned game). */
+        default void gameEnded(int gameIndex, Game game) {}
+    }
+
+    /**
+     * Snapshots of a game taken along its first replay.
+     */
+    private static class Checkpoints {
+        final int stride; // bytes of a state of the game, Game.stateBytes
+        ByteBuffer states; // checkpoint i at i * stride
+        int[] positions = new int[8]; // position in the log of the records after checkpoint i
+        int count = 0;
+        int numMoves = -1; // moves of the game, known once it has been replayed to its end
+
+        Checkpoints(int numPlayers) {
+            stride = Game.stateBytes(numPlayers);
+            states = ByteBuffer.allocate(positions.length * stride);
+        }
+
+        void add(Game game, int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                ByteBuffer grown = ByteBuffer.allocate(states.capacity() * 2);
+                grown.put(states.array(), 0, count * stride);
+                states = grown;
+            }
+            states.position(count * stride);
+            game.saveState(states);
+            positions[count++] = position;
+        }
+    }
+
+    private final ReplayReader reader;
+    private final int endOfLog;
+    private int[] gameStarts = new int[16]; // position of the GAME record of every game
+    private int numGames = 0;
+    private Checkpoints[] checkpoints = new Checkpoints[16];
+    private Game current; // the game returned by seek last
+    private int currentIndex = -1;
+    private int currentTurn = 0; // moves applied to current
+    private int currentPosition; // position in the log after the last move applied to current
+
+    /**
+     * Index the games of a log. Records are not replayed yet.
+     * @param log the bytes of a log (see ReplayReader), the engine reads it from its position on
+     * @throws IllegalArgumentException if it is not a replay log
+     */
+    public ReplayEngine(ByteBuffer log) {
+        reader = new ReplayReader(log);
+        int position = reader.position();
+        while (reader.next()) {
+            if (reader.type() == ReplayLog.GAME) {
+                if (numGames == gameStarts.length) gameStarts = Arrays.copyOf(gameStarts, numGames * 2);
+                gameStarts[numGames++] = position;
+            }
+            position = reader.position();
+        }
+        endOfLog = position; // a truncated last record is ignored
+        checkpoints = Arrays.copyOf(checkpoints, Math.max(1, numGames));
+    }
+
+    /**
+     * @return number of games in the log
+     */
+    public int numGames() {
+        return numGames;
+    }
+
+    /**
+     * @return the seed of a game
+     */
+    public long seed(int gameIndex) {
+        reader.seek(gameStarts[gameIndex]);
+        reader.next();
+        return reader.operand(0);
+    }
+
+    /**
+     * @return number of moves of a game (replaying it once, if it has never been replayed to its end)
+     */
+    public int numMoves(int gameIndex) {
+        if (checkpoints[gameIndex] == null || checkpoints[gameIndex].numMoves < 0) seek(gameIndex, Integer.MAX_VALUE);
+        return checkpoints[gameIndex].numMoves;
+    }
+
+    /**
+     * Rebuild the position of a game after a number of its moves.
+     * @param gameIndex index of the game in the log
+     * @param turn number of moves to apply, the final position if the game has fewer moves
+     * @return the game in that position. It is owned by the engine, and changed by the next call of seek.
+     * @throws IllegalStateException if the replay does not reproduce the recorded game
+     */
+    public Game seek(int gameIndex, int turn) {
+        Checkpoints game = checkpoints[gameIndex];
+        if (game == null || currentIndex != gameIndex) {
+            current = newGame(gameIndex);
+            currentIndex = gameIndex;
+            currentTurn = 0;
+            currentPosition = reader.position();
+            if (game == null) { // first visit, the deal is checkpoint 0
+                game = checkpoints[gameIndex] = new Checkpoints(current.getPlayers().size());
+                game.add(current, currentPosition);
+            }
+        }
+        int checkpoint = Math.min(turn / CHECKPOINT_INTERVAL, game.count - 1);
+        if (currentTurn > turn || currentTurn < checkpoint * CHECKPOINT_INTERVAL) { // else going on is shorter
+            game.states.position(checkpoint * game.stride);
+            current.loadState(game.states);
+            currentTurn = checkpoint * CHECKPOINT_INTERVAL;
+            currentPosition = game.positions[checkpoint];
+        }
+        reader.seek(currentPosition);
+        int end = endOf(gameIndex);
+        try {
+            while (currentTurn < turn) {
+                if (nextMove(gameIndex, current, end, currentTurn) == 0) {
+                    game.numMoves = currentTurn;
+                    break;
+                }
+                currentTurn++;
+                if (currentTurn % CHECKPOINT_INTERVAL == 0 && currentTurn / CHECKPOINT_INTERVAL == game.count) {
+                    game.add(current, reader.position());
+                }
+            }
+        } catch (IllegalStateException e) {
+            currentIndex = -1; // current is in no recorded position
+            throw e;
+        }
+        currentPosition = reader.position();
+        return current;
+    }
+
+    /**
+     * Replay a whole game at full speed.
+     * @param listener callbacks, may be null
+     * @return the game in its final position
+     * @throws IllegalStateException if the replay does not reproduce the recorded game
+     */
+    public Game replay(int gameIndex, ReplayListener listener) {
+        Game game = newGame(gameIndex);
+        if (listener != null) listener.gameStarted(gameIndex, game);
+        int end = endOf(gameIndex);
+        for (int turn = 0; ; turn++) {
+            int move = nextMove(gameIndex, game, end, turn);
+            if (move == 0) break;
+            if (listener != null) listener.moveApplied(gameIndex, turn, reader.seat(), move, game);
+        }
+        if (listener != null) listener.gameEnded(gameIndex, game);
+        return game;
+    }
+
+    /**
+     * Replay every game of the log at full speed, one after another.
+     * @param listener callbacks, may be null
+     * @throws IllegalStateException if a replay does not reproduce its recorded game
+     */
+    public void replayAll(ReplayListener listener) {
+        for (int i = 0; i < numGames; i++) replay(i, listener);
+    }
+
+    /**
+     * Check that every game of the log is reproduced by its replay, i.e. that games are deterministic.
+     * @return index of the first game whose replay differs from its records, -1 if there is none
+     */
+    public int firstDivergingGame() {
+        for (int i = 0; i < numGames; i++) {
+            try {
+                replay(i, null);
+            } catch (IllegalStateException e) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A game dealt as recorded by the GAME record of a game. The reader is left after the record.
+     */
+    private Game newGame(int gameIndex) {
+        reader.seek(gameStarts[gameIndex]);
+        reader.next();
+        return Game.replayed(reader.operand(0), (int) reader.operand(1), (int) reader.operand(2), (int) reader.operand(3));
+    }
+
+    /**
+     * Apply the next recorded move of a game, checking the records up to it.
+     * @param end position of the end of the records of the game
+     * @param turn number of moves applied so far, for error messages
+     * @return the move applied, 0 at the end of the game
+     */
+    private int nextMove(int gameIndex, Game game, int end, int turn) {
+        while (reader.position() < end && reader.next()) {
+            switch (reader.type()) {
+                case ReplayLog.CHECKSUM -> {
+                    if ((int) game.positionKey() != (int) reader.operand(0)) throw diverged(gameIndex, turn, "checksum");
+                }
+                case ReplayLog.END -> {
+                    if (game.getWinnerID() != reader.seat() || game.getRounds() != reader.operand(0)) {
+                        throw diverged(gameIndex, turn, "winner");
+                    }
+                }
+                case ReplayLog.DRAW, ReplayLog.DRAW_DISCARD, ReplayLog.GAME -> {} // draws are checked by checksums
+                default -> {
+                    if (!reader.isMove()) throw diverged(gameIndex, turn, "record type " + reader.type());
+                    int move = reader.move();
+                    if (reader.seat() != game.getCurrentPlayerID() || !game.step(move)) {
+                        throw diverged(gameIndex, turn, Move.describe(move));
+                    }
+                    return move;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static IllegalStateException diverged(int gameIndex, int turn, String record) {
+        return new IllegalStateException("replay of game " + gameIndex + " diverged from its log after "
+                + turn + " moves, at " + record);
+    }
+
+    /**
+     * @return position of the end of the records of a game
+     */
+    private int endOf(int gameIndex) {
+        return gameIndex + 1 < numGames ? gameStarts[gameIndex + 1] : endOfLog;
+    }
+}
@@ -0,0 +1,279 @@
+package UNO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Append-only binary log of everything happening in games (see Game.setReplayLog), cheap enough to be always on.
+ *
+ * A log starts with MAGIC, followed by records. A record is a tag byte - record type in the low 4 bits, seat of the
+ * player in the high 4 bits - followed by its operands as unsigned varints (7 bits per byte, low bits first):
+ *
+ * GAME          seed, number of players, human seats (bit i for seat i), first player
+ * PLAY_ONE      card                              (types 1 - 6 are the kinds of Move, applied by the seat)
+ * PLAY_ADD/SUB  card, card
+ * DRAW_PLAY     -                                 (followed by the DRAW of the card, played if legal)
+ * SKIP          -                                 (followed by the DRAWs of the stacked penalty)
+ * PICK_COLOR    color
+ * DRAW          card drawn by the seat from the draw pile (initial deal, draw & play, penalty)
+ * DRAW_DISCARD  card drawn by the seat from the discard pile, when the draw pile is empty
+ * END           rounds, the seat is the winner
+ * CHECKSUM      low 32 bits of Game.positionKey after the round, every CHECKSUM_INTERVAL rounds and before END
+ *
+ * Card IDs fit one byte, so a move takes 1 - 3 bytes and a draw 2 bytes. The seed and the decisions are enough
+ * to replay a game (see ReplayEngine): draws and checksums are recorded as well, so a replay can be checked and
+ * a log read alone (see ReplayReader).
+ * Abandoned games (e.g. Game.playHeadless reaching its cap) have no END.
+ *
+ * Records are written by the game thread into a pooled buffer, which is handed to a writer thread when full, so
+ * the game thread neither allocates nor blocks on I/O. A log records the games of one thread at a time (e.g. a
+ * batch of Simulator); concurrent tables need one log each.
+ */
+public class ReplayLog implements AutoCloseable {
+    /** First bytes of a log: "UNOR" and the version of the format. */
+    public static final byte[] MAGIC = {'U', 'N', 'O', 'R', 1};
+
+    /** Record types besides the kinds of Move (1 - 6). */
+    public static final int DRAW = 7;
+    public static final int DRAW_DISCARD = 8;
+    public static final int GAME = 9;
+    public static final int END = 10;
+    public static final int CHECKSUM = 11;
+    /** Rounds between two CHECKSUM records. */
+    public static final int CHECKSUM_INTERVAL = 16;
+    /** Maximal number of seats a log can record, the seat takes 4 bits of the tag. */
+    public static final int MAX_PLAYERS = 16;
+    static final int SEAT_SHIFT = 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFERS = 4;
+    private static final int MAX_RECORD = 1 + 10 + 3 * 5; // GAME, the longest record
+
+    private final WritableByteChannel channel;
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final ByteBuffer endOfLog = ByteBuffer.allocate(0); // handed to the writer by close
+    private final Thread writer;
+    private ByteBuffer buffer; // being filled by the game thread
+    private long recorded = 0; // bytes in buffers handed to the writer
+    private long handedOff = 0, written = 0; // buffers, guarded by this
+    private volatile IOException failure;
+    private boolean closed = false;
+
+    /**
+     * Start a log on a channel, beginning with MAGIC. The channel is closed with the log.
+     * @param channel the channel receiving the log, e.g. a FileChannel
+     */
+    public ReplayLog(WritableByteChannel channel) {
+        this(channel, true);
+    }
+
+    private ReplayLog(WritableByteChannel channel, boolean writeMagic) {
+        this.channel = channel;
+        for (int i = 0; i < BUFFERS; i++) free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        buffer = free.poll();
+        if (writeMagic) buffer.put(MAGIC);
+        writer = new Thread(this::drain, "uno-replay-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Open a log file for appending, creating it if needed.
+     * @param file the log file, MAGIC is written only if it is new or empty
+     * @return the log
+     */
+    public static ReplayLog append(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        return new ReplayLog(channel, channel.size() == 0);
+    }
+
+    /**
+     * A game was initialized and is about to deal.
+     */
+    void gameStarted(long seed, int numPlayers, int humanSeats, int firstPlayer) {
+        assert(numPlayers <= MAX_PLAYERS);
+        ensureRoom();
+        buffer.put((byte) GAME);
+        putVarint(seed);
+        putVarint(numPlayers);
+        putVarint(humanSeats);
+        putVarint(firstPlayer);
+    }
+
+    /**
+     * A seat submitted a move, recorded before its consequences (draws).
+     * @return mark to pass to moveRejected if the move turns out to be illegal
+     */
+    int moveStarted(int seat, int move) {
+        ensureRoom();
+        int mark = buffer.position();
+        int kind = Move.kind(move);
+        buffer.put(tag(kind, seat));
+        switch (kind) {
+            case Move.PLAY_ONE, Move.PICK_COLOR -> putVarint(Move.cardOne(move));
+            case Move.PLAY_ADD, Move.PLAY_SUB -> {
+                putVarint(Move.cardOne(move));
+                putVarint(Move.cardTwo(move));
+            }
+        }
+        return mark;
+    }
+
+    /**
+     * The move recorded last was rejected (nothing happened since moveStarted), forget it.
+     */
+    void moveRejected(int mark) {
+        buffer.position(mark);
+    }
+
+    void cardDrawn(int seat, int cardID, boolean fromDiscardPile) {
+        ensureRoom();
+        buffer.put(tag(fromDiscardPile ? DRAW_DISCARD : DRAW, seat));
+        putVarint(cardID);
+    }
+
+    void checksum(int positionKey) {
+        ensureRoom();
+        buffer.put((byte) CHECKSUM);
+        putVarint(positionKey & 0xFFFFFFFFL);
+    }
+
+    void gameEnded(int winnerID, int rounds) {
+        ensureRoom();
+        buffer.put(tag(END, winnerID));
+        putVarint(rounds);
+    }
+
+    /**
+     * @return number of bytes recorded so far, written or not
+     */
+    public long size() {
+        return recorded + buffer.position();
+    }
+
+    /**
+     * Hand everything recorded to the writer, and wait until it is written to the channel.
+     * @throws IOException if the channel failed (the log is useless from then on)
+     */
+    public void flush() throws IOException {
+        if (buffer.position() > 0) {
+            handOff();
+            buffer = takeFree();
+        }
+        boolean interrupted = false;
+        synchronized (this) {
+            while (written < handedOff) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Flush the log, stop its writer thread and close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flush();
+        } finally {
+            filled.add(endOfLog);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private static byte tag(int type, int seat) {
+        return (byte) (type | seat << SEAT_SHIFT);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Make sure the current buffer can take one more record, handing it off if not.
+     */
+    private void ensureRoom() {
+        assert(!closed);
+        if (buffer.remaining() >= MAX_RECORD) return;
+        handOff();
+        buffer = takeFree();
+    }
+
+    private void handOff() {
+        recorded += buffer.position();
+        synchronized (this) {
+            handedOff++;
+        }
+        filled.add(buffer); // never full: there are fewer buffers than slots
+    }
+
+    /**
+     * Take an empty buffer, waiting for the writer if it is behind.
+     */
+    private ByteBuffer takeFree() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return free.take();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the record must not be lost, wait on
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loop of the writer thread: write every buffer handed off, and give it back empty.
+     */
+    private void drain() {
+        while (true) {
+            ByteBuffer full;
+            try {
+                full = filled.take();
+            } catch (InterruptedException e) {
+                continue; // only close stops the writer
+            }
+            if (full == endOfLog) return;
+            full.flip();
+            try {
+                while (full.hasRemaining() && failure == null) channel.write(full);
+            } catch (IOException e) {
+                failure = e; // later buffers are dropped, flush / close report it
+            }
+            full.clear();
+            free.add(full);
+            synchronized (this) {
+                written++;
+                notifyAll();
+            }
+        }
+    }
+}
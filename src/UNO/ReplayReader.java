@@ -0,0 +1,140 @@
+package UNO;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the records of a replay log (see ReplayLog for the format) one after another, without allocating.
+ *
+ * Example - print the moves of every game of a log:
+ *     ReplayReader reader = new ReplayReader(ByteBuffer.wrap(Files.readAllBytes(file)));
+ *     while (reader.next()) {
+ *         if (reader.isMove()) System.out.println(reader.seat() + ": " + Move.describe(reader.move()));
+ *     }
+ */
+public class ReplayReader {
+    private final ByteBuffer in;
+    private int type;
+    private int seat;
+    private final long[] operands = new long[4];
+
+    /**
+     * @param log the bytes of a log, read from its position on. It must start with ReplayLog.MAGIC.
+     * @throws IllegalArgumentException if it is not a replay log
+     */
+    public ReplayReader(ByteBuffer log) {
+        this(log, true);
+    }
+
+    private ReplayReader(ByteBuffer log, boolean checkMagic) {
+        in = log;
+        byte[] magic = ReplayLog.MAGIC;
+        for (int i = 0; checkMagic && i < magic.length; i++) {
+            if (!in.hasRemaining() || in.get() != magic[i]) throw new IllegalArgumentException("not a replay log");
+        }
+    }
+
+    /**
+     * A reader of records cut out of a log, without MAGIC (e.g. the records of one game, see ReplayArchive.events).
+     * @param records the records, read from their position on
+     */
+    public static ReplayReader ofRecords(ByteBuffer records) {
+        return new ReplayReader(records, false);
+    }
+
+    /**
+     * Read the next record.
+     * @return false at the end of the log, or if the last record is truncated (e.g. the log is still being written)
+     */
+    public boolean next() {
+        if (!in.hasRemaining()) return false;
+        int start = in.position();
+        int tag = in.get() & 0xFF;
+        type = tag & (1 << ReplayLog.SEAT_SHIFT) - 1;
+        seat = tag >>> ReplayLog.SEAT_SHIFT;
+        int count = switch (type) {
+            case Move.PLAY_ONE, Move.PICK_COLOR, ReplayLog.DRAW, ReplayLog.DRAW_DISCARD, ReplayLog.END, ReplayLog.CHECKSUM -> 1;
+            case Move.PLAY_ADD, Move.PLAY_SUB -> 2;
+            case ReplayLog.GAME -> 4;
+            default -> 0;
+        };
+        for (int i = 0; i < count; i++) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (!in.hasRemaining()) {
+                    in.position(start);
+                    return false;
+                }
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            operands[i] = value;
+        }
+        return true;
+    }
+
+    /**
+     * @return type of the record: a kind of Move, or ReplayLog.DRAW, DRAW_DISCARD, GAME, END, CHECKSUM
+     */
+    public int type() {
+        return type;
+    }
+
+    /**
+     * @return seat of the player of the record (the winner for END)
+     */
+    public int seat() {
+        return seat;
+    }
+
+    /**
+     * @return whether the record is a move of its seat
+     */
+    public boolean isMove() {
+        return type >= Move.PLAY_ONE && type <= Move.PICK_COLOR;
+    }
+
+    /**
+     * @return the move of a move record, packed by Move
+     */
+    public int move() {
+        return switch (type) {
+            case Move.PLAY_ONE -> Move.playOne(card());
+            case Move.PLAY_ADD, Move.PLAY_SUB -> Move.playTwo(card(), (int) operands[1],
+                    type == Move.PLAY_ADD ? TwoCardRule.OP_ADD : TwoCardRule.OP_SUB);
+            case Move.PICK_COLOR -> Move.pickColor(card());
+            case Move.DRAW_PLAY -> Move.drawAndPlay();
+            default -> Move.skip();
+        };
+    }
+
+    /**
+     * @return the card of a PLAY_ONE, DRAW or DRAW_DISCARD record (first card of two-card plays, color of PICK_COLOR)
+     */
+    public int card() {
+        return (int) operands[0];
+    }
+
+    /**
+     * @param i index of the operand, in the order of ReplayLog
+     * @return operand of the record, e.g. the seed (0), number of players (1), human seats (2)
+     *         and first player (3) of GAME, the rounds (0) of END, or the checksum (0) of CHECKSUM
+     */
+    public long operand(int i) {
+        return operands[i];
+    }
+
+    /**
+     * @return position in the log after the record read last
+     */
+    public int position() {
+        return in.position();
+    }
+
+    /**
+     * Go to a position of the log, e.g. one returned by position, to read the records from there.
+     */
+    public void seek(int position) {
+        in.position(position);
+    }
+}
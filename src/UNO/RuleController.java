@@ -1,7 +1,5 @@
 package UNO;
 
-import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * !!!!!!!!!!!!!!!!!!!!!! Part of Model IN MVC!!!!!!!!!!!!!!!!!!!!!!!
@@ -11,45 +9,100 @@ import java.util.Random;
  * currentMatchableSymbol, cumulativePenaltyDraw(stacked draw), and nextPlayerSkipLevel.
  * See the getter & setter for details for these variables.
  *
+ * The whole state is packed into a single long (see the layout below), so that it can be copied,
+ * compared, hashed and restored in O(1). The String getters/setters are only views on the packed state.
+ *
  * There will be no interaction with the Viewer (GUI) in this class!
  */
 public class RuleController {
-    public static CardParser parser = new CardParser();
+    public static final CardParser parser = new CardParser();
+
+    /** Codes of matchable color besides the card colors (CardParser.COLOR_NA - COLOR_YELLOW). */
+    public static final int COLOR_ALL = 5;
+    public static final int COLOR_NONE = 6;
+
+    /** Codes of matchable number/symbol besides the card faces (0 - 9, CardParser.FACE_SKIP - FACE_DRAW2). */
+    public static final int ATTR_NONE = 15;
+    public static final int ATTR_ALL = 16;
+
+    /** Codes of previous action. */
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_SKIP = 1;
+    public static final int ACTION_PLAY_ONE = 2;
+    public static final int ACTION_PLAY_TWO = 3;
+    public static final int ACTION_DRAW_PLAY_OK = 4;
+    public static final int ACTION_DRAW_PLAY_FAIL = 5;
+    private static final String[] ACTION_NAMES = {"None", "Skip", "Play Owned (1)", "Play Owned (2)",
+            "Draw & Play (OK)", "Draw & Play (FAIL)"};
+    private static final String[] MATCHABLE_COLOR_NAMES = {"NA", "red", "green", "blue", "yellow", "all", "none"};
+
+    /* Layout of the packed state:
+     * bits  0 -  2 : matchable color           bits  3 -  7 : matchable number
+     * bits  8 - 12 : matchable symbol          bits 13 - 14 : next player skip level
+     * bit  15      : 1 if counter-clockwise    bits 16 - 19 : face of previous card (ATTR_NONE if none)
+     * bits 20 - 22 : color of previous card    bits 23 - 25 : previous action
+     * bits 32 - 47 : cumulative penalty draw */
+    private static final int COLOR_SHIFT = 0, NUMBER_SHIFT = 3, SYMBOL_SHIFT = 8, SKIP_SHIFT = 13, ORDER_SHIFT = 15,
+            PREV_FACE_SHIFT = 16, PREV_COLOR_SHIFT = 20, ACTION_SHIFT = 23, PENALTY_SHIFT = 32;
+    private static final long COLOR_MASK = 0x7, ATTR_MASK = 0x1F, SKIP_MASK = 0x3, FACE_MASK = 0xF,
+            ACTION_MASK = 0x7, PENALTY_MASK = 0xFFFF;
 
     /** IMPORTANT
-     * As long as one of the following three is matchable, the play will be considered as legal
+     * As long as one of matchable color, number, symbol is matchable, the play will be considered as legal.
+     * Card played in the first round can only match by either color or number.
      */
-    private String currentMatchableColor;
-    private String currentMatchableNumber;
-    private String currentMatchableSymbol = "none"; // Card played in the first round can only match by either color or number
-    private String previousCard;
-    private String previousAction = "None";
-    private int nextPlayerSkipLevel = 0;
-    private int cumulativePenaltyDraw = 0;
-    private boolean isClockWise = true;   // if clockwise, next player will be the element in player list
+    private long state;
 
 
     public RuleController() {
+        this(new GameRandom(GameRandom.randomSeed()));
+    }
+
+    /**
+     * @param rand random stream of the game, used to decide the first matched color and number
+     */
+    public RuleController(GameRandom rand) {
         // initialize first matched color and number
         boolean chosen = false;
         while (!chosen) {
-            Random rand = new Random();
             int cardID = rand.nextInt(100) + 1; // generate a number from 1 - 100 (ID of colored cards)
-            String desc = parser.parseCardID(cardID);
-            String[] result = parser.parseCardDescription(desc);
-            String color = result[0];
-            String type = result[1];
-            String content = result[2];
-
-            if (type.equals("num")) {
-                previousCard = desc;
-                currentMatchableColor = color;
-                currentMatchableNumber = content;
+
+            if (CardParser.isNumberCard(cardID)) {
+                int color = CardParser.colorOf(cardID);
+                int number = CardParser.faceOf(cardID);
+                state = pack(color, number, ATTR_NONE, 0, true, number, color, ACTION_NONE, 0);
                 chosen = true;
             }
         }
     }
 
+    /**
+     * A rule controller in a given state, e.g. a copy of another one (see Game.fork).
+     * @param packedState state as returned by getState
+     */
+    public RuleController(long packedState) {
+        state = packedState;
+    }
+
+    /**
+     * Pack all attributes of a game state into a long.
+     */
+    private static long pack(int color, int number, int symbol, int skipLevel, boolean clockwise,
+                             int prevFace, int prevColor, int action, int penalty) {
+        return ((long) color << COLOR_SHIFT) | ((long) number << NUMBER_SHIFT) | ((long) symbol << SYMBOL_SHIFT)
+                | ((long) skipLevel << SKIP_SHIFT) | ((clockwise ? 0L : 1L) << ORDER_SHIFT)
+                | ((long) prevFace << PREV_FACE_SHIFT) | ((long) prevColor << PREV_COLOR_SHIFT)
+                | ((long) action << ACTION_SHIFT) | ((long) penalty << PENALTY_SHIFT);
+    }
+
+    private int field(int shift, long mask) {
+        return (int) ((state >>> shift) & mask);
+    }
+
+    private void setField(int shift, long mask, long value) {
+        state = (state & ~(mask << shift)) | ((value & mask) << shift);
+    }
+
     /**
      * Judge whether a pending player should be skipped
      * If true, then the player takes all stacked penalty cards
@@ -57,16 +110,17 @@ public class RuleController {
      * @return whether the player was skipped and forced to draw
      */
     public boolean checkSkipAndDraw(Player player, boolean drawIfSkipped) {
-        if (nextPlayerSkipLevel == 3) {
-            assert cumulativePenaltyDraw == 0;
-            nextPlayerSkipLevel = 0; // the next player should no longer be skipped
+        int skipLevel = getNextPlayerSkiplevel();
+        if (skipLevel == 3) {
+            assert getPenaltyDraw() == 0;
+            setNextPlayerSkiplevel(0); // the next player should no longer be skipped
             return true;
 
-        } else if (nextPlayerSkipLevel != 0) {
+        } else if (skipLevel != 0) {
             // player will be skipped and forced to draw cards (if drawIfSkipped as true)
             // unless they have draw2/wildDraw4 cards
-            assert cumulativePenaltyDraw != 0;
-            boolean toSkip = player.findLegalCard().isEmpty();
+            assert getPenaltyDraw() != 0;
+            boolean toSkip = !player.hasLegalCard();
             if (toSkip && drawIfSkipped) {
                 drawStackedPenalty(player);
             }
@@ -82,8 +136,8 @@ public class RuleController {
      * @param player The victim
      */
     public void drawStackedPenalty(Player player) {
-        nextPlayerSkipLevel = 0;
-        player.drawCards(cumulativePenaltyDraw);
+        setNextPlayerSkiplevel(0);
+        player.drawCards(getPenaltyDraw());
         resetPenaltyDraw();
     }
 
@@ -97,127 +151,194 @@ public class RuleController {
      * @return whether the play is valid
      */
     public boolean isValidPlay(Player player, int cardID, boolean updateIfValid) {
-            assert(player != null);
-            String cardDescription = parser.parseCardID(cardID);
-            String[] result = parser.parseCardDescription(cardDescription);
-        String color = result[0];
-        String type = result[1];
-        String content = result[2];
-
+        assert(player != null);
+        int index = legalityIndex();
         boolean valid;
-
-        if (nextPlayerSkipLevel == 3) {
-            valid = false;
-
-        } else if (nextPlayerSkipLevel == 2) {
-            if (content.equals("wildDraw4")) valid = checkDraw4IsLegal(player);
-            else valid = false;
-
-        } else if (nextPlayerSkipLevel == 1) {
-            if (content.equals("wildDraw4")) valid = checkDraw4IsLegal(player);
-            else valid = content.equals("draw2"); // draw 2 is always allowed in this case
-
+        if (index >= 0) {
+            // look up the precomputed legality of the current state
+            long mask = cardID <= 64 ? LEGAL_LOW[index] : LEGAL_HIGH[index];
+            long bit = cardID <= 64 ? 1L << (cardID - 1) : 1L << (cardID - 65);
+            valid = (mask & bit) != 0
+                    || (DRAW4_CHECK[index] && CardParser.faceOf(cardID) == CardParser.FACE_WILD_DRAW4 && checkDraw4IsLegal(player));
         } else {
-            valid = isValidSkip0(player, color, content);
+            int legality = legality(getMatchableColorID(), getMatchableNumberID(), getMatchableSymbolID(),
+                    getNextPlayerSkiplevel(), cardID);
+            valid = legality == LEGAL || (legality == LEGAL_IF_NO_COLOR && checkDraw4IsLegal(player));
         }
-        if (valid && updateIfValid) updateRule(color, type, content); // do update
+        if (valid && updateIfValid) updateRule(cardID); // do update
 
         return valid;
     }
 
+    /**
+     * All cards in the hand of a player which are legal to play under current game state, as two bit words
+     * (same layout as Hand). This is a single AND of the hand with the legality mask of current state,
+     * plus the color-absence check for wildDraw4.
+     * @param player player attempting to play
+     * @param high false for cards 1 - 64, true for cards 65 - 108
+     * @return legal cards of the player as bits
+     */
+    public long legalCards(Player player, boolean high) {
+        Hand hand = player.getHand();
+        int index = legalityIndex();
+        long legal, draw4Check;
+        if (index >= 0) {
+            legal = high ? LEGAL_HIGH[index] : LEGAL_LOW[index];
+            draw4Check = DRAW4_CHECK[index] && high ? WILD_DRAW4_HIGH : 0;
+        } else {
+            legal = 0;
+            draw4Check = 0;
+            for (int cardID = high ? 65 : 1; cardID <= (high ? CardParser.TOTAL_CARDS : 64); cardID++) {
+                int legality = legality(getMatchableColorID(), getMatchableNumberID(), getMatchableSymbolID(),
+                        getNextPlayerSkiplevel(), cardID);
+                long bit = 1L << ((cardID - 1) & 63);
+                if (legality == LEGAL) legal |= bit;
+                else if (legality == LEGAL_IF_NO_COLOR) draw4Check |= bit;
+            }
+        }
+        long handBits = high ? hand.getHigh() : hand.getLow();
+        if ((handBits & draw4Check) != 0 && checkDraw4IsLegal(player)) legal |= draw4Check;
+        return handBits & legal;
+    }
+
 
+    /* Legality of a card in a game state */
+    private static final int ILLEGAL = 0;
+    private static final int LEGAL = 1;
+    private static final int LEGAL_IF_NO_COLOR = 2; // wildDraw4: legal if player owns no card of matchable color
 
-    /** Helper function for isValid handling the case where skiplevel==0
+    /**
+     * Judge the legality of a card in a game state, regardless of the hand of the player.
+     * All precomputed tables are built from this function.
      */
-    private boolean isValidSkip0(Player player, String color, String content) {
+    private static int legality(int color, int number, int symbol, int skipLevel, int cardID) {
+        int face = CardParser.faceOf(cardID);
+        if (skipLevel == 3) {
+            return ILLEGAL;
+
+        } else if (skipLevel == 2) {
+            return face == CardParser.FACE_WILD_DRAW4 ? LEGAL_IF_NO_COLOR : ILLEGAL;
+
+        } else if (skipLevel == 1) {
+            if (face == CardParser.FACE_WILD_DRAW4) return LEGAL_IF_NO_COLOR;
+            return face == CardParser.FACE_DRAW2 ? LEGAL : ILLEGAL; // draw 2 is always allowed in this case
+        }
+
         // if not skipped, first consider wild card
-        if (content.equals("wild")) {
-            return true;  // can be used unconditionally
+        if (face == CardParser.FACE_WILD) {
+            return LEGAL;  // can be used unconditionally
         }
 
         // then other colored cards
-        if (checkAttrMatch(currentMatchableColor, color)) return true;
-        if (checkAttrMatch(currentMatchableNumber, content) || checkAttrMatch(currentMatchableSymbol, content))
-            return true;
+        if (color == COLOR_ALL || color == CardParser.colorOf(cardID)) return LEGAL;
+        if (checkAttrMatch(number, face) || checkAttrMatch(symbol, face)) return LEGAL;
 
         // check wildDraw4 at last
-        if (content.equals("wildDraw4")) {
-            return checkDraw4IsLegal(player);
+        return face == CardParser.FACE_WILD_DRAW4 ? LEGAL_IF_NO_COLOR : ILLEGAL;
+    }
+
+    private static boolean checkAttrMatch(int legalAttr, int attrToCheck) {
+        return legalAttr == ATTR_ALL || attrToCheck == legalAttr;
+    }
+
+    /* Precomputed legality of every card for every canonical game state.
+     * A canonical state is a (skip level, color, number, symbol) where number is 0 - 9 / none / all,
+     * and symbol is skip / reverse / draw2 / none / all. See legalityIndex. */
+    private static final int NUMBER_STATES = 12;
+    private static final int SYMBOL_STATES = 5;
+    private static final int LEGALITY_STATES = 4 * MATCHABLE_COLOR_NAMES.length * NUMBER_STATES * SYMBOL_STATES;
+    private static final long[] LEGAL_LOW = new long[LEGALITY_STATES];   // unconditionally legal cards 1 - 64
+    private static final long[] LEGAL_HIGH = new long[LEGALITY_STATES];  // unconditionally legal cards 65 - 108
+    private static final boolean[] DRAW4_CHECK = new boolean[LEGALITY_STATES]; // wildDraw4 needs color-absence check
+    private static final long WILD_DRAW4_HIGH = 0xFL << (105 - 65); // cards 105 - 108
+
+    static {
+        for (int skipLevel = 0; skipLevel < 4; skipLevel++) {
+            for (int color = 0; color < MATCHABLE_COLOR_NAMES.length; color++) {
+                for (int number = 0; number <= ATTR_ALL; number++) {
+                    for (int symbol = 0; symbol <= ATTR_ALL; symbol++) {
+                        int index = legalityIndex(color, number, symbol, skipLevel);
+                        if (index < 0) continue;
+                        for (int cardID = 1; cardID <= CardParser.TOTAL_CARDS; cardID++) {
+                            int legality = legality(color, number, symbol, skipLevel, cardID);
+                            if (legality == LEGAL_IF_NO_COLOR) DRAW4_CHECK[index] = true;
+                            if (legality != LEGAL) continue;
+                            if (cardID <= 64) LEGAL_LOW[index] |= 1L << (cardID - 1);
+                            else LEGAL_HIGH[index] |= 1L << (cardID - 65);
+                        }
+                    }
+                }
+            }
         }
-        return false;
     }
 
+    /**
+     * Index of a canonical state in the legality tables, -1 if the state is not canonical
+     * (e.g. matchable number set to "skip" through setMatchableNumber), in which case legality is computed directly.
+     */
+    private static int legalityIndex(int color, int number, int symbol, int skipLevel) {
+        int numberIndex = number <= 9 ? number : number == ATTR_NONE ? 10 : number == ATTR_ALL ? 11 : -1;
+        int symbolIndex = (symbol >= CardParser.FACE_SKIP && symbol <= CardParser.FACE_DRAW2) ? symbol - CardParser.FACE_SKIP
+                : symbol == ATTR_NONE ? 3 : symbol == ATTR_ALL ? 4 : -1;
+        if (numberIndex < 0 || symbolIndex < 0) return -1;
+        return ((skipLevel * MATCHABLE_COLOR_NAMES.length + color) * NUMBER_STATES + numberIndex) * SYMBOL_STATES + symbolIndex;
+    }
 
+    private int legalityIndex() {
+        return legalityIndex(getMatchableColorID(), getMatchableNumberID(), getMatchableSymbolID(), getNextPlayerSkiplevel());
+    }
 
 
 
     /**
      * Helper function to update the game state.
-     * @param color the color of card being played
-     * @param type the type of card being played
-     * @param content the content of card being played
-     */
-    private void updateRule(String color, String type, String content) {
-        setMatchableColor(color); // wildcard "NA" - this will be updated later by player declaring the color
-        setPreviousCard(color + " " + type + " " + content); // update previous card played
-        if (type.equals("sym")) {
-            switch (content) {
-                case "skip" -> {
-                    setNextPlayerSkiplevel(3);
-                    currentMatchableSymbol = content;
-                    currentMatchableNumber = "none";
-                }
-                case "draw2" -> {
-                    setNextPlayerSkiplevel(1);
-                    increasePenaltyDraw(2);
-                    currentMatchableSymbol = content;
-                    currentMatchableNumber = "none";
-                }
-                case "wildDraw4" -> {
-                    setNextPlayerSkiplevel(2);
-                    increasePenaltyDraw(4);
-                    currentMatchableSymbol = "none";
-                    currentMatchableNumber = "none";
-                }
-                case "reverse" -> {
-                    changeGameOrder();
-                    setNextPlayerSkiplevel(0);
-                    currentMatchableSymbol = content;
-                    currentMatchableNumber = "none";
-                }
-                case "wild" -> {
-                    currentMatchableSymbol = "none";
-                    currentMatchableNumber = "none";
-                }
+     * @param cardID the card being played
+     */
+    private void updateRule(int cardID) {
+        int color = CardParser.colorOf(cardID);
+        int face = CardParser.faceOf(cardID);
+        setField(COLOR_SHIFT, COLOR_MASK, color); // wildcard NA - this will be updated later by player declaring the color
+        setField(PREV_FACE_SHIFT, FACE_MASK, face); // update previous card played
+        setField(PREV_COLOR_SHIFT, COLOR_MASK, color);
+        int number = ATTR_NONE;
+        int symbol = ATTR_NONE;
+        switch (face) {
+            case CardParser.FACE_SKIP -> {
+                setNextPlayerSkiplevel(3);
+                symbol = face;
+            }
+            case CardParser.FACE_DRAW2 -> {
+                setNextPlayerSkiplevel(1);
+                increasePenaltyDraw(2);
+                symbol = face;
+            }
+            case CardParser.FACE_WILD_DRAW4 -> {
+                setNextPlayerSkiplevel(2);
+                increasePenaltyDraw(4);
+            }
+            case CardParser.FACE_REVERSE -> {
+                changeGameOrder();
+                setNextPlayerSkiplevel(0);
+                symbol = face;
+            }
+            case CardParser.FACE_WILD -> {
+            }
+            default -> {
+                // number cards: next round match by either COL or NUM
+                setNextPlayerSkiplevel(0);
+                number = face;
             }
-
-        } else if (type.equals("num")) {
-            // next round match by either COL or NUM
-            setNextPlayerSkiplevel(0);
-            currentMatchableNumber = content;
-            currentMatchableSymbol = "none";
         }
-    }
-
-    private boolean checkAttrMatch(String legalString, String stringToCheck) {
-        return legalString.equals("all") || stringToCheck.equals(legalString);
+        setField(NUMBER_SHIFT, ATTR_MASK, number);
+        setField(SYMBOL_SHIFT, ATTR_MASK, symbol);
     }
 
     /**
      * Check whether a player have currently matchable **color** when attempting to play wild draw 4
      */
     private boolean checkDraw4IsLegal(Player player) {
-
-        ArrayList<Integer> cards = player.getCards();
-        for (int i = 0; i < cards.size(); i++) {
-            int cardID = cards.get(i);
-            String cardDescription = parser.parseCardID(cardID);
-            String color = parser.parseCardDescription(cardDescription)[0]; // color of wild cards are NA
-            if (color.equals(currentMatchableColor)) {
-                return false;
-            }
-        }
-        return true;
+        int colorID = field(COLOR_SHIFT, COLOR_MASK);
+        return colorID >= CardParser.COLOR_NUM || player.getHand().colorCount(colorID) == 0; // color of wild cards are NA
     }
 
     /**
@@ -227,11 +348,11 @@ public class RuleController {
      */
 
     public String getMatchableNumber() {
-        return currentMatchableNumber;
+        return attrName(field(NUMBER_SHIFT, ATTR_MASK));
     }
 
     public void setMatchableNumber(String number) {
-        currentMatchableNumber = number;
+        setField(NUMBER_SHIFT, ATTR_MASK, attrCode(number));
     }
 
     /**
@@ -242,7 +363,7 @@ public class RuleController {
      */
 
     public String getMatchableSymbol() {
-        return currentMatchableSymbol;
+        return attrName(field(SYMBOL_SHIFT, ATTR_MASK));
     }
 
     /**
@@ -250,7 +371,7 @@ public class RuleController {
      * @param symbol the symbol to be set
      */
     public void setMatchableSymbol(String symbol) {
-        currentMatchableSymbol = symbol;
+        setField(SYMBOL_SHIFT, ATTR_MASK, attrCode(symbol));
     }
 
 
@@ -262,7 +383,7 @@ public class RuleController {
      */
 
     public String getMatchableColor() {
-        return currentMatchableColor;
+        return MATCHABLE_COLOR_NAMES[field(COLOR_SHIFT, COLOR_MASK)];
     }
 
     /**
@@ -270,11 +391,35 @@ public class RuleController {
      * @param color color to be set
      */
     public void setMatchableColor(String color) {
-        currentMatchableColor = color;
+        setField(COLOR_SHIFT, COLOR_MASK, colorCode(color));
     }
 
     /**
-     * Getter for nextPlayerIsSkipped。
+     * Getter for the code of current matchable color.
+     * @return CardParser.COLOR_NA - COLOR_YELLOW, COLOR_ALL or COLOR_NONE
+     */
+    public int getMatchableColorID() {
+        return field(COLOR_SHIFT, COLOR_MASK);
+    }
+
+    /**
+     * Getter for the code of current matchable number.
+     * @return 0 - 9, ATTR_NONE or ATTR_ALL
+     */
+    public int getMatchableNumberID() {
+        return field(NUMBER_SHIFT, ATTR_MASK);
+    }
+
+    /**
+     * Getter for the code of current matchable symbol.
+     * @return CardParser.FACE_SKIP - FACE_DRAW2, ATTR_NONE or ATTR_ALL
+     */
+    public int getMatchableSymbolID() {
+        return field(SYMBOL_SHIFT, ATTR_MASK);
+    }
+
+    /**
+     * Getter for nextPlayerIsSkipped.
      * There are four levels of "nextPlayerIsSkipped":
      * level 0: next player won't be skipped;
      * level 1: next player can play a either a draw2 card or a wildDraw4 card to avoid being skipped;
@@ -283,52 +428,56 @@ public class RuleController {
      * @return current skip level
      */
 
-    public int getNextPlayerSkiplevel() { return nextPlayerSkipLevel; }
+    public int getNextPlayerSkiplevel() { return field(SKIP_SHIFT, SKIP_MASK); }
 
     /**
      * Setter for nextPlayerSkipLevel.
      * @param level the level to be set (check getter for details)
      */
-    public void setNextPlayerSkiplevel(int level) { nextPlayerSkipLevel = level; }
+    public void setNextPlayerSkiplevel(int level) { setField(SKIP_SHIFT, SKIP_MASK, level); }
 
     /**
      * Get the total number of stacked card to be drawn (cumulativePenaltyDraw).
      * @return cumulativePenaltyDraw
      */
 
-    public int getPenaltyDraw() { return cumulativePenaltyDraw; }
+    public int getPenaltyDraw() { return field(PENALTY_SHIFT, PENALTY_MASK); }
 
     /**
      * Reset next player penalty draw to 0.
      * Applied when a played takes penalty draw in previous round
      */
-    public void resetPenaltyDraw() { cumulativePenaltyDraw = 0; }
+    public void resetPenaltyDraw() { setField(PENALTY_SHIFT, PENALTY_MASK, 0); }
 
     /**
      * Increase number of stacked penalty draw by num.
      * @param num number to increase
      */
-    public void increasePenaltyDraw(int num) { cumulativePenaltyDraw += num; }
+    public void increasePenaltyDraw(int num) { setField(PENALTY_SHIFT, PENALTY_MASK, getPenaltyDraw() + num); }
 
     /**
      * Get the current game order.
      * @return whether current game order is clockwise
      */
-    public boolean getIsClockwise() { return isClockWise; }
+    public boolean getIsClockwise() { return field(ORDER_SHIFT, 1) == 0; }
 
     /**
      * Flip the order of game.
      * clockwise goes to counter-clockwise, vice versa
      */
-    public void changeGameOrder() { isClockWise = !isClockWise; }
+    public void changeGameOrder() { state ^= 1L << ORDER_SHIFT; }
 
 
     /**
      * Setter for previous card played.
-     * @param cardDescription A string of description of previous card
+     * @param cardDescription A string of description of previous card, in the format of CardParser.parseCardID
      */
     public void setPreviousCard(String cardDescription) {
-        previousCard = cardDescription;
+        String[] result = parser.parseCardDescription(cardDescription);
+        int color = colorCode(result[0]);
+        int face = CardParser.faceID(result[2]);
+        setField(PREV_COLOR_SHIFT, COLOR_MASK, color);
+        setField(PREV_FACE_SHIFT, FACE_MASK, face == -1 ? ATTR_NONE : face);
     }
 
     /**
@@ -336,15 +485,59 @@ public class RuleController {
      * @return card Description of previous card
      */
     public String getPreviousCard() {
-        return previousCard;
+        int face = field(PREV_FACE_SHIFT, FACE_MASK);
+        int color = field(PREV_COLOR_SHIFT, COLOR_MASK);
+        if (face == ATTR_NONE || color >= CardParser.COLOR_NUM) return "none";
+        return CardParser.describe(color, face);
+    }
+
+    /**
+     * Whether previous card is a wild card whose color has not been declared yet.
+     * (i.e. color of previous card is "NA")
+     */
+    public boolean isWaitingForColor() {
+        return field(PREV_COLOR_SHIFT, COLOR_MASK) == CardParser.COLOR_NA;
     }
 
 
     public void setPreviousAction(String action) {
-        previousAction = action;
+        for (int i = 0; i < ACTION_NAMES.length; i++) {
+            if (ACTION_NAMES[i].equals(action)) setPreviousActionID(i);
+        }
     }
     public String getPreviousAction() {
-        return previousAction;
+        return ACTION_NAMES[getPreviousActionID()];
+    }
+
+    /**
+     * Setter for previous action as code (ACTION_NONE ... ACTION_DRAW_PLAY_FAIL).
+     */
+    public void setPreviousActionID(int action) {
+        setField(ACTION_SHIFT, ACTION_MASK, action);
+    }
+
+    /**
+     * Getter for previous action as code (ACTION_NONE ... ACTION_DRAW_PLAY_FAIL).
+     */
+    public int getPreviousActionID() {
+        return field(ACTION_SHIFT, ACTION_MASK);
+    }
+
+    /**
+     * Get the whole game state packed as a long.
+     * Two controllers with equal packed states behave identically, so it could be used for hashing or snapshots.
+     * @return the packed game state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restore the whole game state from a packed long (previously returned by getState).
+     * @param packedState the packed game state
+     */
+    public void setState(long packedState) {
+        state = packedState;
     }
 
 
@@ -353,12 +546,37 @@ public class RuleController {
      * @param color A color string of declared color.
      */
     public void updateGameStateBasedOnPickedColor(String color) {
-        CardParser parser = new CardParser();
-        setMatchableColor(color);
-        String prevCard = getPreviousCard();
-        String type = parser.parseCardDescription(prevCard)[1];
-        String content = parser.parseCardDescription(prevCard)[2];
-        setPreviousCard(color + " "+ type + " " + content);   // e.g. "newColor sym wild"
+        int colorID = colorCode(color);
+        setField(COLOR_SHIFT, COLOR_MASK, colorID);
+        setField(PREV_COLOR_SHIFT, COLOR_MASK, colorID);   // e.g. "newColor sym wild"
+    }
+
+    /**
+     * Convert a matchable color name to its code. Unknown names are considered as "none" (matches nothing).
+     */
+    private static int colorCode(String color) {
+        for (int i = 0; i < MATCHABLE_COLOR_NAMES.length; i++) {
+            if (MATCHABLE_COLOR_NAMES[i].equals(color)) return i;
+        }
+        return COLOR_NONE;
+    }
+
+    /**
+     * Convert a matchable number/symbol name to its code. Unknown names are considered as "none".
+     */
+    private static int attrCode(String attr) {
+        if (attr.equals("all")) return ATTR_ALL;
+        int face = CardParser.faceID(attr);
+        return face == -1 ? ATTR_NONE : face;
+    }
+
+    /**
+     * Convert a matchable number/symbol code to its name.
+     */
+    private static String attrName(int attr) {
+        if (attr == ATTR_ALL) return "all";
+        if (attr == ATTR_NONE) return "none";
+        return CardParser.FACE_NAMES[attr];
     }
 
 
@@ -0,0 +1,137 @@
+package UNO;
+
+/**
+ * Aggregated statistics of a batch of AI-only games played by Simulator.
+ * Results of two batches with the same seating can be combined with merge.
+ */
+public class SimulationResult {
+    private final String[] seatStrategies;
+    private final long[] winsPerSeat;
+    private long games = 0;
+    private long unfinishedGames = 0; // games abandoned at the round cap
+    private long totalRounds = 0;
+    private int maxRounds = 0;
+    private long totalReshuffledCards = 0;
+
+    /**
+     * @param seatStrategies name of the strategy (AI class) sitting at each seat
+     */
+    public SimulationResult(String[] seatStrategies) {
+        this.seatStrategies = seatStrategies.clone();
+        winsPerSeat = new long[seatStrategies.length];
+    }
+
+    /**
+     * Record one game.
+     * @param winnerID seat of the winner, -1 if the game was abandoned
+     * @param rounds number of rounds played
+     * @param reshuffledCards number of cards drawn back from the discard pile
+     */
+    public void record(int winnerID, int rounds, int reshuffledCards) {
+        games++;
+        if (winnerID == -1) unfinishedGames++;
+        else winsPerSeat[winnerID]++;
+        totalRounds += rounds;
+        maxRounds = Math.max(maxRounds, rounds);
+        totalReshuffledCards += reshuffledCards;
+    }
+
+    /**
+     * Add the statistics of another batch into this one. Both batches should have the same seating.
+     * @param other result of another batch
+     * @return this result
+     */
+    public SimulationResult merge(SimulationResult other) {
+        assert(other.winsPerSeat.length == winsPerSeat.length);
+        for (int i = 0; i < winsPerSeat.length; i++) winsPerSeat[i] += other.winsPerSeat[i];
+        games += other.games;
+        unfinishedGames += other.unfinishedGames;
+        totalRounds += other.totalRounds;
+        maxRounds = Math.max(maxRounds, other.maxRounds);
+        totalReshuffledCards += other.totalReshuffledCards;
+        return this;
+    }
+
+    /**
+     * @return number of games played
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return number of games abandoned without a winner
+     */
+    public long getUnfinishedGames() {
+        return unfinishedGames;
+    }
+
+    /**
+     * @param seat seat (player ID) starting from 0
+     * @return number of games won by the player at the seat
+     */
+    public long getWins(int seat) {
+        return winsPerSeat[seat];
+    }
+
+    /**
+     * Number of games won by all seats playing a strategy.
+     * @param strategy name of the AI class, e.g. "ArtificialIntelligence"
+     * @return number of games won by the strategy
+     */
+    public long getWins(String strategy) {
+        long wins = 0;
+        for (int i = 0; i < seatStrategies.length; i++) {
+            if (seatStrategies[i].equals(strategy)) wins += winsPerSeat[i];
+        }
+        return wins;
+    }
+
+    /**
+     * @param strategy name of the AI class
+     * @return percentage of all games won by the strategy
+     */
+    public double getWinRate(String strategy) {
+        return games == 0 ? 0 : 100.0 * getWins(strategy) / games;
+    }
+
+    /**
+     * @return average number of rounds per game
+     */
+    public double getAverageRounds() {
+        return games == 0 ? 0 : (double) totalRounds / games;
+    }
+
+    /**
+     * @return number of rounds of the longest game
+     */
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    /**
+     * @return total number of cards drawn back from discard piles
+     */
+    public long getTotalReshuffledCards() {
+        return totalReshuffledCards;
+    }
+
+    /**
+     * @return names of the strategies per seat
+     */
+    public String[] getSeatStrategies() {
+        return seatStrategies.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(games).append(" games, ").append(unfinishedGames).append(" unfinished, ");
+        sb.append(String.format("%.1f rounds on average, %d at most, ", getAverageRounds(), maxRounds));
+        sb.append(totalReshuffledCards).append(" cards reshuffled\n");
+        for (int i = 0; i < seatStrategies.length; i++) {
+            sb.append(String.format("seat %d (%s): %d wins\n", i, seatStrategies[i], winsPerSeat[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+package UNO;
+
+import java.util.ArrayList;
+
+/**
+ * Headless batch simulation of complete AI-only games.
+ * Games run through Game.playHeadless, so no GUI page is created, no AI pauses and nothing is printed.
+ * Game i of a batch is seeded with GameRandom.seedOf(baseSeed, i), so a batch is reproducible.
+ *
+ * Example - two strategic AIs against two random AIs:
+ *     new Simulator(ArtificialIntelligence::new, ArtificialIntelligence::new, ArtificialIdiot::new, ArtificialIdiot::new)
+ *         .run(100000, 42);
+ */
+public class Simulator {
+    /** Default cap on rounds, a game not finished after it is counted as unfinished. */
+    public static final int DEFAULT_MAX_ROUNDS = 10000;
+
+    /**
+     * Creates the AI sitting at a seat, e.g. ArtificialIntelligence::new.
+     */
+    public interface PlayerFactory {
+        AIPlayer create(int ID, Game game);
+    }
+
+    private final PlayerFactory[] seats;
+    private final String[] seatStrategies;
+    private int maxRounds = DEFAULT_MAX_ROUNDS;
+    private ReplayLog replayLog; // records every game played, null for none
+    private ReplayArchive.Writer archive; // indexes and records every game played, null for none
+
+    /**
+     * @param seats one factory per seat, seat i gets player ID i. At least two seats.
+     */
+    public Simulator(PlayerFactory... seats) {
+        assert(seats.length >= 2);
+        this.seats = seats.clone();
+        seatStrategies = new String[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            seatStrategies[i] = seats[i].create(i, null).getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Set the cap on rounds of each game.
+     * @param rounds maximal rounds of a game
+     */
+    public void setMaxRounds(int rounds) {
+        maxRounds = rounds;
+    }
+
+    /**
+     * Record every game played from now on, e.g. to post-mortem a batch. Games of concurrent runs
+     * (see Tournament) must not share a log.
+     * @param log the log, null to stop recording
+     */
+    public void setReplayLog(ReplayLog log) {
+        replayLog = log;
+    }
+
+    /**
+     * Add every game played from now on to an archive (instead of the replay log, if both are set).
+     * Games of concurrent runs must not share a writer.
+     * @param writer writer of the archive, null to stop archiving
+     */
+    public void setArchive(ReplayArchive.Writer writer) {
+        archive = writer;
+    }
+
+    /**
+     * Play a batch of games one after another.
+     * @param numGames number of games
+     * @param baseSeed seed of the batch
+     * @return aggregated statistics
+     */
+    public SimulationResult run(int numGames, long baseSeed) {
+        return run(0, numGames, baseSeed);
+    }
+
+    /**
+     * Play the games [from, to) of a batch one after another.
+     * @param from index of the first game
+     * @param to index after the last game
+     * @param baseSeed seed of the batch
+     * @return aggregated statistics of these games
+     */
+    public SimulationResult run(long from, long to, long baseSeed) {
+        SimulationResult result = newResult();
+        for (long i = from; i < to; i++) {
+            playOne(GameRandom.seedOf(baseSeed, i), result);
+        }
+        return result;
+    }
+
+    /**
+     * Play one complete game and record it.
+     * @param seed seed of the game
+     * @param result statistics receiving the game
+     * @return the finished game
+     */
+    public Game playOne(long seed, SimulationResult result) {
+        Game game = new Game(0, seats.length, seed);
+        game.setGapTime(0);
+        game.setUseGUI(false);
+        game.setManualSetup(true);
+        game.setReplayLog(replayLog);
+
+        ArrayList<Player> players = new ArrayList<>(seats.length);
+        for (int i = 0; i < seats.length; i++) players.add(seats[i].create(i, game));
+        game.setPlayers(players);
+        if (archive != null) archive.begin(game);
+
+        game.initializeGame();
+        boolean finished = game.playHeadless(maxRounds);
+        if (archive != null) archive.end(game);
+        result.record(finished ? game.getWinnerID() : -1, Math.min(game.getRounds(), maxRounds), game.getCardManager().numReshuffledCards());
+        return game;
+    }
+
+    /**
+     * @return an empty result with the seating of this simulator
+     */
+    public SimulationResult newResult() {
+        return new SimulationResult(seatStrategies);
+    }
+}
@@ -0,0 +1,262 @@
+package UNO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many concurrent UNO tables (games) on a small fixed pool of worker threads.
+ *
+ * A table does not own a thread. It is advanced through Game.step / Game.playAIRound only when something happens:
+ * a human move is submitted, or the pacing delay before the next AI move expires (a scheduled wake-up, not a sleep).
+ * A table waiting for a human costs only its game state, so tens of thousands of tables fit in one JVM,
+ * while the number of threads stays equal to the number of workers.
+ *
+ * Every table is an actor: events are queued, and at most one worker advances a given table at a time,
+ * so Game needs no locking. New tables are refused beyond a cap, and drain stops accepting tables and
+ * waits for the running ones to finish.
+ */
+public class TableHost {
+    /**
+     * Callbacks from the host, invoked on worker threads. They must not modify the game.
+     */
+    public interface TableListener {
+        /** The table waits for a human move, submit it with TableHost.submit. */
+        default void awaitingHuman(long tableID, Game game) {}
+
+        /** The game of the table is over, and the table has been closed. */
+        default void finished(long tableID, Game game) {}
+    }
+
+    private final ScheduledThreadPoolExecutor workers;
+    private final ConcurrentHashMap<Long, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicLong nextTableID = new AtomicLong();
+    private final AtomicInteger openTables = new AtomicInteger();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private final int maxTables;
+    private final TableListener listener;
+    private volatile boolean draining = false;
+
+    /**
+     * @param workerThreads number of worker threads advancing all tables
+     * @param maxTables maximal number of tables open at the same time
+     * @param listener callbacks, may be null
+     */
+    public TableHost(int workerThreads, int maxTables, TableListener listener) {
+        workers = new ScheduledThreadPoolExecutor(workerThreads, r -> {
+            Thread thread = new Thread(r, "uno-table-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.setRemoveOnCancelPolicy(true);
+        this.maxTables = maxTables;
+        this.listener = listener != null ? listener : new TableListener() {};
+    }
+
+    /**
+     * Open a table for an initialized game (players seated and cards dealt) and start advancing it.
+     * @param game the game of the table
+     * @param pacingMillis pause before each AI round so that humans can follow, 0 for none
+     * @return ID of the table, -1 if the host is draining or the table cap is reached
+     */
+    public long open(Game game, int pacingMillis) {
+        // count the table before checking draining: drain() sets draining before reading the count,
+        // so either it waits for this table or this table sees it and backs off
+        if (openTables.incrementAndGet() > maxTables || draining) {
+            release();
+            return -1;
+        }
+        Table table = new Table(nextTableID.getAndIncrement(), game, pacingMillis);
+        tables.put(table.id, table);
+        table.signal();
+        return table.id;
+    }
+
+    /**
+     * Submit the move of the human whose turn it is at a table. Never blocks.
+     * @param tableID the table
+     * @param move a move packed by Move
+     * @return completed with whether the move was legal and applied (false for unknown or closed tables)
+     */
+    public CompletableFuture<Boolean> submit(long tableID, int move) {
+        Table table = tables.get(tableID);
+        if (table == null) return CompletableFuture.completedFuture(false);
+        Input input = new Input(move);
+        table.inbox.offer(input);
+        table.signal();
+        return input.result;
+    }
+
+    /**
+     * Get the game of an open table. It must only be read from a TableListener callback.
+     * @return the game, null if the table is unknown or closed
+     */
+    public Game getGame(long tableID) {
+        Table table = tables.get(tableID);
+        return table == null ? null : table.game;
+    }
+
+    /**
+     * @return number of open tables
+     */
+    public int openTables() {
+        return openTables.get();
+    }
+
+    /**
+     * Stop accepting tables and wait for the open ones to finish, then stop the workers.
+     * Tables still open after the timeout (e.g. abandoned by humans) are dropped.
+     * @param timeout maximal time to wait
+     * @param unit unit of timeout
+     * @return whether all tables finished in time
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        draining = true;
+        if (openTables.get() == 0) drained.complete(null);
+        boolean done;
+        try {
+            drained.get(timeout, unit);
+            done = true;
+        } catch (TimeoutException | ExecutionException e) {
+            done = false;
+        }
+        workers.shutdownNow();
+        tables.clear();
+        return done;
+    }
+
+    private void close(Table table) {
+        tables.remove(table.id);
+        listener.finished(table.id, table.game);
+        release();
+    }
+
+    /**
+     * Uncount a table, the last one completes a drain.
+     */
+    private void release() {
+        if (openTables.decrementAndGet() == 0 && draining) drained.complete(null);
+    }
+
+    /**
+     * A human move waiting to be applied.
+     */
+    private static class Input {
+        final int move;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Input(int move) {
+            this.move = move;
+        }
+    }
+
+    /**
+     * One table, advanced as an actor: signal() schedules it, and run() is never executed by two workers at once.
+     */
+    private class Table implements Runnable {
+        final long id;
+        final Game game;
+        final long pacingNanos;
+        final ConcurrentLinkedQueue<Input> inbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pendingSignals = new AtomicInteger();
+        final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+        long nextAIRoundAt; // System.nanoTime() before which no AI round is played
+        boolean closed = false;
+
+        Table(long id, Game game, int pacingMillis) {
+            this.id = id;
+            this.game = game;
+            pacingNanos = TimeUnit.MILLISECONDS.toNanos(pacingMillis);
+            nextAIRoundAt = System.nanoTime() + pacingNanos;
+        }
+
+        void signal() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // host has been shut down, the table is dropped
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                advance();
+                missed = pendingSignals.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Apply queued human moves and play AI rounds until the table waits for a human, for pacing, or is over.
+         */
+        private void advance() {
+            Input input;
+            while ((input = inbox.poll()) != null) {
+                boolean humanTurn = !closed && game.pendingDecision() != Game.DECISION_NONE
+                        && game.isHuman(game.getCurrentPlayerID());
+                boolean applied = humanTurn && game.step(input.move);
+                if (applied) nextAIRoundAt = System.nanoTime() + pacingNanos;
+                input.result.complete(applied);
+            }
+            if (closed) return;
+
+            while (game.pendingDecision() != Game.DECISION_NONE && !game.isHuman(game.getCurrentPlayerID())) {
+                long wait = nextAIRoundAt - System.nanoTime();
+                if (wait > 0) {
+                    if (wakeUpScheduled.compareAndSet(false, true)) {
+                        workers.schedule(() -> {
+                            wakeUpScheduled.set(false);
+                            signal();
+                        }, wait, TimeUnit.NANOSECONDS);
+                    }
+                    return;
+                }
+                game.playAIRound();
+                nextAIRoundAt = System.nanoTime() + pacingNanos;
+            }
+
+            if (game.pendingDecision() == Game.DECISION_NONE) {
+                closed = true;
+                close(this);
+            } else if (inbox.isEmpty()) {
+                listener.awaitingHuman(id, game);
+            }
+        }
+    }
+
+    /**
+     * Demo: keep many tables alive at the same time, each with one human (who never moves) and one AI.
+     * @param args [number of tables] [worker threads]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numTables = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int numWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        TableHost host = new TableHost(numWorkers, numTables, null);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < numTables; i++) {
+            Game game = new Game(1, 1, GameRandom.seedOf(0, i));
+            game.setUseGUI(false);
+            game.initializeGame();
+            host.open(game, 1000);
+        }
+        Thread.sleep(2000); // let AIs move, every table then waits for its human
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%d tables open, %d threads alive, %.1f MB heap (%.1f KB per table)%n",
+                host.openTables(), Thread.activeCount(), (after - before) / 1e6, (after - before) / 1e3 / numTables);
+        host.drain(0, TimeUnit.MILLISECONDS);
+    }
+}
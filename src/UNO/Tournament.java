@@ -0,0 +1,100 @@
+package UNO;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays a large batch of AI-only games on all cores.
+ *
+ * The batch [0, numGames) is split recursively into ranges of games that are run by a ForkJoinPool,
+ * so idle workers steal work from busy ones. Every game is isolated (its own Game, piles, rule state and
+ * random stream seeded with GameRandom.seedOf(baseSeed, i)), hence the result is exactly the same as
+ * running the batch with Simulator on one thread. Each range produces its own SimulationResult, and
+ * results are merged up the task tree when subtasks are joined, so no lock or shared counter is needed.
+ */
+public class Tournament {
+    private static final int GAMES_PER_TASK = 512; // ranges smaller than this are played sequentially
+
+    private final Simulator simulator;
+    private final ForkJoinPool pool;
+
+    /**
+     * A tournament running on the common pool (one worker per core).
+     * @param simulator seating of the games
+     */
+    public Tournament(Simulator simulator) {
+        this(simulator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param simulator seating of the games
+     * @param pool pool running the games
+     */
+    public Tournament(Simulator simulator, ForkJoinPool pool) {
+        this.simulator = simulator;
+        this.pool = pool;
+    }
+
+    /**
+     * Play a batch of games in parallel.
+     * @param numGames number of games
+     * @param baseSeed seed of the batch
+     * @return aggregated statistics, identical to simulator.run(numGames, baseSeed)
+     */
+    public SimulationResult run(long numGames, long baseSeed) {
+        return pool.invoke(new Batch(0, numGames, baseSeed));
+    }
+
+    /**
+     * Games [from, to) of a batch.
+     */
+    private class Batch extends RecursiveTask<SimulationResult> {
+        private static final long serialVersionUID = 1L; // tasks are never serialized, ForkJoinTask is Serializable
+
+        private final long from;
+        private final long to;
+        private final long baseSeed;
+
+        Batch(long from, long to, long baseSeed) {
+            this.from = from;
+            this.to = to;
+            this.baseSeed = baseSeed;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (to - from <= GAMES_PER_TASK) return simulator.run(from, to, baseSeed);
+            long mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid, baseSeed);
+            left.fork();
+            SimulationResult right = new Batch(mid, to, baseSeed).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Benchmark: two strategic AIs against two random AIs, single-threaded versus all cores.
+     * @param args [number of games] [seed]
+     */
+    public static void main(String[] args) {
+        int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 2020;
+        Simulator simulator = new Simulator(ArtificialIntelligence::new, ArtificialIntelligence::new,
+                ArtificialIdiot::new, ArtificialIdiot::new);
+        simulator.run(numGames / 10, seed); // warm up
+
+        long start = System.nanoTime();
+        SimulationResult sequential = simulator.run(numGames, seed);
+        double sequentialTime = (System.nanoTime() - start) / 1e9;
+
+        Tournament tournament = new Tournament(simulator);
+        start = System.nanoTime();
+        SimulationResult parallel = tournament.run(numGames, seed);
+        double parallelTime = (System.nanoTime() - start) / 1e9;
+
+        System.out.print(parallel);
+        System.out.printf("single thread: %.2fs, %d workers: %.2fs, speedup %.1fx%n", sequentialTime,
+                ForkJoinPool.commonPool().getParallelism(), parallelTime, sequentialTime / parallelTime);
+        if (!sequential.toString().equals(parallel.toString())) System.out.println("results differ!");
+    }
+}
@@ -0,0 +1,130 @@
+package UNO;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size cache of evaluations of positions, keyed by Zobrist key (see Game.zobristKey), shared by search
+ * threads without any lock.
+ *
+ * Every slot is two longs: (key XOR data, data). A reader accepts a slot only if the XOR of both words gives back
+ * its key, so a slot torn by two threads writing at once is simply a miss, never a wrong answer.
+ * Slots are grouped in buckets of two. A store goes to the slot already holding the key, else replaces the entry
+ * of its bucket which is the least valuable: from an older search first (see newSearch), then of the smallest depth.
+ *
+ * An entry holds a 32-bit value (e.g. a score, or wins scaled to an int) and the depth (or number of playouts)
+ * it was computed with.
+ */
+public class TranspositionTable {
+    private static final long VALID = 1L << 63; // set in every stored data word, so that empty slots never match
+    private static final int DEPTH_SHIFT = 32, DEPTH_MASK = 0xFFFF;
+    private static final int AGE_SHIFT = 48, AGE_MASK = 0x7FFF;
+
+    private final AtomicLongArray slots; // 2 longs per slot, 2 slots per bucket
+    private final int bucketMask;
+    private volatile int age = 0;
+
+    /**
+     * @param log2Slots the table holds 2^log2Slots entries (at least 2), 16 bytes each
+     */
+    public TranspositionTable(int log2Slots) {
+        assert(log2Slots >= 1 && log2Slots <= 28);
+        slots = new AtomicLongArray(2 << log2Slots);
+        bucketMask = (1 << (log2Slots - 1)) - 1;
+    }
+
+    /**
+     * Look a position up.
+     * @param key Zobrist key of the position
+     * @return the entry stored for the key (see value, depth), 0 if there is none
+     */
+    public long probe(long key) {
+        int slot = bucket(key);
+        for (int i = 0; i < 2; i++, slot += 2) {
+            long data = slots.getOpaque(slot + 1);
+            if (data != 0 && (slots.getOpaque(slot) ^ data) == key) return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Store the evaluation of a position, unless its bucket holds only more valuable entries of the current search.
+     * @param key Zobrist key of the position
+     * @param value evaluation of the position
+     * @param depth depth (0 - 65535) the evaluation was computed with, deeper entries are kept preferably
+     * @return whether the entry was stored
+     */
+    public boolean store(long key, int value, int depth) {
+        int currentAge = age;
+        long data = VALID | (long) currentAge << AGE_SHIFT | (long) (depth & DEPTH_MASK) << DEPTH_SHIFT
+                | (value & 0xFFFFFFFFL);
+        int first = bucket(key);
+        int victim = -1;
+        int victimPriority = Integer.MAX_VALUE;
+        for (int i = 0, slot = first; i < 2; i++, slot += 2) {
+            long old = slots.getOpaque(slot + 1);
+            if (old == 0 || (slots.getOpaque(slot) ^ old) == key) { // empty, or the same position
+                victim = slot;
+                victimPriority = -1;
+                break;
+            }
+            // entries of older searches go first, then the shallowest
+            int priority = (entryAge(old) == currentAge ? 1 << 16 : 0) | depth(old);
+            if (priority < victimPriority) {
+                victim = slot;
+                victimPriority = priority;
+            }
+        }
+        if (victimPriority > (1 << 16 | depth)) return false;
+        slots.setOpaque(victim, key ^ data);
+        slots.setOpaque(victim + 1, data);
+        return true;
+    }
+
+    /**
+     * Start a new search: entries stored so far are kept, but are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Remove all entries. Must not run concurrently with probe / store.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) slots.setPlain(i, 0);
+    }
+
+    /**
+     * @return number of entries the table can hold
+     */
+    public int capacity() {
+        return slots.length() / 2;
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return value of the entry
+     */
+    public static int value(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * @param entry an entry returned by probe
+     * @return depth of the entry
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    private static int entryAge(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /**
+     * Index of the first long of the bucket of a key.
+     */
+    private int bucket(long key) {
+        return ((int) (key ^ key >>> 32) & bucketMask) << 2;
+    }
+}
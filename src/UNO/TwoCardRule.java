@@ -0,0 +1,114 @@
+package UNO;
+
+/**
+ * Precomputed tables for the extra rules of assignment-1.1 - addition and subtraction of two cards.
+ *
+ * Two number cards with the same color can be played as a single card whose color is the same,
+ * and whose number is the summation (or difference, larger - smaller) of the two chosen cards.
+ * For every pair of card IDs, the tables store the ID of a card with equivalent effect, or -1 if
+ * the pair cannot be composed (different colors, non-number cards, or a result larger than 9).
+ */
+public class TwoCardRule {
+    /** Operation codes used in packed pairs. */
+    public static final int OP_ADD = 0;
+    public static final int OP_SUB = 1;
+
+    /** Upper bound of composable pairs in a hand: 2 operations * 4 colors * C(19, 2) number cards per color. */
+    public static final int MAX_PAIRS = 2 * 4 * 19 * 18 / 2;
+
+    private static final int N = CardParser.TOTAL_CARDS + 1; // card IDs are used as indices directly
+    private static final byte[] ADD = new byte[N * N];
+    private static final byte[] SUB = new byte[N * N];
+
+    static {
+        for (int id1 = 1; id1 < N; id1++) {
+            for (int id2 = 1; id2 < N; id2++) {
+                ADD[id1 * N + id2] = (byte) compose(id1, id2, OP_ADD);
+                SUB[id1 * N + id2] = (byte) compose(id1, id2, OP_SUB);
+            }
+        }
+    }
+
+    private TwoCardRule() {}
+
+    /**
+     * Helper function building the tables.
+     * @return ID of the equivalent card, -1 if not composable
+     */
+    private static int compose(int cardID1, int cardID2, int op) {
+        if (CardParser.colorOf(cardID1) != CardParser.colorOf(cardID2)
+                || !CardParser.isNumberCard(cardID1) || !CardParser.isNumberCard(cardID2)) return -1;
+        int num1 = CardParser.faceOf(cardID1);
+        int num2 = CardParser.faceOf(cardID2);
+        int numResult = op == OP_ADD ? num1 + num2 : Math.abs(num1 - num2);
+        if (numResult > 9) return -1; // e.g. red 8 + red 5 = red 13 not a legal card
+        return numberCardID(CardParser.colorOf(cardID1), numResult);
+    }
+
+    /**
+     * Find the (first) ID of a number card with given color and number.
+     * @param colorID 1 - 4
+     * @param number 0 - 9
+     * @return ID of the card
+     */
+    public static int numberCardID(int colorID, int number) {
+        return number == 0 ? colorID * 25 : (colorID - 1) * 25 + number;
+    }
+
+    /**
+     * Equivalent card of adding two cards.
+     * @return (int) The cardID with equivalent effect of the addition, -1 if addition not legal
+     */
+    public static int add(int cardID1, int cardID2) {
+        if (cardID1 < 1 || cardID1 >= N || cardID2 < 1 || cardID2 >= N) return -1;
+        return ADD[cardID1 * N + cardID2];
+    }
+
+    /**
+     * Equivalent card of subtracting two cards. Order of the cards does not matter.
+     * @return (int) The cardID with equivalent effect of the subtraction, -1 if subtraction not legal
+     */
+    public static int sub(int cardID1, int cardID2) {
+        if (cardID1 < 1 || cardID1 >= N || cardID2 < 1 || cardID2 >= N) return -1;
+        return SUB[cardID1 * N + cardID2];
+    }
+
+    /**
+     * Enumerate all composable pairs of number cards in a hand (each unordered pair once per operation).
+     * Each result is packed into an int, see pack / cardOne / cardTwo / equivalent / op.
+     * @param hand the hand to search
+     * @param out buffer receiving the packed pairs, should have a length of at least MAX_PAIRS
+     * @return number of pairs written into out
+     */
+    public static int findPairs(Hand hand, int[] out) {
+        int count = 0;
+        for (int id1 = 1; id1 < N; id1++) {
+            if (!hand.contains(id1) || !CardParser.isNumberCard(id1)) continue;
+            int color = CardParser.colorOf(id1);
+            int colorEnd = color * 25; // only cards of the same color can be composed
+            for (int id2 = id1 + 1; id2 <= colorEnd; id2++) {
+                if (!hand.contains(id2)) continue;
+                int added = ADD[id1 * N + id2];
+                if (added != -1) out[count++] = pack(id1, id2, added, OP_ADD);
+                int subtracted = SUB[id1 * N + id2];
+                if (subtracted != -1) out[count++] = pack(id1, id2, subtracted, OP_SUB);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pack a composed play into one int: card1 | card2 << 8 | equivalent << 16 | op << 24.
+     */
+    public static int pack(int cardID1, int cardID2, int equivalentID, int op) {
+        return cardID1 | (cardID2 << 8) | (equivalentID << 16) | (op << 24);
+    }
+
+    public static int cardOne(int packed) { return packed & 0xFF; }
+
+    public static int cardTwo(int packed) { return (packed >>> 8) & 0xFF; }
+
+    public static int equivalent(int packed) { return (packed >>> 16) & 0xFF; }
+
+    public static int op(int packed) { return packed >>> 24; }
+}
@@ -0,0 +1,44 @@
+package UNO;
+
+import java.util.Arrays;
+
+/**
+ * A growable stack of primitive longs, recording what is needed to undo moves (see Game.makeMove).
+ * Once it has grown to the depth of a search, pushing and popping never allocate.
+ */
+public class UndoStack {
+    private long[] entries;
+    private int size = 0;
+
+    public UndoStack() {
+        this(256);
+    }
+
+    /**
+     * @param capacity initial capacity (in entries)
+     */
+    public UndoStack(int capacity) {
+        entries = new long[Math.max(1, capacity)];
+    }
+
+    public void push(long entry) {
+        if (size == entries.length) entries = Arrays.copyOf(entries, size * 2);
+        entries[size++] = entry;
+    }
+
+    public long pop() {
+        assert(size > 0);
+        return entries[--size];
+    }
+
+    /**
+     * @return number of entries on the stack
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,83 @@
+package UNO;
+
+/**
+ * Zobrist hashing of game positions: every feature of a position (a card in a given hand, the top card of the
+ * discard pile, the matchable color / number / symbol, skip level, penalty, direction, current player) has a
+ * fixed random 64-bit key, and the key of a position is the XOR of the keys of its features.
+ *
+ * Hands keep the XOR of the keys of their cards up to date on every add / remove (see Hand.getHash), so
+ * Game.zobristKey costs one XOR per player plus a few table lookups, whatever happened in the move.
+ * Positions reached by different move orders (e.g. around reverse cards) get the same key, which is what a
+ * transposition table (see TranspositionTable) needs. The draw pile is not part of the key: it is hidden.
+ */
+public class Zobrist {
+    private static final int SEAT_ROTATION = 5; // a card in hand of seat s has the key of the card rotated by 5s bits
+    private static final int MAX_PLAYERS = Long.SIZE / SEAT_ROTATION;
+
+    private static final long[] CARD = new long[CardParser.TOTAL_CARDS + 1];
+    private static final long[] TOP = new long[CardParser.TOTAL_CARDS + 1];
+    private static final long[] COLOR = new long[8];
+    private static final long[] NUMBER = new long[32];
+    private static final long[] SYMBOL = new long[32];
+    private static final long[] SKIP = new long[4];
+    private static final long[] PLAYER = new long[MAX_PLAYERS];
+    private static final long[] WINNER = new long[MAX_PLAYERS + 1];
+    private static final long COUNTER_CLOCKWISE;
+    private static final long WAITING_FOR_COLOR;
+    private static final long PENALTY;
+
+    static {
+        GameRandom random = new GameRandom(0x5eed_2020L); // fixed, so that keys are stable across runs
+        for (long[] table : new long[][]{CARD, TOP, COLOR, NUMBER, SYMBOL, SKIP, PLAYER, WINNER}) {
+            for (int i = 0; i < table.length; i++) table[i] = random.nextLong();
+        }
+        TOP[0] = 0; // empty discard pile
+        COUNTER_CLOCKWISE = random.nextLong();
+        WAITING_FOR_COLOR = random.nextLong();
+        PENALTY = random.nextLong() | 1; // odd, so that multiples of it are distinct
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Key of a card, to be rotated by the seat of the hand holding it (see handKey).
+     */
+    public static long cardKey(int cardID) {
+        return CARD[cardID];
+    }
+
+    /**
+     * Key of a hand sitting at a seat.
+     * @param seat ID of the player
+     * @param handHash XOR of cardKey of the cards of the hand (Hand.getHash)
+     */
+    public static long handKey(int seat, long handHash) {
+        return Long.rotateLeft(handHash, seat * SEAT_ROTATION);
+    }
+
+    /**
+     * Key of everything besides hands: rule state, top card, whose turn it is and the winner.
+     */
+    public static long stateKey(RuleController ruler, int topCard, int currentPlayerID, int winnerID) {
+        long key = COLOR[ruler.getMatchableColorID()] ^ NUMBER[ruler.getMatchableNumberID()]
+                ^ SYMBOL[ruler.getMatchableSymbolID()] ^ SKIP[ruler.getNextPlayerSkiplevel()]
+                ^ TOP[topCard] ^ PLAYER[currentPlayerID] ^ WINNER[winnerID + 1];
+        if (!ruler.getIsClockwise()) key ^= COUNTER_CLOCKWISE;
+        if (ruler.isWaitingForColor()) key ^= WAITING_FOR_COLOR;
+        return key ^ PENALTY * ruler.getPenaltyDraw(); // a distinct key per penalty, 0 for none
+    }
+
+    /**
+     * Key of a game position computed from scratch, by scanning every hand. It equals Game.zobristKey,
+     * which is what the incremental hashing is checked against.
+     */
+    public static long of(Game game) {
+        long key = stateKey(game.getRuler(), game.getCardManager().topCard(), game.getCurrentPlayerID(), game.getWinnerID());
+        for (int seat = 0; seat < game.getPlayers().size(); seat++) {
+            long handHash = 0;
+            for (int cardID : game.getPlayerCards(seat)) handHash ^= CARD[cardID];
+            key ^= handKey(seat, handHash);
+        }
+        return key;
+    }
+}